@@ -17,16 +17,17 @@ package com.fortify.plugin.jenkins;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
-import java.io.FileNotFoundException;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
-import java.nio.file.NoSuchFileException;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
 
+import javax.imageio.ImageIO;
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
@@ -46,13 +47,24 @@ import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.model.listeners.RunListener;
 import hudson.util.ChartUtil;
-import hudson.util.ChartUtil.NumberOnlyBuildLabel;
 import hudson.util.ColorPalette;
 import hudson.util.DataSetBuilder;
-import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
 
 public class ChartAction implements Action {
-	private static long lastChanged;
+	private static final int DEFAULT_WIDTH = 400;
+	private static final int DEFAULT_HEIGHT = 200;
+	private static final int MAX_DIMENSION = 2000;
+	private static final int MAX_TREND_PAGE = 500;
+
+	// rendered graphs are cached by the time of the last change, so it's set on startup as well
+	private static volatile long lastChanged = System.currentTimeMillis();
+
+	// number of the most recent builds shown in the trend graph, 0 for all
+	static final int TREND_BUILDS = SystemProperties.getInteger(ChartAction.class.getName() + ".trendBuilds", 0);
 
 	private String projectFullName;
 	private String appName;
@@ -74,6 +86,10 @@ public class ChartAction implements Action {
 		return appVersion;
 	}
 
+	public int getTrendBuilds() {
+		return TREND_BUILDS;
+	}
+
 	@Override
 	public String getDisplayName() {
 		String name = "Fortify Summary";
@@ -112,37 +128,166 @@ public class ChartAction implements Action {
 	}
 
 	public void doGraph(StaplerRequest req, StaplerResponse rsp) throws IOException {
-		DataSetBuilder<String, NumberOnlyBuildLabel> dsb = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+		int width = getDimension(req, "width", DEFAULT_WIDTH);
+		int height = getDimension(req, "height", DEFAULT_HEIGHT);
+		long changed = lastChanged;
+		String key = projectFullName + '\n' + appName + '\n' + appVersion + '\n' + width + 'x' + height + '\n' + changed;
+
+		// the image only changes when a build completes or is deleted
+		String etag = "\"" + Integer.toHexString(key.hashCode()) + '-' + Long.toHexString(changed) + '"';
+		rsp.setHeader("ETag", etag);
+		rsp.setHeader("Cache-Control", "private, no-cache");
+		String ifNoneMatch = req.getHeader("If-None-Match");
+		if (ifNoneMatch != null && ifNoneMatch.equals(etag)) {
+			rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		if (ifNoneMatch == null && req.checkIfModified(changed, rsp)) {
+			return;
+		}
 
-		for (Run<?, ?> b : getBuilds()) {
-			if (b.isBuilding())
-				continue;
-			FPRSummary fprData = new FPRSummary();
+		byte[] image = ChartImageCache.get().get(key);
+		if (image == null) {
+			JFreeChart chart = createChart(getTrendDataset(), appName, appVersion);
 			try {
-				// if the build failed we need to ignore it but not crash
-				if (isPipeline) {
-					fprData.load(b.getRootDir(), appName, appVersion);
-				} else {
-					fprData.load(b.getRootDir(), null, null);
-				}
-				dsb.add(fprData.getNvs(), "NVS", new NumberOnlyBuildLabel(b));
-			} catch (FileNotFoundException | NoSuchFileException e) {
+				ByteArrayOutputStream png = new ByteArrayOutputStream();
+				ImageIO.write(chart.createBufferedImage(width, height), "PNG", png);
+				image = png.toByteArray();
+			} catch (Error e) {
+				// let ChartUtil report AWT problems the usual way
+				ChartUtil.generateGraph(req, rsp, chart, width, height);
+				return;
 			}
+			ChartImageCache.get().put(key, image);
 		}
+		rsp.setContentType("image/png");
+		rsp.setContentLength(image.length);
+		rsp.getOutputStream().write(image);
+	}
+
+	private static int getDimension(StaplerRequest req, String name, int defaultValue) {
+		return Math.max(1, Math.min(MAX_DIMENSION, getIntParameter(req, name, defaultValue)));
+	}
 
-		ChartUtil.generateGraph(req, rsp, createChart(dsb.build(), appName, appVersion), 400, 200);
+	private static int getIntParameter(StaplerRequest req, String name, int defaultValue) {
+		String value = req.getParameter(name);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				// use the default
+			}
+		}
+		return defaultValue;
 	}
 
-	private Collection<Run<?, ?>> getBuilds() {
-		if (projectFullName != null) {
-			List<Job> allProjects = Jenkins.get().getAllItems(Job.class);
-			for (Job next : allProjects) {
-				if (next != null && projectFullName.equals(next.getFullName())) {
-					return next.getBuilds();
+	private CategoryDataset getTrendDataset() {
+		DataSetBuilder<String, BuildNumberLabel> dsb = new DataSetBuilder<String, BuildNumberLabel>();
+
+		Job<?, ?> job = getJob();
+		if (job != null) {
+			for (Map.Entry<Integer, NvsTrendIndex.Point> point : NvsTrendIndex.get(job).getTrend(getSummaryFileName(), TREND_BUILDS).entrySet()) {
+				dsb.add(point.getValue().getNvs(), "NVS", new BuildNumberLabel(point.getKey().intValue()));
+			}
+		}
+		return dsb.build();
+	}
+
+	private String getSummaryFileName() {
+		return isPipeline ? FPRSummary.getFileName(appName, appVersion) : FPRSummary.getFileName(null, null);
+	}
+
+	/**
+	 * Trend data for rendering in the browser. Every metric is an array with one value per build, in the order of the
+	 * "builds" array, e.g. {"builds":[1,2],"nvs":[3.5,2.0],"totalIssues":[10,8],"failedCount":[0,0],
+	 * "folders":{"Critical":[1,0]},"next":null}. Parameters:
+	 * <ul>
+	 * <li>since - only builds with a higher number are returned, so that the page can fetch just the new builds</li>
+	 * <li>last - if since is 0, only the given number of most recent builds are returned</li>
+	 * <li>limit - maximum number of builds to return; if there are more, "next" is the value of "since" for the next
+	 * page</li>
+	 * </ul>
+	 */
+	public void doTrend(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		int since = getIntParameter(req, "since", 0);
+		int last = getIntParameter(req, "last", 0);
+		int limit = Math.max(1, Math.min(MAX_TREND_PAGE, getIntParameter(req, "limit", MAX_TREND_PAGE)));
+		long changed = lastChanged;
+		Job<?, ?> job = getJob();
+		if (job != null && since <= 0 && last > 0) {
+			SortedMap<Integer, NvsTrendIndex.Point> recent = NvsTrendIndex.get(job).getTrend(getSummaryFileName(), last);
+			if (!recent.isEmpty()) {
+				since = recent.firstKey().intValue() - 1;
+			}
+		}
+
+		String etag = "\"" + Integer.toHexString((projectFullName + '\n' + getSummaryFileName() + '\n' + since + '\n' + limit).hashCode())
+				+ '-' + Long.toHexString(changed) + '"';
+		rsp.setHeader("ETag", etag);
+		rsp.setHeader("Cache-Control", "private, no-cache");
+		if (etag.equals(req.getHeader("If-None-Match"))) {
+			rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		JSONArray builds = new JSONArray();
+		JSONArray nvs = new JSONArray();
+		JSONArray totalIssues = new JSONArray();
+		JSONArray failedCount = new JSONArray();
+		Map<String, JSONArray> folders = new LinkedHashMap<String, JSONArray>();
+		Integer next = null;
+		if (job != null) {
+			// one more build than requested tells whether there is another page
+			SortedMap<Integer, NvsTrendIndex.Point> trend = NvsTrendIndex.get(job).getTrend(getSummaryFileName(), since, limit + 1);
+			int index = 0;
+			for (Map.Entry<Integer, NvsTrendIndex.Point> point : trend.entrySet()) {
+				if (index == limit) {
+					next = builds.getInt(limit - 1);
+					break;
+				}
+				builds.add(point.getKey());
+				nvs.add(point.getValue().getNvs());
+				totalIssues.add(point.getValue().getTotalIssues());
+				failedCount.add(point.getValue().getFailedCount());
+				for (Map.Entry<String, Integer> folder : point.getValue().getFolders().entrySet()) {
+					JSONArray counts = folders.get(folder.getKey());
+					if (counts == null) {
+						// folders that didn't exist in the previous builds
+						counts = new JSONArray();
+						for (int i = 0; i < index; i++) {
+							counts.add(0);
+						}
+						folders.put(folder.getKey(), counts);
+					}
+					counts.add(folder.getValue());
+				}
+				index++;
+				for (JSONArray counts : folders.values()) {
+					if (counts.size() < index) {
+						counts.add(0);
+					}
 				}
 			}
 		}
-		return Collections.emptyList();
+		JSONObject folderCounts = new JSONObject();
+		for (Map.Entry<String, JSONArray> folder : folders.entrySet()) {
+			folderCounts.put(folder.getKey(), folder.getValue());
+		}
+		JSONObject json = new JSONObject();
+		json.put("builds", builds);
+		json.put("nvs", nvs);
+		json.put("totalIssues", totalIssues);
+		json.put("failedCount", failedCount);
+		json.put("folders", folderCounts);
+		json.put("next", next == null ? JSONNull.getInstance() : next);
+		json.put("lastChanged", changed);
+
+		rsp.setContentType("application/json;charset=UTF-8");
+		rsp.getWriter().write(json.toString());
+	}
+
+	private Job<?, ?> getJob() {
+		return JobLookup.getJob(projectFullName);
 	}
 
 	// NVS is to be removed in the following releases
@@ -205,7 +350,47 @@ public class ChartAction implements Action {
 
 		@Override
 		public void onCompleted(Run run, TaskListener listener) {
+			if (NvsTrendIndex.hasSummary(run)) {
+				NvsTrendIndex.get(run.getParent()).add(run);
+			}
 			lastChanged = System.currentTimeMillis();
 		}
+
+		@Override
+		public void onDeleted(Run run) {
+			NvsTrendIndex.get(run.getParent()).remove(run.getNumber());
+			lastChanged = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Build label that doesn't need the build to be loaded
+	 */
+	private static class BuildNumberLabel implements Comparable<BuildNumberLabel> {
+		private final int number;
+
+		BuildNumberLabel(int number) {
+			this.number = number;
+		}
+
+		@Override
+		public int compareTo(BuildNumberLabel that) {
+			return Integer.compare(number, that.number);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof BuildNumberLabel && ((BuildNumberLabel) o).number == number;
+		}
+
+		@Override
+		public int hashCode() {
+			return number;
+		}
+
+		@Override
+		public String toString() {
+			return "#" + number;
+		}
 	}
 }
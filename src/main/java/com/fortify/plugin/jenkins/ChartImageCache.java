@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jenkins.util.SystemProperties;
+
+/**
+ * Rendered PNG images of the trend graphs, least recently used ones are evicted once the cache exceeds its size
+ * limit. The key includes the time of the last data change, so stale images are never returned and simply age out.
+ */
+class ChartImageCache {
+	private static final long MAX_BYTES = SystemProperties
+			.getLong(ChartImageCache.class.getName() + ".maxBytes", Long.valueOf(8L * 1024 * 1024)).longValue();
+
+	private static final ChartImageCache INSTANCE = new ChartImageCache();
+
+	private final LinkedHashMap<String, byte[]> images = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	private long bytes;
+
+	static ChartImageCache get() {
+		return INSTANCE;
+	}
+
+	synchronized byte[] get(String key) {
+		return images.get(key);
+	}
+
+	synchronized void put(String key, byte[] image) {
+		if (image.length > MAX_BYTES) {
+			return;
+		}
+		byte[] previous = images.put(key, image);
+		if (previous != null) {
+			bytes -= previous.length;
+		}
+		bytes += image.length;
+		while (bytes > MAX_BYTES) {
+			Map.Entry<String, byte[]> eldest = images.entrySet().iterator().next();
+			bytes -= eldest.getValue().length;
+			images.remove(eldest.getKey());
+		}
+	}
+}
@@ -0,0 +1,540 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jenkinsci.remoting.RoleChecker;
+
+import com.fortify.plugin.jenkins.bean.GroupingValueBean;
+import com.fortify.plugin.jenkins.bean.IssueFolderBean;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+
+/**
+ * Computes the build statistics directly from an FPR file, without uploading it to SSC first. Runs on the node where
+ * the FPR is located and only sends the aggregated counts back.
+ * <p>
+ * audit.xml and audit.fvdl are read with a StAX parser. Vulnerabilities are aggregated by rule, confidence, severity
+ * and Analysis tag value while streaming. The audited issues of audit.xml are kept in an {@link AuditedIssues} table
+ * of a few dozen bytes per issue, so the memory used grows with the number of audited issues and of rules, but not with
+ * the number of vulnerabilities in audit.fvdl. Issues are sorted into the Critical, High, Medium and Low folders
+ * following the Fortify Priority Order of the default SSC filter set.
+ */
+public class FPRAnalyzer implements FilePath.FileCallable<FPRAnalyzer.Result> {
+
+	private static final long serialVersionUID = 1L;
+
+	static final String AUDIT_FVDL = "audit.fvdl";
+	static final String AUDIT_XML = "audit.xml";
+
+	static final String ANALYSIS_TAG_ID = "87f2364f-dcd4-49e6-861d-f8d3f351686b";
+	static final String NOT_SET = "Not Set";
+
+	private static final double PRIORITY_THRESHOLD = 2.5;
+
+	@Override
+	public Result invoke(File fpr, VirtualChannel channel) throws IOException {
+		try (ZipFile zip = new ZipFile(fpr)) {
+			ZipEntry fvdlEntry = zip.getEntry(AUDIT_FVDL);
+			if (fvdlEntry == null) {
+				// e.g. third-party results uploaded as a zip file
+				return null;
+			}
+			AuditedIssues audits = new AuditedIssues();
+			ZipEntry auditEntry = zip.getEntry(AUDIT_XML);
+			if (auditEntry != null) {
+				try (InputStream in = zip.getInputStream(auditEntry)) {
+					audits = readAuditXml(in);
+				}
+			}
+			try (InputStream in = zip.getInputStream(fvdlEntry)) {
+				return readFvdl(in, audits);
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Can't parse analysis results file '" + fpr + "': " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * The folders of the result are those of the default filter set of SSC. Application versions created from other
+	 * issue templates, or a filter set selected in the job, may have other folders. Can be checked before the
+	 * analysis results file is read.
+	 *
+	 * @param folderNamesById
+	 *            folders of the application version in SSC
+	 * @return whether the application version has the folders of the result
+	 */
+	public static boolean matchesFolders(Map<String, String> folderNamesById) {
+		for (int i = 0; i < Result.FOLDER_NAMES.size(); i++) {
+			if (!Result.FOLDER_NAMES.get(i).equals(folderNamesById.get(Result.FOLDER_IDS.get(i)))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static XMLStreamReader createReader(InputStream in) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		return factory.createXMLStreamReader(in);
+	}
+
+	/**
+	 * Reads the Analysis tag value and suppression flag of all audited issues
+	 */
+	static AuditedIssues readAuditXml(InputStream in) throws XMLStreamException {
+		AuditedIssues result = new AuditedIssues();
+		XMLStreamReader reader = createReader(in);
+		try {
+			String instanceId = null;
+			boolean suppressed = false;
+			String analysis = null;
+			boolean inAnalysisTag = false;
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = reader.getLocalName();
+					if ("Issue".equals(name)) {
+						instanceId = reader.getAttributeValue(null, "instanceId");
+						suppressed = Boolean.parseBoolean(reader.getAttributeValue(null, "suppressed"));
+						analysis = null;
+					} else if ("Tag".equals(name) && instanceId != null) {
+						inAnalysisTag = ANALYSIS_TAG_ID.equalsIgnoreCase(reader.getAttributeValue(null, "id"));
+					} else if ("Value".equals(name) && inAnalysisTag) {
+						String value = reader.getElementText().trim();
+						if (!value.isEmpty()) {
+							analysis = value;
+						}
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					String name = reader.getLocalName();
+					if ("Tag".equals(name)) {
+						inAnalysisTag = false;
+					} else if ("Issue".equals(name)) {
+						if (instanceId != null && (suppressed || analysis != null)) {
+							result.add(instanceId, analysis, suppressed);
+						}
+						instanceId = null;
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Streams the vulnerabilities and the rule metadata of audit.fvdl
+	 */
+	static Result readFvdl(InputStream in, AuditedIssues audits) throws XMLStreamException {
+		Map<IssueGroup, int[]> groups = new HashMap<IssueGroup, int[]>();
+		Map<String, RuleMetadata> rules = new HashMap<String, RuleMetadata>();
+		XMLStreamReader reader = createReader(in);
+		try {
+			String classId = null;
+			String instanceId = null;
+			double confidence = 0;
+			double severity = 0;
+			String ruleId = null;
+			RuleMetadata rule = null;
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = reader.getLocalName();
+					if ("Vulnerability".equals(name)) {
+						classId = null;
+						instanceId = null;
+						confidence = 0;
+						severity = 0;
+					} else if ("ClassID".equals(name)) {
+						classId = reader.getElementText().trim();
+					} else if ("InstanceID".equals(name)) {
+						instanceId = reader.getElementText().trim();
+					} else if ("Confidence".equals(name)) {
+						confidence = parseDouble(reader.getElementText());
+					} else if ("InstanceSeverity".equals(name)) {
+						severity = parseDouble(reader.getElementText());
+					} else if ("Rule".equals(name) && reader.getAttributeValue(null, "id") != null) {
+						ruleId = reader.getAttributeValue(null, "id");
+						rule = new RuleMetadata();
+					} else if ("Group".equals(name) && rule != null) {
+						String groupName = reader.getAttributeValue(null, "name");
+						if ("Impact".equals(groupName)) {
+							rule.impact = parseDouble(reader.getElementText());
+						} else if ("Accuracy".equals(groupName)) {
+							rule.accuracy = parseDouble(reader.getElementText());
+						} else if ("Probability".equals(groupName)) {
+							rule.probability = parseDouble(reader.getElementText());
+						}
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					String name = reader.getLocalName();
+					if ("Vulnerability".equals(name) && classId != null) {
+						int audit = instanceId == null ? AuditedIssues.NOT_AUDITED : audits.get(instanceId);
+						if (!AuditedIssues.isSuppressed(audit)) {
+							String analysis = audits.getAnalysis(audit);
+							if (analysis == null) {
+								analysis = NOT_SET;
+							}
+							IssueGroup group = new IssueGroup(classId, confidence, severity, analysis);
+							int[] count = groups.get(group);
+							if (count == null) {
+								groups.put(group, new int[] { 1 });
+							} else {
+								count[0]++;
+							}
+						}
+						classId = null;
+					} else if ("Rule".equals(name) && rule != null) {
+						rules.put(ruleId, rule);
+						rule = null;
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		Result result = new Result();
+		for (Map.Entry<IssueGroup, int[]> entry : groups.entrySet()) {
+			IssueGroup group = entry.getKey();
+			result.add(getFolderName(group, rules.get(group.classId)), group.analysis, entry.getValue()[0]);
+		}
+		return result;
+	}
+
+	/**
+	 * Fortify Priority Order: issues are rated by the impact of the rule and the likelihood computed from rule accuracy,
+	 * instance confidence and rule probability. Falls back to the instance severity and confidence if the rule
+	 * metadata is missing.
+	 */
+	static String getFolderName(IssueGroup group, RuleMetadata rule) {
+		double impact;
+		double likelihood;
+		if (rule != null && rule.impact >= 0) {
+			impact = rule.impact;
+			likelihood = (rule.accuracy * group.confidence * rule.probability) / 25;
+		} else {
+			impact = group.severity;
+			likelihood = group.confidence;
+		}
+		if (impact >= PRIORITY_THRESHOLD) {
+			return likelihood >= PRIORITY_THRESHOLD ? IssueFolderBean.NAME_CRITICAL : IssueFolderBean.NAME_HIGH;
+		}
+		return likelihood >= PRIORITY_THRESHOLD ? IssueFolderBean.NAME_MEDIUM : IssueFolderBean.NAME_LOW;
+	}
+
+	private static double parseDouble(String value) {
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	@Override
+	public void checkRoles(RoleChecker arg0) throws SecurityException {
+		// do nothing at this time
+	}
+
+	/**
+	 * Analysis tag value and suppression flag of the audited issues by instance id. Instance ids are 128 bit hex
+	 * numbers, so they are kept as two longs in an open addressing table next to an int that encodes the flag and the
+	 * index of the Analysis value. Other instance ids, which FPRs of other tools might have, go to a map.
+	 */
+	static final class AuditedIssues {
+		static final int NOT_AUDITED = 0;
+
+		private static final int SUPPRESSED = 1;
+		private static final int AUDITED = 2;
+
+		private long[] highs = new long[64];
+		private long[] lows = new long[64];
+		// NOT_AUDITED for empty slots, otherwise (index of the Analysis value + 1) << 2 | AUDITED | SUPPRESSED
+		private int[] audits = new int[64];
+		private int size;
+		private final Map<String, Integer> otherIds = new HashMap<String, Integer>();
+		private final List<String> analysisValues = new ArrayList<String>();
+		private final Map<String, Integer> analysisIndexes = new HashMap<String, Integer>();
+		private final long[] parsed = new long[2];
+
+		void add(String instanceId, String analysis, boolean suppressed) {
+			int audit = (getAnalysisIndex(analysis) + 1) << 2 | AUDITED | (suppressed ? SUPPRESSED : 0);
+			if (!parse(instanceId)) {
+				if (otherIds.put(instanceId, Integer.valueOf(audit)) == null) {
+					size++;
+				}
+				return;
+			}
+			if ((size - otherIds.size() + 1) * 4 > audits.length * 3) {
+				grow();
+			}
+			int slot = findSlot(parsed[0], parsed[1]);
+			if (audits[slot] == NOT_AUDITED) {
+				highs[slot] = parsed[0];
+				lows[slot] = parsed[1];
+				size++;
+			}
+			audits[slot] = audit;
+		}
+
+		/**
+		 * @return the audit of the issue for {@link #isSuppressed(int)} and {@link #getAnalysis(int)} or
+		 *         {@link #NOT_AUDITED}
+		 */
+		int get(String instanceId) {
+			if (!parse(instanceId)) {
+				Integer audit = otherIds.get(instanceId);
+				return audit == null ? NOT_AUDITED : audit.intValue();
+			}
+			return audits[findSlot(parsed[0], parsed[1])];
+		}
+
+		static boolean isSuppressed(int audit) {
+			return (audit & SUPPRESSED) != 0;
+		}
+
+		/**
+		 * @return the Analysis tag value or null if it isn't set
+		 */
+		String getAnalysis(int audit) {
+			int index = (audit >>> 2) - 1;
+			return index < 0 || index >= analysisValues.size() ? null : analysisValues.get(index);
+		}
+
+		int size() {
+			return size;
+		}
+
+		private int getAnalysisIndex(String analysis) {
+			if (analysis == null) {
+				return -1;
+			}
+			Integer index = analysisIndexes.get(analysis);
+			if (index == null) {
+				index = Integer.valueOf(analysisValues.size());
+				analysisValues.add(analysis);
+				analysisIndexes.put(analysis, index);
+			}
+			return index.intValue();
+		}
+
+		/**
+		 * Parses a 32 digit hex instance id into {@link #parsed}
+		 */
+		private boolean parse(String instanceId) {
+			if (instanceId.length() != 32) {
+				return false;
+			}
+			for (int half = 0; half < 2; half++) {
+				long value = 0;
+				for (int i = half * 16; i < half * 16 + 16; i++) {
+					int digit = Character.digit(instanceId.charAt(i), 16);
+					if (digit < 0) {
+						return false;
+					}
+					value = value << 4 | digit;
+				}
+				parsed[half] = value;
+			}
+			return true;
+		}
+
+		private int findSlot(long high, long low) {
+			int mask = audits.length - 1;
+			long hash = (high ^ low) * 0x9E3779B97F4A7C15L;
+			int slot = (int) (hash >>> 32) & mask;
+			while (audits[slot] != NOT_AUDITED && (highs[slot] != high || lows[slot] != low)) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		private void grow() {
+			long[] oldHighs = highs;
+			long[] oldLows = lows;
+			int[] oldAudits = audits;
+			highs = new long[oldAudits.length * 2];
+			lows = new long[oldAudits.length * 2];
+			audits = new int[oldAudits.length * 2];
+			for (int i = 0; i < oldAudits.length; i++) {
+				if (oldAudits[i] != NOT_AUDITED) {
+					int slot = findSlot(oldHighs[i], oldLows[i]);
+					highs[slot] = oldHighs[i];
+					lows[slot] = oldLows[i];
+					audits[slot] = oldAudits[i];
+				}
+			}
+		}
+	}
+
+	static final class RuleMetadata {
+		double impact = -1;
+		double accuracy = 0;
+		double probability = 0;
+	}
+
+	static final class IssueGroup {
+		final String classId;
+		final double confidence;
+		final double severity;
+		final String analysis;
+
+		IssueGroup(String classId, double confidence, double severity, String analysis) {
+			this.classId = classId;
+			this.confidence = confidence;
+			this.severity = severity;
+			this.analysis = analysis;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof IssueGroup)) {
+				return false;
+			}
+			IssueGroup other = (IssueGroup) obj;
+			return classId.equals(other.classId) && confidence == other.confidence && severity == other.severity
+					&& analysis.equals(other.analysis);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(classId, Double.valueOf(confidence), Double.valueOf(severity), analysis);
+		}
+	}
+
+	/**
+	 * Issue counts by folder name and Analysis tag value
+	 */
+	public static class Result implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private static final List<String> FOLDER_NAMES = Arrays.asList(IssueFolderBean.NAME_CRITICAL,
+				IssueFolderBean.NAME_HIGH, IssueFolderBean.NAME_MEDIUM, IssueFolderBean.NAME_LOW);
+		// ids and colors of the folders of the default SSC filter set, in the order of FOLDER_NAMES
+		private static final List<String> FOLDER_IDS = Arrays.asList("b968f72f-cc12-03b5-976e-ad4c13920c21",
+				"5b50bb77-071d-08ed-fdba-1213fa90ac5a", "d5f55910-5f0d-a775-e91f-191d1f5608a4",
+				"bb824e8d-b401-40be-13bd-5d156696a685");
+		private static final List<String> FOLDER_COLORS = Arrays.asList("ed1c24", "ff7800", "f6aa58", "eec845");
+
+		private final Map<String, Map<String, Integer>> counts = new LinkedHashMap<String, Map<String, Integer>>();
+
+		public Result() {
+			for (String folderName : FOLDER_NAMES) {
+				counts.put(folderName, new LinkedHashMap<String, Integer>());
+			}
+		}
+
+		void add(String folderName, String analysis, int count) {
+			Map<String, Integer> folderCounts = counts.get(folderName);
+			Integer current = folderCounts.get(analysis);
+			folderCounts.put(analysis, Integer.valueOf(current == null ? count : current.intValue() + count));
+		}
+
+		public List<String> getFolderNames() {
+			return FOLDER_NAMES;
+		}
+
+		public String getFolderId(String folderName) {
+			int index = FOLDER_NAMES.indexOf(folderName);
+			return index < 0 ? IssueFolderBean.ID_ALL : FOLDER_IDS.get(index);
+		}
+
+		/**
+		 * @see FPRAnalyzer#matchesFolders(Map)
+		 */
+		public boolean matchesFolders(Map<String, String> folderNamesById) {
+			return FPRAnalyzer.matchesFolders(folderNamesById);
+		}
+
+		public String getFolderColor(String folderName) {
+			int index = FOLDER_NAMES.indexOf(folderName);
+			return index < 0 ? "80A958" : FOLDER_COLORS.get(index);
+		}
+
+		/**
+		 * @return number of not suppressed issues in the folder
+		 */
+		public int getIssueCount(String folderName) {
+			int total = 0;
+			for (Integer count : counts.get(folderName).values()) {
+				total += count.intValue();
+			}
+			return total;
+		}
+
+		public int getTotalIssues() {
+			int total = 0;
+			for (String folderName : FOLDER_NAMES) {
+				total += getIssueCount(folderName);
+			}
+			return total;
+		}
+
+		/**
+		 * Returns the issue counts of a folder in the same form as the Analysis grouping returned by SSC.
+		 *
+		 * @param folderName
+		 *            one of the folder names or "All"
+		 */
+		public List<GroupingValueBean> getAnalysisGroupingValues(String folderName, String folderId) {
+			Map<String, Integer> folderCounts;
+			if (IssueFolderBean.ATTRIBUTE_VALUE_ALL.equals(folderName)) {
+				folderCounts = new LinkedHashMap<String, Integer>();
+				for (Map<String, Integer> next : counts.values()) {
+					for (Map.Entry<String, Integer> entry : next.entrySet()) {
+						Integer current = folderCounts.get(entry.getKey());
+						folderCounts.put(entry.getKey(), Integer.valueOf(
+								current == null ? entry.getValue().intValue() : current.intValue() + entry.getValue().intValue()));
+					}
+				}
+			} else {
+				folderCounts = counts.get(folderName);
+			}
+			List<GroupingValueBean> result = new ArrayList<GroupingValueBean>();
+			if (folderCounts != null) {
+				for (Map.Entry<String, Integer> entry : folderCounts.entrySet()) {
+					String count = String.valueOf(entry.getValue());
+					result.add(new GroupingValueBean(entry.getKey(), folderId,
+							Arrays.asList(entry.getKey(), count, count, count, entry.getKey())));
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.lang.StringUtils;
+
+import jenkins.util.SystemProperties;
+
+/**
+ * Searches a workspace for the analysis results file. If several files qualify, the most recently modified one is
+ * returned, or the one with the shorter name if they were modified at the same time (copies are usually named
+ * "Copy of XXX.fpr").
+ * <p>
+ * The search skips directories matching the exclusion globs, e.g. VCS metadata and dependency caches, can be limited
+ * in depth and can stop at the first file with the requested name. Very large workspaces can be searched by several
+ * threads; the parallel search doesn't follow symbolic links.
+ */
+public class FPRLocator implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final String[] EXTENSIONS = { ".fpr", ".zip" }; // .zip is for third party results
+	static final String DEFAULT_EXCLUDES = ".git,.svn,.hg,.gradle,node_modules";
+
+	private final int maxDepth;
+	private final List<String> excludes;
+	private final int parallelism;
+	private final boolean stopAtFirstMatch;
+
+	FPRLocator(int maxDepth, List<String> excludes, int parallelism, boolean stopAtFirstMatch) {
+		this.maxDepth = maxDepth;
+		this.excludes = excludes;
+		this.parallelism = parallelism;
+		this.stopAtFirstMatch = stopAtFirstMatch;
+	}
+
+	/**
+	 * Creates a locator configured by the system properties of the controller
+	 */
+	public static FPRLocator fromSystemProperties() {
+		String prefix = FPRLocator.class.getName();
+		int maxDepth = SystemProperties.getInteger(prefix + ".maxDepth", Integer.MAX_VALUE);
+		String excludes = SystemProperties.getString(prefix + ".excludes", DEFAULT_EXCLUDES);
+		int parallelism = SystemProperties.getInteger(prefix + ".parallelism", 1);
+		boolean stopAtFirstMatch = SystemProperties.getBoolean(prefix + ".stopAtFirstMatch");
+		return new FPRLocator(maxDepth <= 0 ? Integer.MAX_VALUE : maxDepth,
+				new ArrayList<String>(Arrays.asList(StringUtils.split(excludes, ", "))), parallelism, stopAtFirstMatch);
+	}
+
+	/**
+	 * @param preferredFileName
+	 *            name of the file to look for or empty to accept any FPR or ZIP file
+	 * @return the located file or null if there is none
+	 */
+	public File locate(File workspace, String preferredFileName) throws IOException {
+		Path root = workspace.toPath();
+		if (!Files.isDirectory(root)) {
+			return null;
+		}
+		Search search = new Search(preferredFileName);
+		Candidate found;
+		if (parallelism > 1) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				found = pool.invoke(new DirectorySearch(search, root, 0));
+			} finally {
+				pool.shutdown();
+			}
+		} else {
+			found = walk(search, root);
+		}
+		return found == null ? null : found.path.toFile();
+	}
+
+	private Candidate walk(final Search search, final Path root) throws IOException {
+		final Candidate[] found = new Candidate[1];
+		Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				return !dir.equals(root) && search.isExcluded(dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && search.matches(file)) {
+					found[0] = Candidate.better(found[0], new Candidate(file, attrs.lastModifiedTime().toMillis()));
+					if (search.stopAfterMatch()) {
+						return FileVisitResult.TERMINATE;
+					}
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) {
+				// unreadable directories and symbolic link loops are skipped
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return found[0];
+	}
+
+	/**
+	 * State shared by all directories of one search
+	 */
+	private class Search {
+		private final String preferredFileName;
+		private final List<PathMatcher> excludeMatchers = new ArrayList<PathMatcher>();
+		private volatile boolean done;
+
+		Search(String preferredFileName) {
+			this.preferredFileName = preferredFileName;
+			for (String exclude : excludes) {
+				excludeMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + exclude));
+			}
+		}
+
+		boolean isExcluded(Path dir) {
+			Path name = dir.getFileName();
+			if (name == null) {
+				return false;
+			}
+			for (PathMatcher matcher : excludeMatchers) {
+				if (matcher.matches(name)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		boolean matches(Path file) {
+			String name = file.getFileName().toString();
+			for (String extension : EXTENSIONS) {
+				if (name.endsWith(extension)) {
+					return StringUtils.isEmpty(preferredFileName) || preferredFileName.equalsIgnoreCase(name);
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Called for every matching file
+		 *
+		 * @return true if the search can stop
+		 */
+		boolean stopAfterMatch() {
+			if (stopAtFirstMatch && StringUtils.isNotEmpty(preferredFileName)) {
+				done = true;
+			}
+			return done;
+		}
+	}
+
+	private class DirectorySearch extends RecursiveTask<Candidate> {
+		private static final long serialVersionUID = 1L;
+
+		private final Search search;
+		private final Path dir;
+		private final int depth;
+
+		DirectorySearch(Search search, Path dir, int depth) {
+			this.search = search;
+			this.dir = dir;
+			this.depth = depth;
+		}
+
+		@Override
+		protected Candidate compute() {
+			Candidate found = null;
+			List<DirectorySearch> subdirs = new ArrayList<DirectorySearch>();
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+				for (Path entry : entries) {
+					if (search.done) {
+						break;
+					}
+					BasicFileAttributes attrs;
+					try {
+						attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					} catch (IOException e) {
+						continue;
+					}
+					if (attrs.isDirectory()) {
+						if (depth + 1 < maxDepth && !search.isExcluded(entry)) {
+							DirectorySearch subdir = new DirectorySearch(search, entry, depth + 1);
+							subdir.fork();
+							subdirs.add(subdir);
+						}
+					} else if (attrs.isRegularFile() && depth + 1 <= maxDepth && search.matches(entry)) {
+						found = Candidate.better(found, new Candidate(entry, attrs.lastModifiedTime().toMillis()));
+						search.stopAfterMatch();
+					}
+				}
+			} catch (IOException e) {
+				// unreadable directories are skipped
+			}
+			for (DirectorySearch subdir : subdirs) {
+				found = Candidate.better(found, subdir.join());
+			}
+			return found;
+		}
+	}
+
+	private static class Candidate {
+		private final Path path;
+		private final long lastModified;
+
+		Candidate(Path path, long lastModified) {
+			this.path = path;
+			this.lastModified = lastModified;
+		}
+
+		static Candidate better(Candidate a, Candidate b) {
+			if (a == null) {
+				return b;
+			}
+			if (b == null) {
+				return a;
+			}
+			if (a.lastModified != b.lastModified) {
+				return a.lastModified > b.lastModified ? a : b;
+			}
+			return a.path.getFileName().toString().length() <= b.path.getFileName().toString().length() ? a : b;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import java.util.List;
+
+import com.fortify.plugin.jenkins.bean.GroupingValueBean;
+import com.fortify.plugin.jenkins.bean.IssueFolderBean;
+
+/**
+ * Accumulates the Analysis tag grouping values of all folders of an application version and computes the build
+ * statistics from them in memory.
+ * <p>
+ * NVS = Normalized Vulnerability Score<br>
+ * NVS = ((((CFPO*10)+(HFPO*5)+(MFPO*1)+(LFPO*0.1))*.5)+(((P1*2)+(P2*4)+(P3*16)+(PABOVE*64))*.5))/(ExecutableLOC/1000)
+ */
+public class FPRStatistics {
+
+	private int CFPO = 0; // Number of Critical Vulnerabilities (unless marked as "Not an Issue")
+	private int HFPO = 0; // Number of High Vulnerabilities (unless marked as "Not an Issue")
+	private int MFPO = 0; // Number of Medium Vulnerabilities (unless marked as "Not an Issue")
+	private int LFPO = 0; // Number of Low Vulnerabilities (unless marked as "Not an Issue")
+
+	private int PABOVE = 0; // Exploitable
+	private int P3 = 0; // Suspicious
+	private int P2 = 0; // Bad Practice
+	private int P1 = 0; // Reliability Issue
+
+	private int failedCount = 0;
+	private int totalIssues = 0;
+
+	/**
+	 * @return true if the Analysis grouping values of the named folder contribute to the statistics
+	 */
+	public static boolean isRated(String name) {
+		return IssueFolderBean.NAME_CRITICAL.equals(name) || IssueFolderBean.NAME_HOT.equals(name)
+				|| IssueFolderBean.NAME_HIGH.equals(name) || IssueFolderBean.NAME_WARNING.equals(name)
+				|| IssueFolderBean.NAME_MEDIUM.equals(name) || IssueFolderBean.NAME_LOW.equals(name)
+				|| IssueFolderBean.NAME_INFO.equals(name) || IssueFolderBean.ATTRIBUTE_VALUE_ALL.equals(name);
+	}
+
+	/**
+	 * Adds the Analysis tag grouping values of one folder
+	 *
+	 * @param name
+	 *            folder name, e.g. Critical
+	 * @param issueCount
+	 *            total number of issues in the folder
+	 */
+	public void addFolder(String name, int issueCount, List<GroupingValueBean> groupingValues) {
+		if (IssueFolderBean.NAME_CRITICAL.equals(name) || IssueFolderBean.NAME_HOT.equals(name)) {
+			CFPO += countIssues(groupingValues);
+		} else if (IssueFolderBean.NAME_HIGH.equals(name) || IssueFolderBean.NAME_WARNING.equals(name)) {
+			HFPO += countIssues(groupingValues);
+		} else if (IssueFolderBean.NAME_MEDIUM.equals(name)) {
+			MFPO += countIssues(groupingValues);
+		} else if (IssueFolderBean.NAME_LOW.equals(name) || IssueFolderBean.NAME_INFO.equals(name)) {
+			LFPO += countIssues(groupingValues);
+		} else if (IssueFolderBean.ATTRIBUTE_VALUE_ALL.equals(name)) {
+			totalIssues = issueCount;
+			for (GroupingValueBean group : groupingValues) {
+				if (group.getName().startsWith(GroupingValueBean.ID_EXPLOITABLE)) {
+					PABOVE += group.getTotalCount();
+				} else if (group.getName().startsWith(GroupingValueBean.ID_SUSPICIOUS)) {
+					P3 += group.getTotalCount();
+				} else if (group.getName().startsWith(GroupingValueBean.ID_BAD_PRACTICE)) {
+					P2 += group.getTotalCount();
+				} else if (group.getName().startsWith(GroupingValueBean.ID_RELIABILITY)) {
+					P1 += group.getTotalCount();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the grouping values of the issues matching the failure criteria
+	 */
+	public void addFailureCriteriaMatches(List<GroupingValueBean> groupingValues) {
+		failedCount += countIssues(groupingValues);
+	}
+
+	private static int countIssues(List<GroupingValueBean> groupingValues) {
+		int count = 0;
+		for (GroupingValueBean group : groupingValues) {
+			if (GroupingValueBean.ID_NOT_AN_ISSUE.equals(group.getName())) {
+				continue;
+			}
+			count += group.getTotalCount();
+		}
+		return count;
+	}
+
+	public double getNvs() {
+		return ((((CFPO * 10.) + (HFPO * 5) + (MFPO * 1.) + (LFPO * 0.1)) * .5)
+				+ (((P1 * 2.) + (P2 * 4.) + (P3 * 16.) + (PABOVE * 64.)) * .5)) / 1.0;// (ExecutableLOC/1000);
+	}
+
+	public int getFailedCount() {
+		return failedCount;
+	}
+
+	public int getTotalIssues() {
+		return totalIssues;
+	}
+
+	public int getCriticalCount() {
+		return CFPO;
+	}
+
+	public int getHighCount() {
+		return HFPO;
+	}
+
+	public int getMediumCount() {
+		return MFPO;
+	}
+
+	public int getLowCount() {
+		return LFPO;
+	}
+}
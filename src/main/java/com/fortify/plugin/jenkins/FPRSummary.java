@@ -37,6 +37,7 @@ public class FPRSummary implements Serializable {
 	private static final String FILE_EXTENSION = ".xml";
 
 	private FilePath fprFile;
+	private String fprHash;
 	private String logMsg;
 
 	private transient PersistentSummary persistentSummary;
@@ -45,7 +46,10 @@ public class FPRSummary implements Serializable {
 		persistentSummary = new PersistentSummary();
 	}
 
-	private String buildFilename(String appName, String appVersion) {
+	/**
+	 * @return name of the file the summary of the given application version is stored in, under the build directory
+	 */
+	public static String getFileName(String appName, String appVersion) {
 		String filename = FILE_BASENAME;
 		if (appName != null) {
 			filename += "-" + appName;
@@ -60,14 +64,24 @@ public class FPRSummary implements Serializable {
 	}
 
 	public void load(File parent, String appName, String appVersion) throws IOException {
-		File file = new File(parent, buildFilename(appName, appVersion));
+		load(new File(parent, getFileName(appName, appVersion)));
+	}
+
+	public void load(File file) throws IOException {
 		XmlFile xml = new XmlFile(getXStream(), file);
 		persistentSummary = (PersistentSummary) xml.read();
 	}
 
+	/**
+	 * @return true if the file name is the one of a stored summary
+	 */
+	public static boolean isSummaryFile(String fileName) {
+		return fileName.startsWith(FILE_BASENAME) && fileName.endsWith(FILE_EXTENSION);
+	}
+
 	public void save(File parent, String appName, String appVersion) throws IOException {
 		// save data under the builds directory, this is always in Jenkins master node
-		File file = new File(parent, buildFilename(appName, appVersion));
+		File file = new File(parent, getFileName(appName, appVersion));
 		XmlFile xml = new XmlFile(getXStream(), file);
 		xml.write(persistentSummary);
 	}
@@ -97,6 +111,17 @@ public class FPRSummary implements Serializable {
 		this.fprFile = fprFile;
 	}
 
+	/**
+	 * @return SHA-256 hash of the FPR in hex or null if it wasn't calculated
+	 */
+	public String getFprHash() {
+		return fprHash;
+	}
+
+	public void setFprHash(String fprHash) {
+		this.fprHash = fprHash;
+	}
+
 	public int getFailedCount() {
 		return persistentSummary.failedCount;
 	}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fortify.plugin.jenkins.bean.IssueFolderBean;
+import com.fortify.plugin.jenkins.steps.FortifyUpload;
+
+import hudson.model.StreamBuildListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.SystemProperties;
+
+/**
+ * Issue folders of an application version. The last known folders are returned right away and reloaded from SSC in
+ * the background once they are older than the TTL; only one reload runs at a time. Callers wait for SSC only when
+ * nothing was loaded yet or the folders are older than the maximum staleness, and at most for the maximum wait; the
+ * last known folders are returned if SSC doesn't answer in time.
+ */
+class FolderCache {
+	private static final Logger LOGGER = Logger.getLogger(FolderCache.class.getName());
+
+	private static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(
+			SystemProperties.getLong(FolderCache.class.getName() + ".ttlSeconds", Long.valueOf(60)).longValue());
+	private static final long MAX_STALE_MILLIS = TimeUnit.SECONDS.toMillis(
+			SystemProperties.getLong(FolderCache.class.getName() + ".maxStaleSeconds", Long.valueOf(3600)).longValue());
+	private static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(
+			SystemProperties.getLong(FolderCache.class.getName() + ".maxWaitSeconds", Long.valueOf(120)).longValue());
+
+	private static final ExecutorService REFRESH_EXECUTOR = createRefreshExecutor();
+
+	private static ExecutorService createRefreshExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new NamingThreadFactory(new DaemonThreadFactory(), "FolderCache.refresh"));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private final FortifyUpload manager;
+	private final long ttlMillis;
+	private final long maxStaleMillis;
+	private final long maxWaitMillis;
+	private final RequestCoalescer<String, List<IssueFolderBean>> refresh = new RequestCoalescer<String, List<IssueFolderBean>>();
+	private volatile List<IssueFolderBean> folders;
+	private volatile IssuePageCache.Revision revision;
+	private volatile long loadedAt;
+
+	FolderCache(FortifyUpload manager) {
+		this(manager, TTL_MILLIS, MAX_STALE_MILLIS, MAX_WAIT_MILLIS);
+	}
+
+	FolderCache(FortifyUpload manager, long ttlMillis, long maxStaleMillis, long maxWaitMillis) {
+		this.manager = manager;
+		this.ttlMillis = ttlMillis;
+		this.maxStaleMillis = maxStaleMillis;
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	/**
+	 * @param invalidated
+	 *            true if the folders are known to have changed, they are reloaded even if the TTL hasn't expired
+	 */
+	List<IssueFolderBean> get(boolean invalidated) {
+		List<IssueFolderBean> current = folders;
+		long age = System.currentTimeMillis() - loadedAt;
+		if (current == null || age > maxStaleMillis) {
+			return await(refresh(), current);
+		}
+		if (invalidated || age > ttlMillis) {
+			refresh();
+		}
+		return current;
+	}
+
+	/**
+	 * @return revision of the issue data when the folders were loaded or null if it's not known
+	 */
+	IssuePageCache.Revision getRevision() {
+		return revision;
+	}
+
+	/**
+	 * @return time of the last reload or 0 if the folders weren't loaded yet
+	 */
+	long getLoadedAt() {
+		return loadedAt;
+	}
+
+	private CompletableFuture<List<IssueFolderBean>> refresh() {
+		return refresh.submit("folders", REFRESH_EXECUTOR, new Callable<List<IssueFolderBean>>() {
+			@Override
+			public List<IssueFolderBean> call() {
+				try {
+					StreamBuildListener listener = new StreamBuildListener(System.out, Charset.defaultCharset());
+					List<IssueFolderBean> loaded = loadFolders(listener);
+					revision = loadRevision(listener);
+					folders = loaded;
+					loadedAt = System.currentTimeMillis();
+					return loaded;
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Failed to load the issue folders", e);
+					return null;
+				}
+			}
+		});
+	}
+
+	List<IssueFolderBean> loadFolders(StreamBuildListener listener) {
+		return manager.getFolders(listener);
+	}
+
+	IssuePageCache.Revision loadRevision(StreamBuildListener listener) {
+		return manager.getIssueRevision(listener);
+	}
+
+	private List<IssueFolderBean> await(CompletableFuture<List<IssueFolderBean>> future, List<IssueFolderBean> stale) {
+		try {
+			List<IssueFolderBean> loaded = future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+			if (loaded != null) {
+				return loaded;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			LOGGER.log(Level.WARNING, "Failed to load the issue folders", e.getCause());
+		} catch (TimeoutException e) {
+			LOGGER.log(Level.FINE, "Timed out waiting for the issue folders");
+		}
+		return stale == null ? Collections.<IssueFolderBean>emptyList() : stale;
+	}
+}
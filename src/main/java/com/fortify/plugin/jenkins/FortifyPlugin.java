@@ -54,6 +54,8 @@ import com.fortify.plugin.jenkins.credentials.StandardFortifyApiToken;
 import com.fortify.plugin.jenkins.credentials.FortifyApiToken;
 import com.fortify.plugin.jenkins.fortifyclient.FortifyClient;
 import com.fortify.plugin.jenkins.fortifyclient.FortifyClient.NoReturn;
+import com.fortify.plugin.jenkins.fortifyclient.FortifyClientRegistry;
+import com.fortify.plugin.jenkins.fortifyclient.SscResponseCache;
 import com.fortify.plugin.jenkins.steps.CloudScanArguments;
 import com.fortify.plugin.jenkins.steps.CloudScanMbs;
 import com.fortify.plugin.jenkins.steps.CloudScanStart;
@@ -62,6 +64,7 @@ import com.fortify.plugin.jenkins.steps.FortifyScan;
 import com.fortify.plugin.jenkins.steps.FortifyTranslate;
 import com.fortify.plugin.jenkins.steps.FortifyUpdate;
 import com.fortify.plugin.jenkins.steps.FortifyUpload;
+import com.fortify.plugin.jenkins.steps.Validators;
 import com.fortify.plugin.jenkins.steps.remote.GradleProjectType;
 import com.fortify.plugin.jenkins.steps.remote.MavenProjectType;
 import com.fortify.plugin.jenkins.steps.remote.RemoteAnalysisProjectType;
@@ -80,6 +83,7 @@ import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.AbortException;
 import hudson.BulkChange;
 import hudson.Extension;
+import hudson.Functions;
 import hudson.Launcher;
 import hudson.Plugin;
 import hudson.model.AbstractBuild;
@@ -140,8 +144,6 @@ public class FortifyPlugin extends Recorder {
 
 	private static final Logger LOGGER = Logger.getLogger(FortifyPlugin.class.getName());
 
-	private static Object syncObj = new Object();
-
 	public static final int DEFAULT_PAGE_SIZE = 50;
 	public static final int DEFAULT_APP_VERSION_LIST_LIMIT = 100;
 
@@ -862,12 +864,9 @@ public class FortifyPlugin extends Recorder {
 		if (cmd != null) {
 			String url = DESCRIPTOR.getUrl();
 			try {
-				FortifyClient client = null;
-				synchronized (syncObj) {
-					client = new FortifyClient();
-					ProxyConfig proxyConfig = DESCRIPTOR.getProxyConfig();
-					client.init(url, token, proxyConfig, DESCRIPTOR.getConnectTimeout(), DESCRIPTOR.getReadTimeout(), DESCRIPTOR.getWriteTimeout());
-				}
+				ProxyConfig proxyConfig = DESCRIPTOR.getProxyConfig();
+				FortifyClient client = FortifyClientRegistry.getClient(url, token, proxyConfig,
+						DESCRIPTOR.getConnectTimeout(), DESCRIPTOR.getReadTimeout(), DESCRIPTOR.getWriteTimeout());
 				return cmd.runWith(client);
 			} catch (ApiException e) {
 				String message = e.getMessage();
@@ -1170,6 +1169,18 @@ public class FortifyPlugin extends Recorder {
 			this.writeTimeout = writeTimeout;
 		}
 
+		/**
+		 * @return how many SSC metadata requests were answered from the {@link SscResponseCache} since Jenkins was
+		 *         started
+		 */
+		public String getResponseCacheStatistics() {
+			long requests = SscResponseCache.getRequestCount();
+			long hits = SscResponseCache.getHitCount();
+			return String.format(Locale.ROOT, "%d of %d requests answered from the cache (%d%%), %d of them after revalidation; %s on disk",
+					hits, requests, requests == 0 ? 0 : hits * 100 / requests, SscResponseCache.getConditionalHitCount(),
+					Functions.humanReadableByteSize(SscResponseCache.getSize()));
+		}
+
 		public String getCtrlUrl() { 
 			return ctrlUrl;
 		}
@@ -1321,18 +1332,7 @@ public class FortifyPlugin extends Recorder {
 		}
 
 		public FormValidation doCheckPollingInterval(@QueryParameter String value) {
-			if (StringUtils.isBlank(value) || value.charAt(0) == '$') {
-				return FormValidation.ok();
-			} else {
-				int x = -1;
-				try {
-					x = Integer.parseInt(value);
-					if (x >= 0 && x <= 60)
-						return FormValidation.ok();
-				} catch (NumberFormatException e) {
-				}
-				return FormValidation.error("The unit is in minutes, and in the range of 0 to 60");
-			}
+			return Validators.checkPollingInterval(value);
 		}
 
 		@POST
@@ -1792,6 +1792,7 @@ public class FortifyPlugin extends Recorder {
 				b.close();
 			}
 			save();
+			FortifyClientRegistry.invalidateAll(getUrl(), getToken());
 			isSettingUpdated = true;
 			return super.configure(req, jsonObject);
 		}
@@ -2007,20 +2008,9 @@ public class FortifyPlugin extends Recorder {
 							new FortifyClient.Command<Map<String, String>>() {
 								@Override
 								public Map<String, String> runWith(FortifyClient client) throws Exception {
-									Map<String, Long> appList = client.getProjectList(appName, 1);
-									if (appList != null && appList.size() == 1) {
-										for (Map.Entry<String, Long> nextApp : appList.entrySet()) {
-											if (nextApp.getKey().equals(appName)) {
-												Map<String, Long> versionList = client.getVersionListEx(nextApp.getValue(), appVersion, 1);
-												if (versionList != null && versionList.size() == 1) {
-													for (Map.Entry<String, Long> nextVer : versionList.entrySet()) {
-														if (nextVer.getKey().equals(appVersion)) {
-															return client.getFilterSetListEx(nextVer.getValue());
-														}
-													}
-												}
-											}
-										}
+									Long versionId = client.getProjectVersionId(appName, appVersion);
+									if (versionId != null) {
+										return client.getFilterSetListEx(versionId);
 									}
 									return Collections.emptyMap();
 								}
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fortify.plugin.jenkins.bean.IssueBean;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.SystemProperties;
+
+/**
+ * Pages of issues shared by all users of the controller, so that users browsing the same folder don't query SSC
+ * again and don't keep their own copies. Pages are keyed by the latest artifact of the application version, so a new
+ * upload makes them unreachable; audit changes made in SSC show up once the page expires. The least recently used
+ * pages are evicted when the cache holds more than the maximum number of issues.
+ * <p>
+ * Pages next to the one shown can be loaded in the background on a small pool, so paging doesn't wait for SSC.
+ */
+public class IssuePageCache {
+	private static final Logger LOGGER = Logger.getLogger(IssuePageCache.class.getName());
+
+	private static final long MAX_ISSUES = SystemProperties
+			.getLong(IssuePageCache.class.getName() + ".maxIssues", Long.valueOf(20000)).longValue();
+	private static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(
+			SystemProperties.getLong(IssuePageCache.class.getName() + ".ttlSeconds", Long.valueOf(300)).longValue());
+
+	// also load the page before the one shown, not just the one after it
+	static final boolean PREFETCH_PREVIOUS = SystemProperties.getBoolean(IssuePageCache.class.getName() + ".prefetchPrevious");
+	private static final int PREFETCH_THREADS = Math.max(1,
+			SystemProperties.getInteger(IssuePageCache.class.getName() + ".prefetchThreads", 2));
+
+	private static final ExecutorService PREFETCH_EXECUTOR = createPrefetchExecutor(PREFETCH_THREADS,
+			PREFETCH_THREADS * 8);
+
+	static ExecutorService createPrefetchExecutor(int threads, int queueSize) {
+		// prefetching is skipped rather than queued when SSC can't keep up
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(queueSize),
+				new NamingThreadFactory(new DaemonThreadFactory(), "IssuePageCache.prefetch"));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static final IssuePageCache INSTANCE = new IssuePageCache();
+
+	private final long maxIssues;
+	private final long ttlMillis;
+	private final ExecutorService prefetchExecutor;
+	private final LinkedHashMap<Key, Page> pages = new LinkedHashMap<Key, Page>(16, 0.75f, true);
+	private final RequestCoalescer<Key, List<IssueBean>> loading = new RequestCoalescer<Key, List<IssueBean>>();
+	private long issues;
+
+	private IssuePageCache() {
+		this(MAX_ISSUES, TTL_MILLIS, PREFETCH_EXECUTOR);
+	}
+
+	IssuePageCache(long maxIssues, long ttlMillis, ExecutorService prefetchExecutor) {
+		this.maxIssues = maxIssues;
+		this.ttlMillis = ttlMillis;
+		this.prefetchExecutor = prefetchExecutor;
+	}
+
+	public static IssuePageCache get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the cached page or loads it. If another thread is already loading the same page, waits for it instead.
+	 * Empty pages aren't cached because the issue queries return no issues on errors.
+	 */
+	public List<IssueBean> getPage(final Key key, final Callable<List<IssueBean>> loader) throws Exception {
+		List<IssueBean> cached = getCached(key);
+		if (cached != null) {
+			return cached;
+		}
+		return loading.call(key, new Callable<List<IssueBean>>() {
+			@Override
+			public List<IssueBean> call() throws Exception {
+				// loaded by another thread since the cache was checked
+				List<IssueBean> issues = getCached(key);
+				if (issues != null) {
+					return issues;
+				}
+				issues = Collections.unmodifiableList(loader.call());
+				if (!issues.isEmpty()) {
+					synchronized (IssuePageCache.this) {
+						put(key, new Page(issues));
+					}
+				}
+				return issues;
+			}
+		});
+	}
+
+	private synchronized List<IssueBean> getCached(Key key) {
+		Page page = pages.get(key);
+		return page != null && System.currentTimeMillis() - page.created <= ttlMillis ? page.issues : null;
+	}
+
+	/**
+	 * Loads the page in the background unless it's cached or already being loaded
+	 *
+	 * @return the background task or null if nothing has to be loaded or too many pages are being prefetched
+	 */
+	public Future<?> prefetch(final Key key, final Callable<List<IssueBean>> loader) {
+		if (getCached(key) != null || loading.isRunning(key)) {
+			return null;
+		}
+		try {
+			return prefetchExecutor.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						getPage(key, loader);
+					} catch (Exception e) {
+						LOGGER.log(Level.FINE, "Failed to prefetch a page of issues", e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			return null;
+		}
+	}
+
+	private void put(Key key, Page page) {
+		if (page.issues.size() > maxIssues) {
+			return;
+		}
+		Page previous = pages.put(key, page);
+		if (previous != null) {
+			issues -= previous.issues.size();
+		}
+		issues += page.issues.size();
+		while (issues > maxIssues) {
+			Map.Entry<Key, Page> eldest = pages.entrySet().iterator().next();
+			issues -= eldest.getValue().issues.size();
+			pages.remove(eldest.getKey());
+		}
+	}
+
+	private static class Page {
+		private final List<IssueBean> issues;
+		private final long created = System.currentTimeMillis();
+
+		Page(List<IssueBean> issues) {
+			this.issues = issues;
+		}
+	}
+
+	/**
+	 * Identifies the issue data of an application version: the SSC server, the version, its latest artifact and the
+	 * filter set used to query it
+	 */
+	public static final class Revision implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final String sscUrl;
+		private final Long appVersionId;
+		private final Long artifactId;
+		private final String filterSet;
+
+		public Revision(String sscUrl, Long appVersionId, Long artifactId, String filterSet) {
+			this.sscUrl = sscUrl;
+			this.appVersionId = appVersionId;
+			this.artifactId = artifactId;
+			this.filterSet = filterSet;
+		}
+
+		public String getSscUrl() {
+			return sscUrl;
+		}
+
+		public Long getAppVersionId() {
+			return appVersionId;
+		}
+
+		public Long getArtifactId() {
+			return artifactId;
+		}
+
+		public String getFilterSet() {
+			return filterSet;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Revision)) {
+				return false;
+			}
+			Revision that = (Revision) o;
+			return Objects.equals(sscUrl, that.sscUrl) && Objects.equals(appVersionId, that.appVersionId)
+					&& Objects.equals(artifactId, that.artifactId) && Objects.equals(filterSet, that.filterSet);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(sscUrl, appVersionId, artifactId, filterSet);
+		}
+	}
+
+	public static final class Key {
+		private final Revision revision;
+		private final String folderId;
+		private final int page;
+		private final int pageSize;
+		private final TableAction.SortOrder sortOrder;
+		private final boolean downNotUp;
+		private final boolean showingAllNotNew;
+		private final String grouping;
+
+		public Key(Revision revision, String folderId, int page, int pageSize, TableAction.SortOrder sortOrder,
+				boolean downNotUp, boolean showingAllNotNew, String grouping) {
+			this.revision = revision;
+			this.folderId = folderId;
+			this.page = page;
+			this.pageSize = pageSize;
+			this.sortOrder = sortOrder;
+			this.downNotUp = downNotUp;
+			this.showingAllNotNew = showingAllNotNew;
+			this.grouping = grouping;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) o;
+			return page == that.page && pageSize == that.pageSize && downNotUp == that.downNotUp
+					&& showingAllNotNew == that.showingAllNotNew && sortOrder == that.sortOrder
+					&& revision.equals(that.revision) && Objects.equals(folderId, that.folderId)
+					&& Objects.equals(grouping, that.grouping);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(revision, folderId, Integer.valueOf(page), Integer.valueOf(pageSize), sortOrder,
+					Boolean.valueOf(downNotUp), Boolean.valueOf(showingAllNotNew), grouping);
+		}
+	}
+}
@@ -0,0 +1,402 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import com.fortify.plugin.jenkins.bean.IssueBean;
+import com.fortify.plugin.jenkins.bean.IssueFolderBean;
+
+import hudson.Util;
+
+/**
+ * Issues of an application version as they were when a build uploaded its results, stored in the build directory
+ * next to the {@link FPRSummary}. The issue table of the job shows them instead of querying SSC.
+ * <p>
+ * The file is a gzipped stream: a header with the revision and the folders, then the issues of every folder in the
+ * order of the header. Strings that repeat across issues, such as file paths, categories and severities, are written
+ * once and then referenced by their index; the table of these strings is limited to {@value #MAX_STRINGS} entries,
+ * later strings are written inline. Values that are unique to an issue, such as the instance id and the line number,
+ * are always written inline, and so is whether the last scan found the issue, which lets the table show only the new
+ * issues. The file is written and read one issue at a time.
+ * <p>
+ * The issue table reads the {@link IssueStore} created from the snapshot, which can be paged and sorted without
+ * reading the whole file.
+ */
+public class IssueSnapshot implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOGGER = Logger.getLogger(IssueSnapshot.class.getName());
+
+	private static final String FILE_BASENAME = "fortify-issues";
+	private static final String FILE_EXTENSION = ".gz";
+	private static final int MAGIC = 0x46495353; // FISS
+	private static final int FORMAT_VERSION = 3;
+
+	// markers of the string references
+	private static final int NEW_STRING = -1;
+	private static final int NULL_STRING = -2;
+	private static final int INLINE_STRING = -3;
+	private static final int MAX_STRINGS = 65536;
+
+	private final File file;
+	private final IssuePageCache.Revision revision;
+	private final String appName;
+	private final String appVersion;
+	private final List<IssueFolderBean> folders;
+	// keeps the store mapped while the snapshot is shown
+	private transient IssueStore store;
+
+	private IssueSnapshot(File file, IssuePageCache.Revision revision, String appName, String appVersion,
+			List<IssueFolderBean> folders) {
+		this.file = file;
+		this.revision = revision;
+		this.appName = appName;
+		this.appVersion = appVersion;
+		this.folders = folders;
+	}
+
+	/**
+	 * @return name of the file the snapshot of the given application version is stored in, under the build directory
+	 */
+	public static String getFileName(String appName, String appVersion) {
+		String filename = FILE_BASENAME;
+		if (appName != null) {
+			filename += "-" + appName;
+		}
+		if (appVersion != null) {
+			filename += "-" + appVersion;
+		}
+		return Util.rawEncode(filename + FILE_EXTENSION);
+	}
+
+	/**
+	 * Reads the header of a snapshot
+	 */
+	public static IssueSnapshot open(File file) throws IOException {
+		try (DataInputStream in = openStream(file)) {
+			return readHeader(file, in);
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public IssuePageCache.Revision getRevision() {
+		return revision;
+	}
+
+	public List<IssueFolderBean> getFolders() {
+		return folders;
+	}
+
+	/**
+	 * Reads a page of issues from the {@link IssueStore} of the snapshot, or from the snapshot itself if the store
+	 * can't be created
+	 *
+	 * @param pageSize
+	 *            number of issues per page or -1 for all issues of the folder
+	 * @param newOnly
+	 *            to page through the new issues of the folder only
+	 */
+	public List<IssueBean> getIssues(String folderId, int page, int pageSize, TableAction.SortOrder sortOrder,
+			boolean downNotUp, boolean newOnly) throws IOException {
+		IssueStore current;
+		synchronized (this) {
+			if (store == null) {
+				try {
+					store = IssueStore.get(this);
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Failed to create the issue store of " + file, e);
+					return getIssues(folderId, page, pageSize, newOnly);
+				}
+			}
+			current = store;
+		}
+		return current.getIssues(this, folderId, page, pageSize, sortOrder, downNotUp, newOnly);
+	}
+
+	/**
+	 * Reads a page of issues in the order they were written
+	 *
+	 * @param pageSize
+	 *            number of issues per page or -1 for all issues of the folder
+	 * @param newOnly
+	 *            to page through the new issues of the folder only
+	 */
+	public List<IssueBean> getIssues(String folderId, int page, int pageSize, boolean newOnly) throws IOException {
+		List<IssueBean> issues = new ArrayList<IssueBean>();
+		long first = pageSize == -1 ? 0 : (long) page * pageSize;
+		try (DataInputStream in = openStream(file)) {
+			readHeader(file, in);
+			StringTable strings = new StringTable();
+			while (in.readBoolean()) {
+				boolean requested = in.readUTF().equals(folderId);
+				long index = 0;
+				while (in.readBoolean()) {
+					// every issue is read since it may define strings used later
+					IssueBean issue = readIssue(in, strings);
+					if (!requested || (newOnly && !issue.isNew())) {
+						continue;
+					}
+					if (index >= first && (pageSize == -1 || issues.size() < pageSize)) {
+						issues.add(issue);
+					}
+					index++;
+				}
+				if (requested) {
+					break;
+				}
+			}
+		}
+		return issues;
+	}
+
+	/**
+	 * Reads all issues of all folders
+	 */
+	void read(Visitor visitor) throws IOException {
+		try (DataInputStream in = openStream(file)) {
+			readHeader(file, in);
+			StringTable strings = new StringTable();
+			while (in.readBoolean()) {
+				visitor.startFolder(in.readUTF());
+				while (in.readBoolean()) {
+					visitor.issue(readIssue(in, strings));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return an issue of the application version of the snapshot
+	 */
+	IssueBean newIssue() {
+		IssueBean issue = new IssueBean();
+		issue.setProjectVersionId(revision.getAppVersionId());
+		issue.setProjectName(appName);
+		issue.setProjectVersionName(appVersion);
+		return issue;
+	}
+
+	private IssueBean readIssue(DataInputStream in, StringTable strings) throws IOException {
+		IssueBean issue = newIssue();
+		long issueId = in.readLong();
+		issue.setIssueId(issueId == Long.MIN_VALUE ? null : Long.valueOf(issueId));
+		issue.setIssueInstanceId(readInline(in));
+		String filePath = strings.read(in);
+		issue.setSourceFilePath(filePath);
+		issue.setFilePath(filePath);
+		issue.setLineNumber(readInline(in));
+		String issueName = strings.read(in);
+		issue.setGroupName(issueName);
+		issue.setCategory(issueName);
+		issue.setType(issueName);
+		issue.setMappedCategory(issueName);
+		issue.setConfidence(strings.read(in));
+		issue.setSeverity(strings.read(in));
+		issue.setEngineType(strings.read(in));
+		issue.setNew(in.readBoolean());
+		return issue;
+	}
+
+	private static String readInline(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static DataInputStream openStream(File file) throws IOException {
+		return new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file.toPath()))));
+	}
+
+	private static IssueSnapshot readHeader(File file, DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			throw new IOException("Unsupported issue snapshot " + file);
+		}
+		String sscUrl = in.readUTF();
+		Long appVersionId = Long.valueOf(in.readLong());
+		long artifactId = in.readLong();
+		String filterSet = in.readUTF();
+		String appName = in.readUTF();
+		String appVersion = in.readUTF();
+		int folderCount = in.readInt();
+		List<IssueFolderBean> folders = new ArrayList<IssueFolderBean>(folderCount);
+		for (int i = 0; i < folderCount; i++) {
+			String id = in.readUTF();
+			List<String> attributes = Arrays.asList(in.readUTF(), in.readUTF(), in.readUTF(),
+					String.valueOf(in.readInt()), String.valueOf(in.readInt()));
+			folders.add(new IssueFolderBean(id, appName, appVersion, attributes));
+		}
+		IssuePageCache.Revision revision = new IssuePageCache.Revision(sscUrl, appVersionId,
+				artifactId == Long.MIN_VALUE ? null : Long.valueOf(artifactId), filterSet);
+		return new IssueSnapshot(file, revision, appName, appVersion, folders);
+	}
+
+	private static String nullToEmpty(String s) {
+		return s == null ? "" : s;
+	}
+
+	/**
+	 * Writes a snapshot to a temporary file, which replaces the snapshot file on {@link #commit()}. Call
+	 * {@link #startFolder(String)}, {@link #write(IssueBean)} and {@link #endFolder()} for every folder of the
+	 * header, in the same order.
+	 */
+	public static class Writer implements Closeable {
+		private final File file;
+		private final File tmp;
+		private final DataOutputStream out;
+		private final Map<String, Integer> strings = new HashMap<String, Integer>();
+		private long issues;
+		private boolean committed;
+
+		public Writer(File file, IssuePageCache.Revision revision, String appName, String appVersion,
+				List<IssueFolderBean> folders) throws IOException {
+			this.file = file;
+			this.tmp = new File(file.getPath() + ".tmp");
+			this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp.toPath()))));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(nullToEmpty(revision.getSscUrl()));
+			out.writeLong(revision.getAppVersionId().longValue());
+			out.writeLong(revision.getArtifactId() == null ? Long.MIN_VALUE : revision.getArtifactId().longValue());
+			out.writeUTF(nullToEmpty(revision.getFilterSet()));
+			out.writeUTF(nullToEmpty(appName));
+			out.writeUTF(nullToEmpty(appVersion));
+			out.writeInt(folders.size());
+			for (IssueFolderBean folder : folders) {
+				out.writeUTF(folder.getId());
+				out.writeUTF(nullToEmpty(folder.getName()));
+				out.writeUTF(nullToEmpty(folder.getDescription()));
+				out.writeUTF(nullToEmpty(folder.getColor()));
+				out.writeInt(folder.getIssueCount());
+				out.writeInt(folder.getIssueNewCount());
+			}
+		}
+
+		public void startFolder(String folderId) throws IOException {
+			out.writeBoolean(true);
+			out.writeUTF(folderId);
+		}
+
+		public void write(IssueBean issue) throws IOException {
+			out.writeBoolean(true);
+			out.writeLong(issue.getIssueId() == null ? Long.MIN_VALUE : issue.getIssueId().longValue());
+			writeInline(issue.getIssueInstanceId());
+			writeString(issue.getFilePath());
+			writeInline(issue.getLineNumber());
+			writeString(issue.getMappedCategory());
+			writeString(issue.getConfidence());
+			writeString(issue.getSeverity());
+			writeString(issue.getEngineType());
+			out.writeBoolean(issue.isNew());
+			issues++;
+		}
+
+		public void endFolder() throws IOException {
+			out.writeBoolean(false);
+		}
+
+		/**
+		 * @return number of issues written
+		 */
+		public long getIssueCount() {
+			return issues;
+		}
+
+		public void commit() throws IOException {
+			out.writeBoolean(false);
+			out.close();
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			committed = true;
+		}
+
+		private void writeString(String s) throws IOException {
+			if (s == null) {
+				out.writeInt(NULL_STRING);
+				return;
+			}
+			Integer index = strings.get(s);
+			if (index != null) {
+				out.writeInt(index.intValue());
+			} else if (strings.size() < MAX_STRINGS) {
+				strings.put(s, Integer.valueOf(strings.size()));
+				out.writeInt(NEW_STRING);
+				out.writeUTF(s);
+			} else {
+				out.writeInt(INLINE_STRING);
+				out.writeUTF(s);
+			}
+		}
+
+		private void writeInline(String s) throws IOException {
+			out.writeBoolean(s != null);
+			if (s != null) {
+				out.writeUTF(s);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!committed) {
+				out.close();
+				Files.deleteIfExists(tmp.toPath());
+			}
+		}
+	}
+
+	interface Visitor {
+		void startFolder(String folderId) throws IOException;
+
+		void issue(IssueBean issue) throws IOException;
+	}
+
+	private static class StringTable {
+		private final List<String> strings = new ArrayList<String>();
+
+		String read(DataInputStream in) throws IOException {
+			int index = in.readInt();
+			if (index == NULL_STRING) {
+				return null;
+			}
+			if (index == NEW_STRING) {
+				String s = in.readUTF();
+				strings.add(s);
+				return s;
+			}
+			if (index == INLINE_STRING) {
+				return in.readUTF();
+			}
+			return strings.get(index);
+		}
+	}
+}
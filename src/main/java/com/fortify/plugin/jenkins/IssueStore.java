@@ -0,0 +1,616 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fortify.plugin.jenkins.bean.IssueBean;
+
+/**
+ * Columnar copy of an {@link IssueSnapshot} that is read through a memory-mapped buffer, so that application
+ * versions with hundreds of thousands of issues don't have to be loaded into the heap to be paged and sorted. Every
+ * issue is stored once, with one column per field: strings as indexes into a dictionary of the distinct strings, the
+ * line number as an int, the confidence and severity as floats, whether the issue is new as a byte. A folder is a
+ * list of row numbers. Issue beans are created only for the rows of the requested page.
+ * <p>
+ * The file is created next to the snapshot when the build saves it, or from an older snapshot the first time it is
+ * shown. The store stays mapped while a snapshot refers to it. Java unmaps the buffer only once the store is garbage
+ * collected, unmapping it earlier isn't safe while pages are read. Until then Windows doesn't let the file be deleted,
+ * so deleting a build whose issues were just shown can fail there; setting
+ * <code>hudson.Util.performGCOnFailedDelete</code> lets Jenkins collect the store and retry. Only files with a valid
+ * header are mapped, so a file that has to be recreated isn't held by a rejected mapping.
+ */
+public class IssueStore {
+	private static final Logger LOGGER = Logger.getLogger(IssueStore.class.getName());
+
+	private static final String FILE_EXTENSION = ".cols";
+	private static final int MAGIC = 0x46495343; // FISC
+	private static final int FORMAT_VERSION = 2;
+
+	private static final int NULL_STRING = -1;
+
+	// sections of the file, their offsets follow the counts in the header
+	private static final int ISSUE_ID = 0;
+	private static final int INSTANCE_ID = 1;
+	private static final int FILE_PATH = 2;
+	private static final int LINE_NUMBER = 3;
+	private static final int CATEGORY = 4;
+	private static final int CONFIDENCE = 5;
+	private static final int SEVERITY = 6;
+	private static final int ENGINE_TYPE = 7;
+	private static final int NEW_ISSUE = 8;
+	private static final int STRING_OFFSETS = 9;
+	private static final int STRING_DATA = 10;
+	private static final int FOLDERS = 11;
+	private static final int SECTIONS = 12;
+	private static final int HEADER_SIZE = (5 + SECTIONS) * 4;
+
+	// snapshot file -> store, shared by the snapshots of all views; entries of collected stores are removed through
+	// the queue
+	private static final Map<File, StoreReference> STORES = new HashMap<File, StoreReference>();
+	private static final ReferenceQueue<IssueStore> COLLECTED = new ReferenceQueue<IssueStore>();
+	// stores being opened or created, by snapshot file; creating one reads the whole snapshot, so it's done outside of
+	// the lock of STORES and only blocks the users of the same snapshot
+	private static final RequestCoalescer<File, IssueStore> OPENING = new RequestCoalescer<File, IssueStore>();
+
+	private final File file;
+	private final ByteBuffer buffer;
+	private final int rows;
+	private final int[] sections = new int[SECTIONS];
+	// folder id -> offset and number of its rows
+	private final Map<String, int[]> folders = new HashMap<String, int[]>();
+	// strings are decoded once; a string decoded twice by concurrent readers is harmless
+	private final String[] strings;
+	// folder id, sorted, new only -> rows in the order they are shown, guarded by this
+	private final Map<List<Object>, int[]> orders = new HashMap<List<Object>, int[]>();
+
+	private IssueStore(File file) throws IOException {
+		this.file = file;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Issue store is too large " + file);
+			}
+			ByteBuffer header = ByteBuffer.allocate(8);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+				// read the magic number and the version
+			}
+			if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION
+					|| channel.size() < HEADER_SIZE) {
+				throw new IOException("Unsupported issue store " + file);
+			}
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		this.rows = buffer.getInt(8);
+		this.strings = new String[buffer.getInt(12)];
+		int folderCount = buffer.getInt(16);
+		for (int i = 0; i < SECTIONS; i++) {
+			sections[i] = buffer.getInt(20 + i * 4);
+		}
+		int offset = sections[FOLDERS];
+		for (int i = 0; i < folderCount; i++) {
+			String folderId = getString(buffer.getInt(offset));
+			int count = buffer.getInt(offset + 4);
+			folders.put(folderId, new int[] { offset + 8, count });
+			offset += 8 + count * 4;
+		}
+	}
+
+	/**
+	 * @return name of the store file of a snapshot file
+	 */
+	static File getStoreFile(File snapshotFile) {
+		String name = snapshotFile.getName();
+		int extension = name.lastIndexOf('.');
+		return new File(snapshotFile.getParentFile(), (extension > 0 ? name.substring(0, extension) : name) + FILE_EXTENSION);
+	}
+
+	/**
+	 * Opens the store of a snapshot, creating it if the snapshot doesn't have one yet
+	 */
+	static IssueStore get(final IssueSnapshot snapshot) throws IOException {
+		final File snapshotFile = snapshot.getFile();
+		IssueStore store = getOpen(snapshotFile);
+		if (store != null) {
+			return store;
+		}
+		try {
+			return OPENING.call(snapshotFile, new Callable<IssueStore>() {
+				@Override
+				public IssueStore call() throws IOException {
+					// opened by another thread since it was checked
+					IssueStore store = getOpen(snapshotFile);
+					if (store == null) {
+						store = open(snapshot);
+						synchronized (STORES) {
+							STORES.put(snapshotFile, new StoreReference(snapshotFile, store));
+						}
+					}
+					return store;
+				}
+			});
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static IssueStore getOpen(File snapshotFile) {
+		synchronized (STORES) {
+			removeCollected();
+			StoreReference cached = STORES.get(snapshotFile);
+			return cached == null ? null : cached.get();
+		}
+	}
+
+	private static IssueStore open(IssueSnapshot snapshot) throws IOException {
+		File snapshotFile = snapshot.getFile();
+		File file = getStoreFile(snapshotFile);
+		if (!file.exists() || file.lastModified() < snapshotFile.lastModified()) {
+			create(snapshot);
+		}
+		try {
+			return new IssueStore(file);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Recreating " + file, e);
+			create(snapshot);
+			return new IssueStore(file);
+		}
+	}
+
+	/**
+	 * @return number of stores that haven't been garbage collected
+	 */
+	static int getStoreCount() {
+		synchronized (STORES) {
+			removeCollected();
+			return STORES.size();
+		}
+	}
+
+	private static void removeCollected() {
+		StoreReference collected;
+		while ((collected = (StoreReference) COLLECTED.poll()) != null) {
+			// the file may have a newer store already
+			STORES.remove(collected.snapshotFile, collected);
+		}
+	}
+
+	/**
+	 * Writes the store of a snapshot. The columns are collected in primitive arrays, only the dictionary holds
+	 * strings.
+	 */
+	public static void create(IssueSnapshot snapshot) throws IOException {
+		final Columns columns = new Columns();
+		snapshot.read(new IssueSnapshot.Visitor() {
+			@Override
+			public void startFolder(String folderId) {
+				columns.startFolder(folderId);
+			}
+
+			@Override
+			public void issue(IssueBean issue) {
+				columns.add(issue);
+			}
+		});
+		File file = getStoreFile(snapshot.getFile());
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+				columns.write(out);
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp.toPath());
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return number of distinct issues
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * @return number of issues in the folder or -1 if the store doesn't have it
+	 */
+	public int getIssueCount(String folderId) {
+		int[] folder = folders.get(folderId);
+		return folder == null ? -1 : folder[1];
+	}
+
+	/**
+	 * @param pageSize
+	 *            number of issues per page or -1 for all issues of the folder
+	 * @param sortOrder
+	 *            null to return the issues in the order SSC returned them
+	 * @param newOnly
+	 *            to page through the new issues of the folder only
+	 */
+	List<IssueBean> getIssues(IssueSnapshot snapshot, String folderId, int page, int pageSize,
+			TableAction.SortOrder sortOrder, boolean downNotUp, boolean newOnly) {
+		int[] folder = folders.get(folderId);
+		if (folder == null) {
+			return new ArrayList<IssueBean>();
+		}
+		int[] rows = getRows(folderId, folder, sortOrder != null, newOnly);
+		int count = rows == null ? folder[1] : rows.length;
+		long first = pageSize == -1 ? 0 : (long) page * pageSize;
+		int last = (int) Math.min(count, pageSize == -1 ? count : first + pageSize);
+		List<IssueBean> issues = new ArrayList<IssueBean>(Math.max(0, last - (int) Math.min(first, count)));
+		for (int i = (int) Math.min(first, count); i < last; i++) {
+			int row;
+			if (rows == null) {
+				row = buffer.getInt(folder[0] + i * 4);
+			} else {
+				row = rows[sortOrder != null && downNotUp ? count - 1 - i : i];
+			}
+			issues.add(createIssue(snapshot, row));
+		}
+		return issues;
+	}
+
+	/**
+	 * @return rows of the folder in the order they are shown, or null for all rows in the order SSC returned them
+	 */
+	private synchronized int[] getRows(String folderId, int[] folder, boolean sorted, boolean newOnly) {
+		if (!sorted && !newOnly) {
+			return null;
+		}
+		List<Object> key = Arrays.<Object>asList(folderId, Boolean.valueOf(sorted), Boolean.valueOf(newOnly));
+		int[] rows = orders.get(key);
+		if (rows != null) {
+			return rows;
+		}
+		if (newOnly) {
+			int[] all = getRows(folderId, folder, sorted, false);
+			IntList selected = new IntList();
+			for (int i = 0; i < folder[1]; i++) {
+				int row = all == null ? buffer.getInt(folder[0] + i * 4) : all[i];
+				if (buffer.get(sections[NEW_ISSUE] + row) != 0) {
+					selected.add(row);
+				}
+			}
+			rows = selected.toArray();
+		} else {
+			rows = sortRows(folder);
+		}
+		orders.put(key, rows);
+		return rows;
+	}
+
+	private IssueBean createIssue(IssueSnapshot snapshot, int row) {
+		IssueBean issue = snapshot.newIssue();
+		long issueId = buffer.getLong(sections[ISSUE_ID] + row * 8);
+		issue.setIssueId(issueId == Long.MIN_VALUE ? null : Long.valueOf(issueId));
+		issue.setIssueInstanceId(getString(getInt(INSTANCE_ID, row)));
+		String filePath = getString(getInt(FILE_PATH, row));
+		issue.setSourceFilePath(filePath);
+		issue.setFilePath(filePath);
+		issue.setLineNumber(getInt(LINE_NUMBER, row));
+		String issueName = getString(getInt(CATEGORY, row));
+		issue.setGroupName(issueName);
+		issue.setCategory(issueName);
+		issue.setType(issueName);
+		issue.setMappedCategory(issueName);
+		issue.setConfidence(getFloat(CONFIDENCE, row));
+		issue.setSeverity(getFloat(SEVERITY, row));
+		issue.setEngineType(getString(getInt(ENGINE_TYPE, row)));
+		issue.setNew(buffer.get(sections[NEW_ISSUE] + row) != 0);
+		return issue;
+	}
+
+	/**
+	 * Sorts the rows of a folder by file path, ignoring case, and line number like
+	 * {@link TableAction.SortOrder#getIssueBeanComparator(boolean)}. Paths are compared by their dictionary index
+	 * after the distinct paths are ranked once.
+	 */
+	private int[] sortRows(int[] folder) {
+		Integer[] order = new Integer[folder[1]];
+		Map<Integer, String> paths = new HashMap<Integer, String>();
+		for (int i = 0; i < order.length; i++) {
+			order[i] = Integer.valueOf(buffer.getInt(folder[0] + i * 4));
+			int path = getInt(FILE_PATH, order[i].intValue());
+			if (!paths.containsKey(Integer.valueOf(path))) {
+				String filePath = getString(path);
+				paths.put(Integer.valueOf(path), filePath == null ? "" : filePath.toLowerCase(Locale.ENGLISH));
+			}
+		}
+		List<Map.Entry<Integer, String>> byName = new ArrayList<Map.Entry<Integer, String>>(paths.entrySet());
+		byName.sort(Map.Entry.<Integer, String>comparingByValue());
+		final Map<Integer, Integer> ranks = new HashMap<Integer, Integer>();
+		int rank = 0;
+		String previous = null;
+		for (Map.Entry<Integer, String> path : byName) {
+			if (previous != null && !previous.equals(path.getValue())) {
+				rank++;
+			}
+			ranks.put(path.getKey(), Integer.valueOf(rank));
+			previous = path.getValue();
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer row1, Integer row2) {
+				int path1 = getInt(FILE_PATH, row1.intValue());
+				int path2 = getInt(FILE_PATH, row2.intValue());
+				if (path1 == path2) {
+					return Integer.compare(getInt(LINE_NUMBER, row1.intValue()), getInt(LINE_NUMBER, row2.intValue()));
+				}
+				return ranks.get(Integer.valueOf(path1)).compareTo(ranks.get(Integer.valueOf(path2)));
+			}
+		});
+		int[] sorted = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			sorted[i] = order[i].intValue();
+		}
+		return sorted;
+	}
+
+	private int getInt(int column, int row) {
+		return buffer.getInt(sections[column] + row * 4);
+	}
+
+	private float getFloat(int column, int row) {
+		return buffer.getFloat(sections[column] + row * 4);
+	}
+
+	private String getString(int index) {
+		if (index == NULL_STRING) {
+			return null;
+		}
+		String s = strings[index];
+		if (s == null) {
+			int start = buffer.getInt(sections[STRING_OFFSETS] + index * 4);
+			int end = buffer.getInt(sections[STRING_OFFSETS] + (index + 1) * 4);
+			byte[] bytes = new byte[end - start];
+			ByteBuffer data = buffer.duplicate();
+			data.position(sections[STRING_DATA] + start);
+			data.get(bytes);
+			s = new String(bytes, StandardCharsets.UTF_8);
+			strings[index] = s;
+		}
+		return s;
+	}
+
+	private static float parseFloat(String value) {
+		if (value == null) {
+			return Float.NaN;
+		}
+		try {
+			return Float.parseFloat(value);
+		} catch (NumberFormatException e) {
+			return Float.NaN;
+		}
+	}
+
+	/**
+	 * Columns of a store being created
+	 */
+	private static class Columns {
+		private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		private final List<String> strings = new ArrayList<String>();
+		// dictionary index of an instance id -> its row + 1, 0 if the string isn't an instance id
+		private final IntList instanceRows = new IntList();
+		private final Map<String, IntList> folders = new LinkedHashMap<String, IntList>();
+		private IntList folder;
+
+		private final LongList issueIds = new LongList();
+		private final IntList instanceIds = new IntList();
+		private final IntList filePaths = new IntList();
+		private final IntList lineNumbers = new IntList();
+		private final IntList categories = new IntList();
+		private final IntList confidences = new IntList();
+		private final IntList severities = new IntList();
+		private final IntList engineTypes = new IntList();
+		private final IntList newIssues = new IntList();
+
+		void startFolder(String folderId) {
+			index(folderId);
+			folder = new IntList();
+			folders.put(folderId, folder);
+		}
+
+		void add(IssueBean issue) {
+			int instanceId = index(issue.getIssueInstanceId());
+			int row = instanceId == NULL_STRING ? -1 : instanceRows.get(instanceId, 0) - 1;
+			if (row == -1) {
+				// the same issue is usually in more than one folder
+				row = issueIds.size();
+				issueIds.add(issue.getIssueId() == null ? Long.MIN_VALUE : issue.getIssueId().longValue());
+				instanceIds.add(instanceId);
+				filePaths.add(index(issue.getFilePath()));
+				lineNumbers.add(issue.getLineNumberValue());
+				categories.add(index(issue.getMappedCategory()));
+				confidences.add(Float.floatToIntBits(parseFloat(issue.getConfidence())));
+				severities.add(Float.floatToIntBits(parseFloat(issue.getSeverity())));
+				engineTypes.add(index(issue.getEngineType()));
+				newIssues.add(issue.isNew() ? 1 : 0);
+				if (instanceId != NULL_STRING) {
+					instanceRows.set(instanceId, row + 1);
+				}
+			}
+			folder.add(row);
+		}
+
+		private int index(String s) {
+			if (s == null) {
+				return NULL_STRING;
+			}
+			Integer index = dictionary.get(s);
+			if (index == null) {
+				index = Integer.valueOf(strings.size());
+				dictionary.put(s, index);
+				strings.add(s);
+			}
+			return index.intValue();
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			int rows = issueIds.size();
+			List<byte[]> encoded = new ArrayList<byte[]>(strings.size());
+			int dataSize = 0;
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				encoded.add(bytes);
+				dataSize += bytes.length;
+			}
+			int[] sections = new int[SECTIONS];
+			int offset = HEADER_SIZE;
+			sections[ISSUE_ID] = offset;
+			offset += rows * 8;
+			for (int column = INSTANCE_ID; column <= ENGINE_TYPE; column++) {
+				sections[column] = offset;
+				offset += rows * 4;
+			}
+			sections[NEW_ISSUE] = offset;
+			offset += rows;
+			sections[STRING_OFFSETS] = offset;
+			offset += (strings.size() + 1) * 4;
+			sections[STRING_DATA] = offset;
+			offset += dataSize;
+			sections[FOLDERS] = offset;
+
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(rows);
+			out.writeInt(strings.size());
+			out.writeInt(folders.size());
+			for (int section : sections) {
+				out.writeInt(section);
+			}
+			for (int i = 0; i < rows; i++) {
+				out.writeLong(issueIds.get(i));
+			}
+			for (IntList column : Arrays.asList(instanceIds, filePaths, lineNumbers, categories, confidences, severities,
+					engineTypes)) {
+				for (int i = 0; i < rows; i++) {
+					out.writeInt(column.get(i));
+				}
+			}
+			for (int i = 0; i < rows; i++) {
+				out.writeByte(newIssues.get(i));
+			}
+			int stringOffset = 0;
+			out.writeInt(stringOffset);
+			for (byte[] bytes : encoded) {
+				stringOffset += bytes.length;
+				out.writeInt(stringOffset);
+			}
+			for (byte[] bytes : encoded) {
+				out.write(bytes);
+			}
+			for (Map.Entry<String, IntList> entry : folders.entrySet()) {
+				out.writeInt(dictionary.get(entry.getKey()).intValue());
+				out.writeInt(entry.getValue().size());
+				for (int i = 0; i < entry.getValue().size(); i++) {
+					out.writeInt(entry.getValue().get(i));
+				}
+			}
+		}
+	}
+
+	private static class StoreReference extends WeakReference<IssueStore> {
+		private final File snapshotFile;
+
+		StoreReference(File snapshotFile, IssueStore store) {
+			super(store, COLLECTED);
+			this.snapshotFile = snapshotFile;
+		}
+	}
+
+	private static class IntList {
+		private int[] values = new int[1024];
+		private int size;
+
+		void add(int value) {
+			set(size, value);
+		}
+
+		void set(int index, int value) {
+			if (index >= values.length) {
+				values = Arrays.copyOf(values, Math.max(values.length * 2, index + 1));
+			}
+			values[index] = value;
+			size = Math.max(size, index + 1);
+		}
+
+		int get(int index) {
+			return values[index];
+		}
+
+		/**
+		 * @return the value or the default if it was never set
+		 */
+		int get(int index, int defaultValue) {
+			return index < size ? values[index] : defaultValue;
+		}
+
+		int size() {
+			return size;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class LongList {
+		private long[] values = new long[1024];
+		private int size;
+
+		void add(long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		long get(int index) {
+			return values[index];
+		}
+
+		int size() {
+			return size;
+		}
+	}
+}
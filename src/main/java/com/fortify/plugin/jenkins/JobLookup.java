@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+import jenkins.model.Jenkins;
+
+/**
+ * Finds jobs by their full name without scanning all items of the controller. Jobs that were found are remembered
+ * until they are renamed, moved or deleted.
+ */
+public final class JobLookup {
+	private static final Map<String, WeakReference<Job<?, ?>>> JOBS = new ConcurrentHashMap<String, WeakReference<Job<?, ?>>>();
+
+	private JobLookup() {
+	}
+
+	/**
+	 * @return the job or null if it doesn't exist or the current user can't see it
+	 */
+	public static Job<?, ?> getJob(String fullName) {
+		if (fullName == null) {
+			return null;
+		}
+		WeakReference<Job<?, ?>> cached = JOBS.get(fullName);
+		Job<?, ?> job = cached == null ? null : cached.get();
+		if (job != null) {
+			return canRead(job) ? job : null;
+		}
+		job = Jenkins.get().getItemByFullName(fullName, Job.class);
+		if (job != null) {
+			JOBS.put(fullName, new WeakReference<Job<?, ?>>(job));
+		}
+		return job;
+	}
+
+	/**
+	 * Checks the item and the folders it is in, like {@link Jenkins#getItemByFullName(String, Class)} does when it
+	 * resolves the name
+	 */
+	private static boolean canRead(Item item) {
+		for (ItemGroup<?> parent = item.getParent(); parent instanceof Item; parent = ((Item) parent).getParent()) {
+			if (!((Item) parent).hasPermission(Item.READ)) {
+				return false;
+			}
+		}
+		return item.hasPermission(Item.READ);
+	}
+
+	/**
+	 * Forgets the item and, if it is a folder, everything in it
+	 */
+	static void invalidate(String fullName) {
+		String prefix = fullName + '/';
+		for (Iterator<String> names = JOBS.keySet().iterator(); names.hasNext();) {
+			String name = names.next();
+			if (name.equals(fullName) || name.startsWith(prefix)) {
+				names.remove();
+			}
+		}
+	}
+
+	@Extension
+	public static class ItemListenerImpl extends ItemListener {
+		@Override
+		public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+			invalidate(oldFullName);
+		}
+
+		@Override
+		public void onDeleted(Item item) {
+			invalidate(item.getFullName());
+		}
+	}
+}
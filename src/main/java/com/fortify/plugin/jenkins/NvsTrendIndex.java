@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fortify.plugin.jenkins.bean.IssueFolderBean;
+
+import hudson.model.Job;
+import hudson.model.Run;
+
+/**
+ * NVS and issue counts of every completed build of a job, per application version, so that the trend graph doesn't
+ * have to load every build and its summary. The index is stored in the job directory as an append-only file with one
+ * line per build and summary; it is created from the existing builds the first time it's needed.
+ * <p>
+ * The first line of the file is {@link #HEADER} with the format version. The lines of the first version had no header
+ * and only the NVS. A file without the current header is migrated by creating it again from the builds.
+ */
+public class NvsTrendIndex {
+	private static final Logger LOGGER = Logger.getLogger(NvsTrendIndex.class.getName());
+
+	static final String FILE_NAME = "fortify-trend.log";
+	static final int FORMAT_VERSION = 2;
+	static final String HEADER = "#fortify-trend\t" + FORMAT_VERSION;
+
+	private static final Map<Job<?, ?>, NvsTrendIndex> INDEXES = new WeakHashMap<Job<?, ?>, NvsTrendIndex>();
+
+	private static final FilenameFilter SUMMARY_FILES = new FilenameFilter() {
+		@Override
+		public boolean accept(File dir, String name) {
+			return FPRSummary.isSummaryFile(name);
+		}
+	};
+
+	// the index is the value of a weak map keyed by the job
+	private final WeakReference<Job<?, ?>> job;
+	// summary file name -> build number -> statistics
+	private final Map<String, TreeMap<Integer, Point>> points = new HashMap<String, TreeMap<Integer, Point>>();
+	private boolean loaded;
+
+	private NvsTrendIndex(Job<?, ?> job) {
+		this.job = new WeakReference<Job<?, ?>>(job);
+	}
+
+	public static NvsTrendIndex get(Job<?, ?> job) {
+		synchronized (INDEXES) {
+			NvsTrendIndex index = INDEXES.get(job);
+			if (index == null) {
+				index = new NvsTrendIndex(job);
+				INDEXES.put(job, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * @return true if the build stored at least one summary
+	 */
+	static boolean hasSummary(Run<?, ?> run) {
+		String[] summaries = run.getRootDir().list(SUMMARY_FILES);
+		return summaries != null && summaries.length > 0;
+	}
+
+	private File getFile() {
+		return new File(getJob().getRootDir(), FILE_NAME);
+	}
+
+	private Job<?, ?> getJob() {
+		Job<?, ?> owner = job.get();
+		if (owner == null) {
+			throw new IllegalStateException("The job was deleted");
+		}
+		return owner;
+	}
+
+	/**
+	 * @param summaryFileName
+	 *            see {@link FPRSummary#getFileName(String, String)}
+	 * @param maxBuilds
+	 *            number of the most recent builds to return or 0 for all
+	 * @return build number -> statistics
+	 */
+	public synchronized SortedMap<Integer, Point> getTrend(String summaryFileName, int maxBuilds) {
+		ensureLoaded();
+		TreeMap<Integer, Point> trend = points.get(summaryFileName);
+		if (trend == null) {
+			return Collections.emptySortedMap();
+		}
+		if (maxBuilds <= 0 || trend.size() <= maxBuilds) {
+			return new TreeMap<Integer, Point>(trend);
+		}
+		TreeMap<Integer, Point> window = new TreeMap<Integer, Point>();
+		for (Map.Entry<Integer, Point> point : trend.descendingMap().entrySet()) {
+			if (window.size() == maxBuilds) {
+				break;
+			}
+			window.put(point.getKey(), point.getValue());
+		}
+		return window;
+	}
+
+	/**
+	 * @param sinceBuild
+	 *            only builds with a higher number are returned
+	 * @param limit
+	 *            maximum number of builds to return, the oldest ones are returned first
+	 * @return build number -> statistics
+	 */
+	public synchronized SortedMap<Integer, Point> getTrend(String summaryFileName, int sinceBuild, int limit) {
+		ensureLoaded();
+		TreeMap<Integer, Point> trend = points.get(summaryFileName);
+		TreeMap<Integer, Point> page = new TreeMap<Integer, Point>();
+		if (trend != null) {
+			for (Map.Entry<Integer, Point> point : trend.tailMap(sinceBuild, false).entrySet()) {
+				if (page.size() == limit) {
+					break;
+				}
+				page.put(point.getKey(), point.getValue());
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Adds the summaries of a completed build
+	 */
+	public synchronized void add(Run<?, ?> run) {
+		if (!loaded) {
+			ensureLoaded(); // includes the build
+			return;
+		}
+		StringBuilder lines = new StringBuilder();
+		for (Map.Entry<String, Point> summary : readSummaries(run).entrySet()) {
+			Point previous = put(summary.getKey(), run.getNumber(), summary.getValue());
+			if (!summary.getValue().equals(previous)) {
+				summary.getValue().appendLine(lines, summary.getKey(), run.getNumber());
+			}
+		}
+		if (lines.length() > 0) {
+			if (!getFile().exists()) {
+				// written with the header
+				write();
+				return;
+			}
+			try {
+				Files.write(getFile().toPath(), lines.toString().getBytes(StandardCharsets.UTF_8),
+						StandardOpenOption.APPEND);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Failed to update " + getFile(), e);
+			}
+		}
+	}
+
+	/**
+	 * Removes a deleted build
+	 */
+	public synchronized void remove(int buildNumber) {
+		if (!loaded) {
+			return; // the build won't be found when the index is created
+		}
+		boolean removed = false;
+		for (TreeMap<Integer, Point> trend : points.values()) {
+			removed |= trend.remove(buildNumber) != null;
+		}
+		if (removed) {
+			write();
+		}
+	}
+
+	private void ensureLoaded() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		File file = getFile();
+		if (file.exists()) {
+			try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+				String line = reader.readLine();
+				if (HEADER.equals(line)) {
+					while ((line = reader.readLine()) != null) {
+						String[] fields = line.split("\t");
+						if (fields.length >= 5) {
+							try {
+								put(fields[1], Integer.parseInt(fields[0]), Point.parse(fields));
+							} catch (NumberFormatException e) {
+								// skip a line that was only partially written
+							}
+						}
+					}
+					return;
+				}
+				LOGGER.log(Level.FINE, "Migrating {0} to version {1}", new Object[] { file, Integer.valueOf(FORMAT_VERSION) });
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Failed to read " + file + ", recreating it", e);
+				points.clear();
+			}
+		}
+		for (Run<?, ?> run : getJob().getBuilds()) {
+			if (!run.isBuilding()) {
+				for (Map.Entry<String, Point> summary : readSummaries(run).entrySet()) {
+					put(summary.getKey(), run.getNumber(), summary.getValue());
+				}
+			}
+		}
+		write();
+	}
+
+	private Point put(String summaryFileName, int buildNumber, Point point) {
+		TreeMap<Integer, Point> trend = points.get(summaryFileName);
+		if (trend == null) {
+			trend = new TreeMap<Integer, Point>();
+			points.put(summaryFileName, trend);
+		}
+		return trend.put(buildNumber, point);
+	}
+
+	private static Map<String, Point> readSummaries(Run<?, ?> run) {
+		Map<String, Point> summaries = new HashMap<String, Point>();
+		File[] files = run.getRootDir().listFiles(SUMMARY_FILES);
+		if (files != null) {
+			for (File file : files) {
+				FPRSummary summary = new FPRSummary();
+				try {
+					summary.load(file);
+					summaries.put(file.getName(), new Point(summary));
+				} catch (IOException e) {
+					LOGGER.log(Level.FINE, "Failed to read " + file, e);
+				}
+			}
+		}
+		return summaries;
+	}
+
+	private void write() {
+		File file = getFile();
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+				StringBuilder lines = new StringBuilder(HEADER).append('\n');
+				for (Map.Entry<String, TreeMap<Integer, Point>> trend : points.entrySet()) {
+					for (Map.Entry<Integer, Point> point : trend.getValue().entrySet()) {
+						point.getValue().appendLine(lines, trend.getKey(), point.getKey());
+					}
+				}
+				writer.write(lines.toString());
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to write " + file, e);
+		}
+	}
+
+	/**
+	 * Statistics of one build. Stored as "build, summary file, NVS, total issues, failed count, folder:count..."
+	 * separated by tabs.
+	 */
+	public static class Point {
+		private final double nvs;
+		private final int totalIssues;
+		private final int failedCount;
+		// folder name -> issue count, in the order of the summary
+		private final Map<String, Integer> folders;
+
+		Point(FPRSummary summary) {
+			this.nvs = summary.getNvs();
+			this.totalIssues = summary.getTotalIssues();
+			this.failedCount = summary.getFailedCount();
+			this.folders = new LinkedHashMap<String, Integer>();
+			for (IssueFolderBean folder : summary.getFolderBeans()) {
+				folders.put(folder.getName(), Integer.valueOf(folder.getIssueCount()));
+			}
+		}
+
+		private Point(double nvs, int totalIssues, int failedCount, Map<String, Integer> folders) {
+			this.nvs = nvs;
+			this.totalIssues = totalIssues;
+			this.failedCount = failedCount;
+			this.folders = folders;
+		}
+
+		static Point parse(String[] fields) {
+			Map<String, Integer> folders = new LinkedHashMap<String, Integer>();
+			for (int i = 5; i < fields.length; i++) {
+				int separator = fields[i].lastIndexOf(':');
+				if (separator > 0) {
+					folders.put(fields[i].substring(0, separator), Integer.valueOf(fields[i].substring(separator + 1)));
+				}
+			}
+			return new Point(Double.parseDouble(fields[2]), Integer.parseInt(fields[3]), Integer.parseInt(fields[4]), folders);
+		}
+
+		void appendLine(StringBuilder lines, String summaryFileName, int buildNumber) {
+			lines.append(buildNumber).append('\t').append(summaryFileName).append('\t').append(nvs).append('\t')
+					.append(totalIssues).append('\t').append(failedCount);
+			for (Map.Entry<String, Integer> folder : folders.entrySet()) {
+				lines.append('\t').append(folder.getKey().replace('\t', ' ')).append(':').append(folder.getValue());
+			}
+			lines.append('\n');
+		}
+
+		public double getNvs() {
+			return nvs;
+		}
+
+		public int getTotalIssues() {
+			return totalIssues;
+		}
+
+		public int getFailedCount() {
+			return failedCount;
+		}
+
+		public Map<String, Integer> getFolders() {
+			return Collections.unmodifiableMap(folders);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Point)) {
+				return false;
+			}
+			Point that = (Point) o;
+			return nvs == that.nvs && totalIssues == that.totalIssues && failedCount == that.failedCount
+					&& folders.equals(that.folders);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(Double.valueOf(nvs), Integer.valueOf(totalIssues), Integer.valueOf(failedCount), folders);
+		}
+	}
+}
@@ -231,13 +231,11 @@ public class ProxyConfig extends AbstractDescribableImpl<ProxyConfig> {
 			final String proxyPasswordString = proxyPassword.getPlainText();
 			if (!(StringUtils.isEmpty(proxyUsernameString) && StringUtils.isEmpty(proxyPasswordString))) {
 				Authenticator proxyAuthenticator = new Authenticator() {
-					boolean proxyAuthAttempted = false;
 					@Override
 					public Request authenticate(Route route, Response response) throws IOException {
-						if (proxyAuthAttempted) {
+						// the client is reused between requests, so check the failed request instead of keeping state
+						if (response.request().header("Proxy-Authorization") != null) {
 							return null;
-						} else {
-							proxyAuthAttempted = true;
 						}
 						String credential = okhttp3.Credentials.basic(proxyUsernameString, proxyPasswordString);
 						return response.request().newBuilder().header("Proxy-Authorization", credential).build();
@@ -16,14 +16,17 @@
 package com.fortify.plugin.jenkins;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Iterator;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.remoting.RoleChecker;
 
 import hudson.FilePath;
+import hudson.Util;
 import hudson.remoting.VirtualChannel;
 
 public class RemoteService implements FilePath.FileCallable<FPRSummary> {
@@ -32,10 +35,23 @@ public class RemoteService implements FilePath.FileCallable<FPRSummary> {
 
 	private final String fpr;
 	private final StringBuilder logMsg;
+	private final boolean computeHash;
+	private final FPRLocator locator;
 
 	public RemoteService(String fpr) {
+		this(fpr, false);
+	}
+
+	/**
+	 * @param computeHash
+	 *            whether to calculate the SHA-256 hash of the located FPR, so that uploads of identical files can be
+	 *            detected without transferring the file to the controller
+	 */
+	public RemoteService(String fpr, boolean computeHash) {
 		this.fpr = fpr;
 		this.logMsg = new StringBuilder();
+		this.computeHash = computeHash;
+		this.locator = FPRLocator.fromSystemProperties();
 	}
 
 	@Override
@@ -44,6 +60,9 @@ public class RemoteService implements FilePath.FileCallable<FPRSummary> {
 
 		File realFPR = locateFPR(workspace, fpr);
 		summary.setFprFile(new FilePath(realFPR));
+		if (computeHash) {
+			summary.setFprHash(sha256(realFPR));
+		}
 
 		// setup log message to FPRSummary
 		String s = logMsg.toString();
@@ -53,7 +72,7 @@ public class RemoteService implements FilePath.FileCallable<FPRSummary> {
 		return summary;
 	}
 
-	private static File locateFPR(File workspace, String fprPath) {
+	private File locateFPR(File workspace, String fprPath) throws IOException {
 		File fpr = new File(fprPath);
 
 		// If full path, locate FPR outside workspace
@@ -64,8 +83,15 @@ public class RemoteService implements FilePath.FileCallable<FPRSummary> {
 				throw new RuntimeException("Analysis results file '" + fpr + "' doesn't exist!");
 			}
 		}
-		// If relative path, search in workspace
-		File fprInWorkspace = locateFPRInWorkspace(workspace, fprPath);
+		// If relative path to an existing file, there is nothing to search for
+		if (fpr.getParent() != null) {
+			File fprInWorkspace = new File(workspace, fprPath);
+			if (fprInWorkspace.isFile()) {
+				return fprInWorkspace;
+			}
+		}
+		// Otherwise search by name in workspace
+		File fprInWorkspace = locator.locate(workspace, fprPath);
 		if (null == fprInWorkspace) {
 			throw new RuntimeException(
 					"Can't locate analysis results file '" + fpr + "' under workspace: " + workspace.getAbsolutePath());
@@ -73,42 +99,21 @@ public class RemoteService implements FilePath.FileCallable<FPRSummary> {
 		return fprInWorkspace;
 	}
 
-	@SuppressWarnings("unchecked")
-	private static File locateFPRInWorkspace(File path, String preferredFileName) {
-		String ext[] = { "fpr", "zip" }; //adding zip extension to support third-party results upload
-		Iterator<File> iterator = FileUtils.iterateFiles(path, ext, true);
-
-		long latestTime = 0;
-		File latestFile = null;
-		while (iterator.hasNext()) {
-			File file = iterator.next();
-			if (isEmpty(preferredFileName) || preferredFileName.equalsIgnoreCase(file.getName())) {
-				if (null == latestFile) {
-					latestTime = file.lastModified();
-					latestFile = file;
-				} else {
-					// if this file is newer, we will use this file
-					if (latestTime < file.lastModified()) {
-						latestTime = file.lastModified();
-						latestFile = file;
-
-						// else if the last modified time is the same, but this file's file name is
-						// shorter, we will use this one
-						// this to assume, if you copy the file, the file name is usually "Copy of
-						// XXX.fpr"
-					} else if (latestTime == file.lastModified()
-							&& latestFile.getName().length() > file.getName().length()) {
-						latestFile = file;
-					}
-				}
+	static String sha256(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream in = new FileInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
 			}
 		}
-
-		return latestFile;
-	}
-
-	private static boolean isEmpty(String str) {
-		return (null == str || str.length() == 0);
+		return Util.toHexString(digest.digest());
 	}
 
 	@Override
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Lets identical SSC requests that run at the same time share one execution, e.g. when the parallel branches of a
+ * pipeline look up the same application version or several users open the same page of issues. The first caller
+ * runs the request, the others get its result or exception. Nothing is kept once the request is done; caches store
+ * the result from within the request, so that there's no moment when it's neither cached nor being loaded.
+ *
+ * @param <K>
+ *            key identifying the request and all arguments that affect its result
+ */
+public final class RequestCoalescer<K, V> {
+	private final ConcurrentMap<K, CompletableFuture<V>> running = new ConcurrentHashMap<K, CompletableFuture<V>>();
+
+	/**
+	 * Runs the request in the calling thread, or waits for the identical request that is already running.
+	 *
+	 * @throws Exception
+	 *             thrown by the request; errors are rethrown as they are
+	 */
+	public V call(K key, Callable<V> request) throws Exception {
+		CompletableFuture<V> future = new CompletableFuture<V>();
+		CompletableFuture<V> current = running.putIfAbsent(key, future);
+		if (current == null) {
+			run(key, future, request);
+			current = future;
+		}
+		try {
+			return current.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw cause instanceof Exception ? (Exception) cause : e;
+		}
+	}
+
+	/**
+	 * Runs the request on the executor, unless the identical request is already running.
+	 *
+	 * @return result of the request that was started or was already running
+	 */
+	public CompletableFuture<V> submit(final K key, Executor executor, final Callable<V> request) {
+		final CompletableFuture<V> future = new CompletableFuture<V>();
+		CompletableFuture<V> current = running.putIfAbsent(key, future);
+		if (current != null) {
+			return current;
+		}
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					RequestCoalescer.this.run(key, future, request);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			running.remove(key, future);
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * @return whether the request is running
+	 */
+	public boolean isRunning(K key) {
+		return running.containsKey(key);
+	}
+
+	private void run(K key, CompletableFuture<V> future, Callable<V> request) {
+		V result = null;
+		Throwable error = null;
+		try {
+			result = request.call();
+		} catch (Throwable t) {
+			error = t;
+		} finally {
+			// always completed, also on errors, so that the callers waiting for it aren't blocked
+			running.remove(key, future);
+			if (error != null) {
+				future.completeExceptionally(error);
+			} else {
+				future.complete(result);
+			}
+		}
+	}
+}
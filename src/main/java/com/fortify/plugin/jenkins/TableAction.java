@@ -15,6 +15,7 @@
  *******************************************************************************/
 package com.fortify.plugin.jenkins;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
@@ -22,8 +23,14 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.servlet.ServletException;
 
@@ -41,12 +48,12 @@ import hudson.model.Action;
 import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.StreamBuildListener;
-import jenkins.model.Jenkins;
 
 /**
  * Issue tables
  */
 public class TableAction implements Action {
+	private static final Logger LOGGER = Logger.getLogger(TableAction.class.getName());
 
 	public static enum SortOrder {
 		location {
@@ -70,7 +77,7 @@ public class TableAction implements Action {
 							second = o2;
 						}
 						if (first.getFilePath().equals(second.getFilePath())) {
-							return Integer.parseInt(first.getLineNumber()) - (Integer.parseInt(second.getLineNumber()));
+							return Integer.compare(first.getLineNumberValue(), second.getLineNumberValue());
 						} else {
 							return first.getFilePath().toLowerCase(Locale.ENGLISH).compareTo(second.getFilePath().toLowerCase(Locale.ENGLISH));
 						}
@@ -85,13 +92,11 @@ public class TableAction implements Action {
 
 	private Long lastChanged; // split for different projects
 
-	private long lastUpdated;
-
 	private String projectFullName;
 	private FortifyUpload manager;
 	private String appName;
 	private String appVersion;
-	private List<IssueFolderBean> folders;
+	private transient volatile FolderCache folderCache;
 
 	public TableAction(Job<?, ?> project, FortifyUpload upload, String appName, String appVersion) {
 		this.projectFullName = project.getFullName();
@@ -166,15 +171,7 @@ public class TableAction implements Action {
 	}
 
 	public Job<?, ?> getProject() {
-		if (projectFullName != null) {
-			List<Job> allProjects = Jenkins.get().getAllItems(Job.class);
-			for (Job next : allProjects) {
-				if (next != null && projectFullName.equals(next.getFullName())) {
-					return next;
-				}
-			}
-		}
-		return null;
+		return JobLookup.getJob(projectFullName);
 	}
 
 	public MergedBuildStatistics getBuildStats() {
@@ -350,7 +347,7 @@ public class TableAction implements Action {
 		if (manager.isSettingUpdated() || !manager.getAccessToProject()) {
 			return true;
 		}
-		return getLastChanged() > lastUpdated;
+		return getLastChanged() > getFolderCache().getLoadedAt();
 	}
 
 	long getLastChanged() {
@@ -364,12 +361,25 @@ public class TableAction implements Action {
 		lastChanged = Long.valueOf(currentTimeMillis);
 	}
 
-	public synchronized List<IssueFolderBean> getFolders() {
-		if (folders == null || isUpdateNeeded()) {
-			lastUpdated = System.currentTimeMillis();
-			folders = manager.getFolders(new StreamBuildListener(System.out, Charset.defaultCharset()));
+	/**
+	 * @return the last known folders, they are reloaded in the background when outdated
+	 */
+	public List<IssueFolderBean> getFolders() {
+		return getFolderCache().get(isUpdateNeeded());
+	}
+
+	private FolderCache getFolderCache() {
+		FolderCache cache = folderCache;
+		if (cache == null) {
+			synchronized (this) {
+				cache = folderCache;
+				if (cache == null) {
+					cache = new FolderCache(manager);
+					folderCache = cache;
+				}
+			}
 		}
-		return folders;
+		return cache;
 	}
 
 	@POST
@@ -442,7 +452,7 @@ public class TableAction implements Action {
 
 		View view = (View) req.getSession().getAttribute("currentView");
 		if (view != null) {
-			view.setFolder(getFolderByName(viewName));
+			view.setFolder(getFolderByName(view, viewName));
 			view.setPage(pageNum);
 			req.getSession().setAttribute("currentView", view);
 		}
@@ -451,9 +461,10 @@ public class TableAction implements Action {
 
 	@POST
 	public void doAjaxIssues(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
-		Object currView = req.getSession().getAttribute("currentView");
+		View currView = (View) req.getSession().getAttribute("currentView");
 		if ("yes".equalsIgnoreCase(req.getParameter("firstTime")) || currView == null) {
-			List<IssueFolderBean> folders = getFolders();
+			IssueSnapshot snapshot = getSnapshot(null);
+			List<IssueFolderBean> folders = snapshot != null ? snapshot.getFolders() : getFolders();
 			if (!folders.isEmpty()) {
 				currView = new View(folders.get(0), manager, 0);
 				req.getSession().setAttribute("currentView", currView);
@@ -461,6 +472,12 @@ public class TableAction implements Action {
 			req.getSession().setAttribute("showingAllNotNew", Boolean.TRUE);
 			req.getSession().setAttribute("pageSize", Integer.valueOf(manager.getIssuePageSize()));
 		}
+		if (currView != null) {
+			currView.setSnapshot(getSnapshot(currView.getSnapshot()));
+			if (!currView.isShowingSnapshot()) {
+				currView.setRevision(getFolderCache().getRevision());
+			}
+		}
 		rsp.setContentType("text/html;charset=UTF-8");
 		ensureNoCaching(rsp);
 		req.getView(this, "issuesByFriorityTable.jelly").forward(req, rsp);
@@ -473,7 +490,7 @@ public class TableAction implements Action {
 	}
 
 	@POST
-	public synchronized void doCheckUpdates(StaplerRequest req, StaplerResponse rsp)
+	public void doCheckUpdates(StaplerRequest req, StaplerResponse rsp)
 			throws IOException, ServletException {
 		long lastChanged = getLastChanged();
 		try {
@@ -483,7 +500,7 @@ public class TableAction implements Action {
 				rsp.setHeader("go", "go");
 				View view = (View) req.getSession().getAttribute("currentView");
 				if (view != null) {
-					IssueFolderBean folder = getFolderByName(view.getFolder().getName());
+					IssueFolderBean folder = getFolderByName(view, view.getFolder().getName());
 					if (folder != null) {
 						view.setFolder(folder);
 					}
@@ -506,8 +523,57 @@ public class TableAction implements Action {
 		rsp.setDateHeader("Expires", 0); // prevents caching at the proxy server
 	}
 
-	private IssueFolderBean getFolderByName(String name) {
-		for (IssueFolderBean next : getFolders()) {
+	@POST
+	public void doShowLive(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+		String live = req.getParameter("live");
+		View view = (View) req.getSession().getAttribute("currentView");
+		if (view != null && StringUtils.isNotBlank(live)) {
+			boolean showLive = "yes".equalsIgnoreCase(live.trim());
+			if (showLive != view.isLive()) {
+				view.setLive(showLive);
+				IssueFolderBean folder = getFolderByName(view, view.getFolder().getName());
+				if (folder != null) {
+					view.setFolder(folder);
+				}
+				view.setPage(0);
+			}
+		}
+		doAjaxIssues(req, rsp);
+	}
+
+	/**
+	 * @param current
+	 *            snapshot the view already uses, returned if it's still the one of the last build
+	 * @return issue snapshot of the last build or null if it didn't save one
+	 */
+	private IssueSnapshot getSnapshot(IssueSnapshot current) {
+		Run<?, ?> lastBuild = getLastBuild();
+		if (lastBuild == null) {
+			return null;
+		}
+		File file = new File(lastBuild.getRootDir(),
+				manager.isPipeline() ? IssueSnapshot.getFileName(appName, appVersion) : IssueSnapshot.getFileName(null, null));
+		if (current != null && current.getFile().equals(file)) {
+			return current;
+		}
+		if (!file.exists()) {
+			return null;
+		}
+		try {
+			return IssueSnapshot.open(file);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to read " + file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * @param view
+	 *            the folders of the snapshot are searched if the view shows one
+	 */
+	private IssueFolderBean getFolderByName(View view, String name) {
+		List<IssueFolderBean> folders = view != null && view.isShowingSnapshot() ? view.getSnapshot().getFolders() : getFolders();
+		for (IssueFolderBean next : folders) {
 			if (next.getName().equals(name)) {
 				return next;
 			}
@@ -526,8 +592,14 @@ public class TableAction implements Action {
 		private boolean showingAllNotNew;
 		private String selectedGrouping;
 
+		// the issues are kept in the shared IssuePageCache when the revision is known, otherwise in the session
+		private IssuePageCache.Revision revision;
+		// issues of the last build, shown unless the user asks for the current issues
+		private IssueSnapshot snapshot;
+		private boolean live;
 		private transient List<IssueBean> issuesByFolder = null;
 		private transient Boolean needsUpdate = null;
+		private transient List<Future<?>> prefetches;
 
 		public View(IssueFolderBean descriptor, FortifyUpload manager, int pageNum) {
 			this.folder = descriptor;
@@ -616,15 +688,141 @@ public class TableAction implements Action {
 			if (folder.isEmpty()) {
 				return Collections.emptyList();
 			}
+			final int startPage = pageSize == -1 ? 0 : page;
+			final int size = pageSize == -1 ? folder.getIssueCount() : pageSize;
+			if (revision != null || isShowingSnapshot()) {
+				issuesByFolder = null;
+				try {
+					List<IssueBean> issues = getPageCache().getPage(getPageKey(startPage, size), getPageLoader(startPage, size));
+					prefetchAdjacentPages();
+					return issues;
+				} catch (Exception e) {
+					// getIssuesByFolder reports its own errors
+					return Collections.emptyList();
+				}
+			}
 			if (needsUpdate()) {
 				needsUpdate = Boolean.FALSE;
-				issuesByFolder = manager.getIssuesByFolder(folder.getId(), pageSize == -1 ? 0 : page, pageSize == -1 ? folder.getIssueCount() : pageSize, sortOrder, sortDownNotUp,
+				issuesByFolder = manager.getIssuesByFolder(folder.getId(), startPage, size, sortOrder, sortDownNotUp,
 						showingAllNotNew, this.getSelectedGrouping(),
 						new StreamBuildListener(System.out, Charset.defaultCharset()));
 			}
 			return issuesByFolder;
 		}
 
+		IssuePageCache getPageCache() {
+			return IssuePageCache.get();
+		}
+
+		IssuePageCache.Key getPageKey(int pageNum, int size) {
+			return new IssuePageCache.Key(isShowingSnapshot() ? snapshot.getRevision() : revision, folder.getId(), pageNum,
+					size, sortOrder, sortDownNotUp, showingAllNotNew, getSelectedGrouping());
+		}
+
+		private Callable<List<IssueBean>> getPageLoader(final int pageNum, final int size) {
+			final String folderId = folder.getId();
+			final SortOrder sortOrder = this.sortOrder;
+			final boolean sortDownNotUp = this.sortDownNotUp;
+			final boolean showingAllNotNew = this.showingAllNotNew;
+			if (isShowingSnapshot()) {
+				final IssueSnapshot snapshot = this.snapshot;
+				return new Callable<List<IssueBean>>() {
+					@Override
+					public List<IssueBean> call() throws IOException {
+						return snapshot.getIssues(folderId, pageNum, size, sortOrder, sortDownNotUp, !showingAllNotNew);
+					}
+				};
+			}
+			final String grouping = getSelectedGrouping();
+			return new Callable<List<IssueBean>>() {
+				@Override
+				public List<IssueBean> call() {
+					return manager.getIssuesByFolder(folderId, pageNum, size, sortOrder, sortDownNotUp, showingAllNotNew,
+							grouping, new StreamBuildListener(System.out, Charset.defaultCharset()));
+				}
+			};
+		}
+
+		/**
+		 * Loads the pages the user is likely to open next into the shared cache
+		 */
+		private synchronized void prefetchAdjacentPages() {
+			if (pageSize == -1) {
+				return;
+			}
+			if (prefetches == null) {
+				prefetches = new ArrayList<Future<?>>();
+			}
+			for (Iterator<Future<?>> futures = prefetches.iterator(); futures.hasNext();) {
+				if (futures.next().isDone()) {
+					futures.remove();
+				}
+			}
+			if (isHasNext()) {
+				prefetch(page + 1);
+			}
+			if (IssuePageCache.PREFETCH_PREVIOUS && page > 0) {
+				prefetch(page - 1);
+			}
+		}
+
+		private void prefetch(int pageNum) {
+			Future<?> future = getPageCache().prefetch(getPageKey(pageNum, pageSize), getPageLoader(pageNum, pageSize));
+			if (future != null) {
+				prefetches.add(future);
+			}
+		}
+
+		/**
+		 * Cancels prefetching that hasn't started yet when the folder, sorting or filtering changes
+		 */
+		private synchronized void cancelPrefetches() {
+			if (prefetches != null) {
+				for (Future<?> future : prefetches) {
+					future.cancel(false);
+				}
+				prefetches = null;
+			}
+		}
+
+		IssueSnapshot getSnapshot() {
+			return snapshot;
+		}
+
+		void setSnapshot(IssueSnapshot snapshot) {
+			if (snapshot != this.snapshot) {
+				this.snapshot = snapshot;
+				cancelPrefetches();
+				scheduleUpdate();
+			}
+		}
+
+		@JavaScriptMethod
+		public boolean isLive() {
+			return live;
+		}
+
+		public void setLive(boolean live) {
+			this.live = live;
+			cancelPrefetches();
+			scheduleUpdate();
+		}
+
+		/**
+		 * @return true if the issues come from the snapshot of the last build rather than from SSC
+		 */
+		public boolean isShowingSnapshot() {
+			return snapshot != null && !live;
+		}
+
+		void setRevision(IssuePageCache.Revision revision) {
+			if (!Objects.equals(this.revision, revision)) {
+				this.revision = revision;
+				cancelPrefetches();
+				scheduleUpdate();
+			}
+		}
+
 		private boolean needsUpdate() {
 			if (needsUpdate == null) {
 				needsUpdate = Boolean.TRUE;
@@ -677,23 +875,29 @@ public class TableAction implements Action {
 
 		@JavaScriptMethod
 		public void setSortOrder(SortOrder order) {
+			if (order != sortOrder) {
+				cancelPrefetches();
+			}
 			sortOrder = order;
 		}
 
 		@JavaScriptMethod
 		public void setFolder(IssueFolderBean folder) {
+			cancelPrefetches();
 			this.folder = folder;
 			scheduleUpdate();
 		}
 
 		@JavaScriptMethod
 		public void setPageSize(int pageSize) {
+			cancelPrefetches();
 			this.pageSize = pageSize;
 			scheduleUpdate();
 		}
 
 		@JavaScriptMethod
 		public void setShowingAllNotNew(boolean showingAllNotNew) {
+			cancelPrefetches();
 			this.showingAllNotNew = showingAllNotNew;
 			scheduleUpdate();
 		}
@@ -22,19 +22,37 @@ import org.apache.commons.lang.StringUtils;
 
 import com.fortify.plugin.jenkins.FortifyPlugin;
 import com.fortify.plugin.jenkins.PathUtils;
-
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * An issue of the issue table. Pages of issues of large application versions are kept in memory, so the bean is
+ * compact: the issue id, line number, confidence and severity are primitives, and the strings that repeat across
+ * issues (file paths, the issue name used as group, category and type, the engine type and the application version)
+ * are interned so that all issues share one instance. The string getters used by the Jelly views are unchanged.
+ */
 public class IssueBean implements Comparable {
 	public static final String ATTRIBUTE_VALUE_NONE = "<none>";
 
+	/**
+	 * Line number of an issue without one
+	 */
+	public static final int NO_LINE_NUMBER = Integer.MIN_VALUE;
+
+	private static final long NO_ISSUE_ID = Long.MIN_VALUE;
+
+	// strings are released once no issue uses them
+	private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
 	private Long projectVersionId;
-	private Long issueId;
+	private long issueId = NO_ISSUE_ID;
 	private String issueInstanceId;
 	private String projectName;
 	private String projectVersionName;
 
 	private String sourceFilePath;
 	private String filePath;
-	private String lineNumber;
+	private int lineNumber = NO_LINE_NUMBER;
 	private String packageName;
 	private String className;
 	private String function;
@@ -43,10 +61,13 @@ public class IssueBean implements Comparable {
 	private String mappedCategory;
 	private String type;
 	private String subType;
-	private String confidence;
-	private String severity;
+	// NaN if not set
+	private float confidence = Float.NaN;
+	private float severity = Float.NaN;
 	private String engineType;
 	private String assignedUser;
+	// found by the last scan, true if SSC didn't say
+	private boolean newIssue = true;
 
 	public IssueBean() {
 	}
@@ -65,7 +86,7 @@ public class IssueBean implements Comparable {
 		if (StringUtils.isBlank(shortfilename)) {
 			shortfilename = ATTRIBUTE_VALUE_NONE;
 		}
-		label.append(shortfilename).append(':').append(lineNumber);
+		label.append(shortfilename).append(':').append(getLineNumber());
 		return escapeHtmlTags(label.toString());
 	}
 
@@ -103,7 +124,7 @@ public class IssueBean implements Comparable {
 	}
 
 	public Long getIssueId() {
-		return issueId;
+		return issueId == NO_ISSUE_ID ? null : Long.valueOf(issueId);
 	}
 
 	public String getIssueInstanceId() {
@@ -123,11 +144,22 @@ public class IssueBean implements Comparable {
 	}
 
 	public String getLineNumber() {
+		return lineNumber == NO_LINE_NUMBER ? null : String.valueOf(lineNumber);
+	}
+
+	/**
+	 * @return the line number or {@link #NO_LINE_NUMBER}
+	 */
+	public int getLineNumberValue() {
 		return lineNumber;
 	}
 
 	public boolean isNew() {
-		return true;
+		return newIssue;
+	}
+
+	public void setNew(boolean newIssue) {
+		this.newIssue = newIssue;
 	}
 
 	public String getPackageName() {
@@ -163,11 +195,11 @@ public class IssueBean implements Comparable {
 	}
 
 	public String getConfidence() {
-		return confidence;
+		return formatFloat(confidence);
 	}
 
 	public String getSeverity() {
-		return severity;
+		return formatFloat(severity);
 	}
 
 	public String getSubType() {
@@ -187,7 +219,7 @@ public class IssueBean implements Comparable {
 	}
 
 	public void setIssueId(Long issueId) {
-		this.issueId = issueId;
+		this.issueId = issueId == null ? NO_ISSUE_ID : issueId.longValue();
 	}
 
 	public void setIssueInstanceId(String issueInstanceId) {
@@ -195,22 +227,37 @@ public class IssueBean implements Comparable {
 	}
 
 	public void setProjectName(String projectName) {
-		this.projectName = projectName;
+		this.projectName = intern(projectName);
 	}
 
 	public void setProjectVersionName(String projectVersionName) {
-		this.projectVersionName = projectVersionName;
+		this.projectVersionName = intern(projectVersionName);
 	}
 
 	public void setSourceFilePath(String sourceFilePath) {
-		this.sourceFilePath = sourceFilePath;
+		this.sourceFilePath = intern(sourceFilePath);
 	}
 
 	public void setFilePath(String filePath) {
-		this.filePath = filePath;
+		this.filePath = intern(filePath);
 	}
 
+	/**
+	 * @param lineNumber
+	 *            a line number, anything else is stored as no line number
+	 */
 	public void setLineNumber(String lineNumber) {
+		this.lineNumber = NO_LINE_NUMBER;
+		if (lineNumber != null) {
+			try {
+				this.lineNumber = Integer.parseInt(lineNumber);
+			} catch (NumberFormatException e) {
+				// not a line number
+			}
+		}
+	}
+
+	public void setLineNumber(int lineNumber) {
 		this.lineNumber = lineNumber;
 	}
 
@@ -227,41 +274,68 @@ public class IssueBean implements Comparable {
 	}
 
 	public void setGroupName(String groupName) {
-		this.groupName = groupName;
+		this.groupName = intern(groupName);
 	}
 
 	public void setCategory(String category) {
-		this.category = category;
+		this.category = intern(category);
 	}
 
 	public void setMappedCategory(String mappedCategory) {
-		this.mappedCategory = mappedCategory;
+		this.mappedCategory = intern(mappedCategory);
 	}
 
 	public void setType(String type) {
-		this.type = type;
+		this.type = intern(type);
 	}
 
 	public void setSubType(String subType) {
-		this.subType = subType;
+		this.subType = intern(subType);
 	}
 
 	public void setConfidence(String confidence) {
+		this.confidence = parseFloat(confidence);
+	}
+
+	public void setConfidence(float confidence) {
 		this.confidence = confidence;
 	}
 
 	public void setSeverity(String severity) {
+		this.severity = parseFloat(severity);
+	}
+
+	public void setSeverity(float severity) {
 		this.severity = severity;
 	}
 
 	public void setEngineType(String engineType) {
-		this.engineType = engineType;
+		this.engineType = intern(engineType);
 	}
 
 	public void setAssignedUser(String assignedUser) {
 		this.assignedUser = assignedUser;
 	}
 
+	private static String intern(String s) {
+		return s == null ? null : STRINGS.intern(s);
+	}
+
+	private static String formatFloat(float value) {
+		return Float.isNaN(value) ? null : String.valueOf(value);
+	}
+
+	private static float parseFloat(String value) {
+		if (value == null) {
+			return Float.NaN;
+		}
+		try {
+			return Float.parseFloat(value);
+		} catch (NumberFormatException e) {
+			return Float.NaN;
+		}
+	}
+
 	@Override
 	public int compareTo(Object o) {
 		IssueBean otherBean = (IssueBean) o;
@@ -26,6 +26,7 @@ public class IssueFolderBean implements Comparable, Serializable {
 	private static final long serialVersionUID = 9056328734887354382L;
 
 	public static final String ATTRIBUTE_VALUE_ALL = "All";
+	public static final String ID_ALL = "f599639d-f500-e046-2fd1-d82b5e9b26b4";
 
 	public static final String NAME_CRITICAL = "Critical";
 	public static final String NAME_HIGH = "High";
@@ -16,10 +16,14 @@
 package com.fortify.plugin.jenkins.fortifyclient;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.StringUtils;
@@ -44,6 +48,7 @@ import com.fortify.ssc.restclient.api.ProjectVersionOfProjectControllerApi;
 import com.fortify.ssc.restclient.model.ApiResultArtifact;
 import com.fortify.ssc.restclient.model.ApiResultIssueFilterSelectorSet;
 import com.fortify.ssc.restclient.model.ApiResultIssueTemplate;
+import com.fortify.ssc.restclient.model.ApiResultListArtifact;
 import com.fortify.ssc.restclient.model.ApiResultListAttributeDefinition;
 import com.fortify.ssc.restclient.model.ApiResultListCloudPool;
 import com.fortify.ssc.restclient.model.ApiResultListFilterSet;
@@ -69,10 +74,36 @@ import com.fortify.ssc.restclient.model.ProjectVersionIssue;
 import com.fortify.ssc.restclient.model.ProjectVersionIssueGroup;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
-
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Calls of the SSC REST API used by {@link FortifyClient}. It is configured before it's used and safe for concurrent
+ * calls afterwards.
+ */
 public class ApiClientWrapper {
 	private static final String AUTH_HEADER_TOKEN = "FortifyToken";
+
+	// issue list parameters of the issue table, shared by the generated client and the issue iterator
+	private static final String ISSUE_ORDER_BY = "issueName";
+	private static final Projection ISSUE_FIELDS = Projection.ISSUE_TABLE;
+	private static final boolean SHOW_HIDDEN_ISSUES = false;
+	private static final boolean SHOW_REMOVED_ISSUES = false;
+	private static final boolean SHOW_SUPPRESSED_ISSUES = false;
+	private static final boolean SHOW_SHORT_FILE_NAMES = true;
+
 	private ApiClient apiClient;
+	private String authHeader;
+	private final VersionMetadataCache metadataCache = new VersionMetadataCache();
 
 	public enum AppTypeEnum {
 		APPLICATION, APP_VERSION
@@ -93,13 +124,47 @@ public class ApiClientWrapper {
 		}
 		try {
 			apiClient.setApiKeyPrefix(AUTH_HEADER_TOKEN);
-			apiClient.setApiKey(Base64.encodeBase64String(token.getBytes("UTF-8")));
+			String encodedToken = Base64.encodeBase64String(token.getBytes("UTF-8"));
+			apiClient.setApiKey(encodedToken);
+			authHeader = AUTH_HEADER_TOKEN + " " + encodedToken;
 		} catch (UnsupportedEncodingException e) {
 			String msg = MessageFormat.format("[ERROR] Error encoding SSC auth token : {0}", token);
 			throw new ApiException(msg + e.getLocalizedMessage());
 		}
 	}
 
+	/**
+	 * Makes the HTTP client use a connection pool and dispatcher shared with other clients, so that connections to
+	 * SSC are kept alive between calls. Must be called before {@link #setProxy(ProxyConfig)}.
+	 */
+	public void shareConnections(ConnectionPool connectionPool, Dispatcher dispatcher) {
+		if (connectionPool == null && dispatcher == null) {
+			return;
+		}
+		OkHttpClient.Builder builder = apiClient.getHttpClient().newBuilder();
+		if (connectionPool != null) {
+			builder.connectionPool(connectionPool);
+		}
+		if (dispatcher != null) {
+			builder.dispatcher(dispatcher);
+		}
+		apiClient.setHttpClient(builder.build());
+	}
+
+	/**
+	 * Makes the HTTP client keep SSC metadata responses in the given cache, see {@link SscResponseCache}. Must be
+	 * called before {@link #setProxy(ProxyConfig)}.
+	 */
+	public void useResponseCache(Cache cache) {
+		if (cache == null) {
+			return;
+		}
+		String basePath = HttpUrl.get(apiClient.getBasePath()).encodedPath() + "/";
+		apiClient.setHttpClient(apiClient.getHttpClient().newBuilder().cache(cache)
+				.addInterceptor(new SscResponseCache.StatisticsInterceptor(basePath))
+				.addNetworkInterceptor(new SscResponseCache.CacheControlInterceptor(basePath)).build());
+	}
+
 	public void setProxy(ProxyConfig proxyConfig) {
 		if (proxyConfig != null) {
 			apiClient.setHttpClient(proxyConfig.decorateClient(apiClient.getHttpClient(), apiClient.getBasePath()));
@@ -115,7 +180,7 @@ public class ApiClientWrapper {
 		ProjectControllerApi projectControllerApi = new ProjectControllerApi(apiClient);
 
 		String partialQuery = StringUtils.isEmpty(query) ? null : "name:\"*" + query + "*\"";
-		ApiResultListProject apiResultListProject = projectControllerApi.listProject("name,id", Integer.valueOf(0), Integer.valueOf(limit), partialQuery, false, "name");
+		ApiResultListProject apiResultListProject = projectControllerApi.listProject(Projection.APPLICATION_LIST.getFields(), Integer.valueOf(0), Integer.valueOf(limit), partialQuery, false, "name");
 		for (Project app : apiResultListProject.getData()) {
 			appList.add(app);
 		}
@@ -131,7 +196,7 @@ public class ApiClientWrapper {
 		ProjectVersionControllerApi projectVersionControllerApi = new ProjectVersionControllerApi(apiClient);
 
 		String partialQuery = StringUtils.isEmpty(query) ? null : "name:\"*" + query + "*\"";
-		ApiResultListProjectVersion apiResultListProjectVersion = projectVersionControllerApi.listProjectVersion("name,id,project",
+		ApiResultListProjectVersion apiResultListProjectVersion = projectVersionControllerApi.listProjectVersion(Projection.VERSION_LIST.getFields(),
 				Integer.valueOf(0), Integer.valueOf(limit), partialQuery, false, "name", false, false, false);
 		for (ProjectVersion appVersion : apiResultListProjectVersion.getData()) {
 			appVersionList.add(appVersion);
@@ -147,8 +212,8 @@ public class ApiClientWrapper {
 		ProjectVersionOfProjectControllerApi appVerApi = new ProjectVersionOfProjectControllerApi(apiClient);
 
 		String partialQuery = StringUtils.isEmpty(query) ? null : "name:\"*" + query + "*\"";
-		ApiResultListProjectVersion apiResultListProjectVersion = appVerApi.listProjectVersionOfProject(applicationId, 
-				"name,id", Integer.valueOf(0), Integer.valueOf(limit), partialQuery, false, "name", false, false);
+		ApiResultListProjectVersion apiResultListProjectVersion = appVerApi.listProjectVersionOfProject(applicationId,
+				Projection.VERSION_OF_APPLICATION_LIST.getFields(), Integer.valueOf(0), Integer.valueOf(limit), partialQuery, false, "name", false, false);
 		for (ProjectVersion appVersion : apiResultListProjectVersion.getData()) {
 			appVersionList.add(appVersion);
 		}
@@ -157,17 +222,23 @@ public class ApiClientWrapper {
 
 	/**
 	 * Returns list of Attribute Definitions in SSC. Returns empty list if no
-	 * Attribute Definitions are found.
+	 * Attribute Definitions are found. The list is cached, see {@link VersionMetadataCache}.
 	 */
 	public List<AttributeDefinition> getAttributeDefinitions() throws ApiException {
-		List<AttributeDefinition> attrDefinitionList = new ArrayList<AttributeDefinition>();
-		AttributeDefinitionControllerApi attrDefinitionControllerApi = new AttributeDefinitionControllerApi(apiClient);
-		ApiResultListAttributeDefinition apiResultListAttrDefinition = attrDefinitionControllerApi
-				.listAttributeDefinition(null, Integer.valueOf(0), Integer.MAX_VALUE, null, null, null);
-		for (AttributeDefinition attrDef : apiResultListAttrDefinition.getData()) {
-			attrDefinitionList.add(attrDef);
-		}
-		return attrDefinitionList;
+		return metadataCache.get(VersionMetadataCache.Kind.ATTRIBUTE_DEFINITIONS, null,
+				new VersionMetadataCache.Loader<List<AttributeDefinition>>() {
+					@Override
+					public List<AttributeDefinition> load() throws ApiException {
+						List<AttributeDefinition> attrDefinitionList = new ArrayList<AttributeDefinition>();
+						AttributeDefinitionControllerApi attrDefinitionControllerApi = new AttributeDefinitionControllerApi(apiClient);
+						ApiResultListAttributeDefinition apiResultListAttrDefinition = attrDefinitionControllerApi
+								.listAttributeDefinition(null, Integer.valueOf(0), Integer.MAX_VALUE, null, null, null);
+						for (AttributeDefinition attrDef : apiResultListAttrDefinition.getData()) {
+							attrDefinitionList.add(attrDef);
+						}
+						return Collections.unmodifiableList(attrDefinitionList);
+					}
+				});
 	}
 
 	/**
@@ -177,8 +248,8 @@ public class ApiClientWrapper {
 	public List<IssueTemplate> getIssueTemplates() throws ApiException {
 		List<IssueTemplate> issueTemplateList = new ArrayList<IssueTemplate>();
 		IssueTemplateControllerApi issueTemplateControllerApi = new IssueTemplateControllerApi(apiClient);
-		ApiResultListIssueTemplate apiResultListIssueTemplate = issueTemplateControllerApi.listIssueTemplate(null,
-				Integer.valueOf(0), Integer.MAX_VALUE, null, null);
+		ApiResultListIssueTemplate apiResultListIssueTemplate = issueTemplateControllerApi.listIssueTemplate(
+				Projection.ISSUE_TEMPLATE.getFields(), Integer.valueOf(0), Integer.MAX_VALUE, null, null);
 		for (IssueTemplate issueTemplate : apiResultListIssueTemplate.getData()) {
 			issueTemplateList.add(issueTemplate);
 		}
@@ -191,7 +262,7 @@ public class ApiClientWrapper {
 	public List<CloudPool> getCloudScanPools() throws ApiException {
 		List<CloudPool> cloudPoolList = new ArrayList<>();
 		CloudPoolControllerApi cloudPoolControllerApi = new CloudPoolControllerApi(apiClient);
-		ApiResultListCloudPool apiResultListCloudPool = cloudPoolControllerApi.listCloudPool("name,uuid",
+		ApiResultListCloudPool apiResultListCloudPool = cloudPoolControllerApi.listCloudPool(Projection.CLOUD_POOL_LIST.getFields(),
 				Integer.valueOf(0), Integer.MAX_VALUE, null, false, null);
 		for (CloudPool cloudPool : apiResultListCloudPool.getData()) {
 			cloudPoolList.add(cloudPool);
@@ -243,18 +314,27 @@ public class ApiClientWrapper {
 		return null;
 	}
 
-	public List<FilterSet> getFilterSetsForAppVersion(Long appVersionId) throws ApiException {
-		List<FilterSet> filterSetList = new ArrayList<FilterSet>();
-		FilterSetOfProjectVersionControllerApi filterSetOfProjectVersionControllerApi = new FilterSetOfProjectVersionControllerApi(
-				apiClient);
-
-		ApiResultListFilterSet apiResultListFilterSet = filterSetOfProjectVersionControllerApi
-				.listFilterSetOfProjectVersion(appVersionId, 0, -1, null);
-		for (FilterSet filterset : apiResultListFilterSet.getData()) {
-			filterSetList.add(filterset);
-		}
-
-		return filterSetList;
+	/**
+	 * Returns the filter sets of the application version. The list is cached, see {@link VersionMetadataCache}.
+	 */
+	public List<FilterSet> getFilterSetsForAppVersion(final Long appVersionId) throws ApiException {
+		return metadataCache.get(VersionMetadataCache.Kind.FILTER_SETS, appVersionId,
+				new VersionMetadataCache.Loader<List<FilterSet>>() {
+					@Override
+					public List<FilterSet> load() throws ApiException {
+						List<FilterSet> filterSetList = new ArrayList<FilterSet>();
+						FilterSetOfProjectVersionControllerApi filterSetOfProjectVersionControllerApi = new FilterSetOfProjectVersionControllerApi(
+								apiClient);
+
+						ApiResultListFilterSet apiResultListFilterSet = filterSetOfProjectVersionControllerApi
+								.listFilterSetOfProjectVersion(appVersionId, 0, -1, null);
+						for (FilterSet filterset : apiResultListFilterSet.getData()) {
+							filterSetList.add(filterset);
+						}
+
+						return Collections.unmodifiableList(filterSetList);
+					}
+				});
 	}
 
 	public FilterSet getDefaultFilterSetForAppVersion(Long appVersionId) throws ApiException {
@@ -285,8 +365,9 @@ public class ApiClientWrapper {
 		ApiResultListProjectVersionIssue apiResultListProjectVersionIssue = issueSetOfProjectVersionControllerApi
 				// .listIssueOfProjectVersion(parentId, start, limit, q, qm, orderby, filterset, fields, 
 				// showhidden, showremoved, showsuppressed, showshortfilenames, embed, filter, groupid, groupingtype, ids)
-		.listIssueOfProjectVersion(appVersionId, startPage, pageSize, null, null, "issueName", null, null, 
-				false, false, false, true, null, filter, groupId, groupingType, null);
+		.listIssueOfProjectVersion(appVersionId, startPage, pageSize, null, null, ISSUE_ORDER_BY, null,
+				ISSUE_FIELDS.getFields(), SHOW_HIDDEN_ISSUES, SHOW_REMOVED_ISSUES, SHOW_SUPPRESSED_ISSUES,
+				SHOW_SHORT_FILE_NAMES, null, filter, groupId, groupingType, null);
 		for (ProjectVersionIssue issue : apiResultListProjectVersionIssue.getData()) {
 			issues.add(issue);
 		}
@@ -294,18 +375,60 @@ public class ApiClientWrapper {
 		return issues;
 	}
 
-	public List<IssueSelector> getGroupBySetForAppVersion(Long appVersionId) throws ApiException {
-		List<IssueSelector> list = new ArrayList<IssueSelector>();
-		IssueSelectorSetOfProjectVersionControllerApi issueSelectorSetOfProjectVersionControllerApi = new IssueSelectorSetOfProjectVersionControllerApi(
-				apiClient);
+	/**
+	 * Iterates over the issues of an application version, with the same filter and order as
+	 * {@link #getIssuesForAppVersion(Long, int, int, String, String, String)}. Pages are requested as the issues are
+	 * read, at most pagesInFlight at a time.
+	 */
+	public IssueIterator iterateIssuesForAppVersion(Long appVersionId, String filter, int pageSize, int pagesInFlight) {
+		HttpUrl.Builder url = HttpUrl.get(apiClient.getBasePath() + "/projectVersions/" + appVersionId + "/issues")
+				.newBuilder();
+		for (Map.Entry<String, String> parameter : getIssueQueryParameters(filter).entrySet()) {
+			url.addQueryParameter(parameter.getKey(), parameter.getValue());
+		}
+		return new IssueIterator(apiClient.getHttpClient(), url.build(), authHeader, pageSize, pagesInFlight);
+	}
 
-		ApiResultIssueFilterSelectorSet apiResultIssueFilterSelectorSet = issueSelectorSetOfProjectVersionControllerApi
-				.getIssueSelectorSetOfProjectVersion(appVersionId, null);
-		for (IssueSelector item : apiResultIssueFilterSelectorSet.getData().getGroupBySet()) {
-			list.add(item);
+	/**
+	 * @return the query parameters of {@link #getIssuesForAppVersion(Long, int, int, String, String, String)}
+	 *         except paging and grouping, for requests built without the generated client
+	 */
+	static Map<String, String> getIssueQueryParameters(String filter) {
+		Map<String, String> parameters = new LinkedHashMap<String, String>();
+		parameters.put("orderby", ISSUE_ORDER_BY);
+		parameters.put("fields", ISSUE_FIELDS.getFields());
+		parameters.put("showhidden", String.valueOf(SHOW_HIDDEN_ISSUES));
+		parameters.put("showremoved", String.valueOf(SHOW_REMOVED_ISSUES));
+		parameters.put("showsuppressed", String.valueOf(SHOW_SUPPRESSED_ISSUES));
+		parameters.put("showshortfilenames", String.valueOf(SHOW_SHORT_FILE_NAMES));
+		if (filter != null) {
+			parameters.put("filter", filter);
 		}
+		return parameters;
+	}
 
-		return list;
+	/**
+	 * Returns the group-by selectors of the application version. The list is cached, see
+	 * {@link VersionMetadataCache}.
+	 */
+	public List<IssueSelector> getGroupBySetForAppVersion(final Long appVersionId) throws ApiException {
+		return metadataCache.get(VersionMetadataCache.Kind.GROUP_BY_SET, appVersionId,
+				new VersionMetadataCache.Loader<List<IssueSelector>>() {
+					@Override
+					public List<IssueSelector> load() throws ApiException {
+						List<IssueSelector> list = new ArrayList<IssueSelector>();
+						IssueSelectorSetOfProjectVersionControllerApi issueSelectorSetOfProjectVersionControllerApi = new IssueSelectorSetOfProjectVersionControllerApi(
+								apiClient);
+
+						ApiResultIssueFilterSelectorSet apiResultIssueFilterSelectorSet = issueSelectorSetOfProjectVersionControllerApi
+								.getIssueSelectorSetOfProjectVersion(appVersionId, null);
+						for (IssueSelector item : apiResultIssueFilterSelectorSet.getData().getGroupBySet()) {
+							list.add(item);
+						}
+
+						return Collections.unmodifiableList(list);
+					}
+				});
 	}
 
 	public Long getApplicationId(String appName) throws ApiException {
@@ -314,8 +437,8 @@ public class ApiClientWrapper {
 			String appQuery = "name:\"" + appName + "\"";
 			ProjectControllerApi projectControllerApi = new ProjectControllerApi(apiClient);
 
-			ApiResultListProject apiResultListProject = projectControllerApi.listProject(null, 0, 1, appQuery, false,
-					null);
+			ApiResultListProject apiResultListProject = projectControllerApi.listProject(Projection.ID.getFields(), 0, 1,
+					appQuery, false, null);
 			if (apiResultListProject.getData().size() > 0) {
 				application = apiResultListProject.getData().get(0);
 			}
@@ -331,7 +454,7 @@ public class ApiClientWrapper {
 		ApiResultListProjectVersion apiResultListProjectVersion;
 
 		apiResultListProjectVersion = projectVersionOfProjectControllerApi.listProjectVersionOfProject(applicationId,
-				null, 0, 1, versionQuery, false, null, false, false);
+				Projection.ID.getFields(), 0, 1, versionQuery, false, null, false, false);
 
 		if (apiResultListProjectVersion.getData().size() > 0) {
 			applicationVersion = apiResultListProjectVersion.getData().get(0);
@@ -339,6 +462,22 @@ public class ApiClientWrapper {
 		return applicationVersion != null ? applicationVersion.getId() : null;
 	}
 
+	/**
+	 * Returns the id of the application version with the given names or null if it doesn't exist. The id isn't
+	 * cached, since a version may be deleted and created again with a new id under the same names.
+	 */
+	public Long getVersionId(String appName, String appVersionName) throws ApiException {
+		Long applicationId = getApplicationId(appName);
+		return applicationId == null ? null : getVersionForApplication(applicationId, appVersionName);
+	}
+
+	/**
+	 * Drops the cached metadata of the application version, so that it's queried again on next use
+	 */
+	public void invalidateMetadata(Long appVersionId) {
+		metadataCache.invalidate(appVersionId);
+	}
+
 	/**
 	 * If the Application exists, use the same Issue Template. If not, search for
 	 * the default Issue Template. If no default is set, use the first Issue
@@ -522,22 +661,70 @@ public class ApiClientWrapper {
 		return result.getData().getId();
 	}
 
-	public Artifact getArtifactInfo(@NonNull Long artifactId) throws ApiException {
-		ArtifactControllerApi artifactControllerApi = new ArtifactControllerApi(apiClient);
-		return artifactControllerApi.readArtifact(artifactId, null, null).getData();
+	/**
+	 * Uploads an FPR with a custom request body, e.g. one streaming the file from an agent. The generated client only
+	 * accepts a local {@link File}, so the multipart request is built here.
+	 */
+	public Long uploadFpr(@NonNull String fileName, @NonNull RequestBody content, @NonNull Long appVersionId)
+			throws ApiException {
+		RequestBody body = new MultipartBody.Builder().setType(MultipartBody.FORM)
+				.addFormDataPart("file", fileName, content).build();
+		Request request = new Request.Builder()
+				.url(apiClient.getBasePath() + "/projectVersions/" + appVersionId + "/artifacts")
+				.header("Authorization", authHeader).header("Accept", "application/json").post(body).build();
+		try (Response response = apiClient.getHttpClient().newCall(request).execute()) {
+			String responseBody = response.body() == null ? null : response.body().string();
+			if (!response.isSuccessful()) {
+				throw new ApiException(response.message(), response.code(), response.headers().toMultimap(), responseBody);
+			}
+			try {
+				return Long.valueOf(JSONObject.fromObject(responseBody).getJSONObject("data").getLong("id"));
+			} catch (JSONException e) {
+				throw new ApiException("Unexpected response to artifact upload: " + e.getMessage(), response.code(),
+						response.headers().toMultimap(), responseBody);
+			}
+		} catch (IOException e) {
+			throw new ApiException(e);
+		}
 	}
 
-	public List<Folder> getFoldersForAppVersion(Long appVersionId) throws ApiException {
-		List<Folder> folders = new ArrayList<Folder>();
-		FolderOfProjectVersionControllerApi folderOfProjectVersionControllerApi = new FolderOfProjectVersionControllerApi(
+	/**
+	 * @return id of the most recently uploaded artifact of the application version or null if it has no artifacts
+	 */
+	public Long getLatestArtifactId(@NonNull Long appVersionId) throws ApiException {
+		ArtifactOfProjectVersionControllerApi artifactOfProjectVersionControllerApi = new ArtifactOfProjectVersionControllerApi(
 				apiClient);
+		ApiResultListArtifact apiResultListArtifact = artifactOfProjectVersionControllerApi.listArtifactOfProjectVersion(
+				appVersionId, Projection.ID.getFields(), 0, 1, null, false, "-uploadDate", null);
+		List<Artifact> artifacts = apiResultListArtifact.getData();
+		return artifacts == null || artifacts.isEmpty() ? null : artifacts.get(0).getId();
+	}
 
-		ApiResultListFolder apiResultListFolder = folderOfProjectVersionControllerApi
-				.listFolderOfProjectVersion(appVersionId);
-		for (Folder folder : apiResultListFolder.getData()) {
-			folders.add(folder);
-		}
+	public Artifact getArtifactInfo(@NonNull Long artifactId) throws ApiException {
+		ArtifactControllerApi artifactControllerApi = new ArtifactControllerApi(apiClient);
+		return artifactControllerApi.readArtifact(artifactId, null, null).getData();
+	}
 
-		return folders;
+	/**
+	 * Returns the folders of the application version. The list is cached, see {@link VersionMetadataCache}.
+	 */
+	public List<Folder> getFoldersForAppVersion(final Long appVersionId) throws ApiException {
+		return metadataCache.get(VersionMetadataCache.Kind.FOLDERS, appVersionId,
+				new VersionMetadataCache.Loader<List<Folder>>() {
+					@Override
+					public List<Folder> load() throws ApiException {
+						List<Folder> folders = new ArrayList<Folder>();
+						FolderOfProjectVersionControllerApi folderOfProjectVersionControllerApi = new FolderOfProjectVersionControllerApi(
+								apiClient);
+
+						ApiResultListFolder apiResultListFolder = folderOfProjectVersionControllerApi
+								.listFolderOfProjectVersion(appVersionId);
+						for (Folder folder : apiResultListFolder.getData()) {
+							folders.add(folder);
+						}
+
+						return Collections.unmodifiableList(folders);
+					}
+				});
 	}
 }
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.fortifyclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import hudson.FilePath;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Request body that streams a (possibly remote) file straight from the node it is located on, so the file never has
+ * to be stored on the controller. The stream is opened again if OkHttp has to retry the request.
+ */
+public class FilePathRequestBody extends RequestBody {
+	private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+	private final FilePath file;
+	private final long length;
+
+	public FilePathRequestBody(FilePath file) throws IOException, InterruptedException {
+		this.file = file;
+		this.length = file.length();
+	}
+
+	@Override
+	public MediaType contentType() {
+		return OCTET_STREAM;
+	}
+
+	@Override
+	public long contentLength() {
+		return length;
+	}
+
+	@Override
+	public void writeTo(BufferedSink sink) throws IOException {
+		try (InputStream in = file.read(); Source source = Okio.source(in)) {
+			sink.writeAll(source);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading " + file.getRemote(), e);
+		}
+	}
+}
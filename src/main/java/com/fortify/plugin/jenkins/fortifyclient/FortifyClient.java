@@ -19,15 +19,28 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 
 import com.fortify.plugin.jenkins.ProxyConfig;
+import com.fortify.plugin.jenkins.RequestCoalescer;
 import com.fortify.plugin.jenkins.bean.GroupingProfile;
 import com.fortify.plugin.jenkins.bean.IssueBean;
+import com.fortify.plugin.jenkins.bean.IssueFolderBean;
 import com.fortify.plugin.jenkins.bean.ProjectDataEntry;
 import com.fortify.ssc.restclient.ApiException;
 import com.fortify.ssc.restclient.model.Artifact;
@@ -42,9 +55,18 @@ import com.fortify.ssc.restclient.model.ProjectVersion;
 import com.fortify.ssc.restclient.model.ProjectVersionIssue;
 import com.fortify.ssc.restclient.model.ProjectVersionIssueGroup;
 
+import hudson.FilePath;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.SystemProperties;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+
 /**
  * FortifyClient is basically a wrapper around SSC's REST client API
- *
+ * <p>
+ * Once initialized, a client is safe for use by concurrent builds, see {@link FortifyClientRegistry}.
  */
 public class FortifyClient {
 
@@ -59,7 +81,31 @@ public class FortifyClient {
 		}
 	}
 
+	/**
+	 * Maximum number of SSC queries a single operation (e.g. collecting per-folder issue counts) runs concurrently.
+	 * Set to 1 to run all queries sequentially.
+	 */
+	private static final int REQUEST_PARALLELISM = Math.max(1,
+			SystemProperties.getInteger(FortifyClient.class.getName() + ".requestParallelism", 4));
+
+	/**
+	 * Maximum number of pages of issues requested ahead while all issues of a folder are read
+	 */
+	private static final int ISSUE_PAGES_IN_FLIGHT = Math.max(1,
+			SystemProperties.getInteger(FortifyClient.class.getName() + ".issuePagesInFlight", 2));
+
+	private static final ExecutorService REQUEST_EXECUTOR = createRequestExecutor();
+
+	private static ExecutorService createRequestExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(REQUEST_PARALLELISM, REQUEST_PARALLELISM, 60L,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new NamingThreadFactory(new DaemonThreadFactory(), "FortifyClient.request"));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
 	private ApiClientWrapper apiClientWrapper;
+	private final RequestCoalescer<List<Object>, Object> coalescer = new RequestCoalescer<List<Object>, Object>();
 
 	/**
 	 * You have to call this init function before performance any operations
@@ -71,7 +117,20 @@ public class FortifyClient {
 	 */
 	public void init(String uri, String token, ProxyConfig proxyConfig,
 					 Integer connectTimeoutSeconds, Integer readTimeoutSeconds, Integer writeTimeoutSeconds) throws ApiException {
+		init(uri, token, proxyConfig, connectTimeoutSeconds, readTimeoutSeconds, writeTimeoutSeconds, null, null, null);
+	}
+
+	/**
+	 * Same as {@link #init(String, String, ProxyConfig, Integer, Integer, Integer)}, but lets the underlying HTTP client
+	 * reuse the given connection pool and dispatcher and keep metadata responses in the given cache, see
+	 * {@link FortifyClientRegistry}
+	 */
+	public void init(String uri, String token, ProxyConfig proxyConfig,
+					 Integer connectTimeoutSeconds, Integer readTimeoutSeconds, Integer writeTimeoutSeconds,
+					 ConnectionPool connectionPool, Dispatcher dispatcher, Cache responseCache) throws ApiException {
 		apiClientWrapper = new ApiClientWrapper(uri, token, connectTimeoutSeconds, readTimeoutSeconds, writeTimeoutSeconds);
+		apiClientWrapper.shareConnections(connectionPool, dispatcher);
+		apiClientWrapper.useResponseCache(responseCache);
 		apiClientWrapper.setProxy(proxyConfig);
 	}
 
@@ -167,10 +226,32 @@ public class FortifyClient {
 		return apiClientWrapper.uploadFpr(fpr, appVersionId);
 	}
 
+	/**
+	 * Upload an FPR that may be located on an agent, streaming it directly from there
+	 *
+	 * @param fpr
+	 *            the FPR file to be uploaded
+	 * @param appVersionId
+	 *            the SSC application version ID
+	 * @throws ApiException
+	 */
+	public Long uploadFPR(FilePath fpr, Long appVersionId) throws ApiException, IOException, InterruptedException {
+		return apiClientWrapper.uploadFpr(fpr.getName(), new FilePathRequestBody(fpr), appVersionId);
+	}
+
 	public Artifact getArtifactInfo(Long artifactId) throws ApiException {
 		return apiClientWrapper.getArtifactInfo(artifactId);
 	}
 
+	public Long getLatestArtifactId(final Long appVersionId) throws ApiException {
+		return coalesce(null, new Callable<Long>() {
+			@Override
+			public Long call() throws ApiException {
+				return apiClientWrapper.getLatestArtifactId(appVersionId);
+			}
+		}, "latestArtifactId", appVersionId);
+	}
+
 	/**
 	 * Create new or retrieve existing application version on SSC
 	 *
@@ -189,13 +270,18 @@ public class FortifyClient {
 	 * @throws ApiException
 	 */
 	public Long createProject(String projectName, String projectVersionName, String projectTemplateName,
-							  Map<String, String> attributeNamesAndValues, PrintWriter log) throws IOException, ApiException {
+							  Map<String, String> attributeNamesAndValues, final PrintWriter log) throws IOException, ApiException {
 
-		ProjectCreationService pcs = new ProjectCreationService(log, apiClientWrapper);
-		ProjectDataEntry projectData = new ProjectDataEntry(projectName, projectVersionName, projectTemplateName,
+		final ProjectDataEntry projectData = new ProjectDataEntry(projectName, projectVersionName, projectTemplateName,
 				attributeNamesAndValues);
-
-		return pcs.createProject(projectData);
+		// concurrent builds of a new version wait for the one creating it, only its log tells that it was created
+		return coalesce(log, new Callable<Long>() {
+			@Override
+			public Long call() throws IOException, ApiException {
+				ProjectCreationService pcs = new ProjectCreationService(log, apiClientWrapper);
+				return pcs.createProject(projectData);
+			}
+		}, "createProject", projectName, projectVersionName, projectTemplateName, attributeNamesAndValues);
 	}
 
 	/**
@@ -214,36 +300,73 @@ public class FortifyClient {
 				startPage * pageSize, pageSize, filter, null, null);
 
 		for (ProjectVersionIssue issue : issues) {
-			IssueBean issueBean = new IssueBean();
-			issueBean.setProjectVersionId(projectVersionId);
-			issueBean.setIssueId(issue.getId());
-			issueBean.setIssueInstanceId(issue.getIssueInstanceId());
-			issueBean.setPackageName(null); /* package */
-			issueBean.setClassName(null); /* className */
-			issueBean.setFunction(null); /* function */
-			issueBean.setSourceFilePath(issue.getFullFileName()); /* sourceFilePath */
-			issueBean.setFilePath(issue.getFullFileName());
-			/* filePath */;
-			issueBean.setLineNumber(String.valueOf(issue.getLineNumber()));
-			issueBean.setGroupName(issue.getIssueName());
-			issueBean.setAssignedUser(null); /* assigned user */
-			issueBean.setCategory(issue.getIssueName()); /* category */
-			issueBean.setType(issue.getIssueName()); /* type */
-			issueBean.setConfidence(String.valueOf(issue.getConfidence()));
-			issueBean.setSeverity(String.valueOf(issue.getSeverity()));
-			issueBean.setSubType(null); /* subType */
-			issueBean.setMappedCategory(issue.getIssueName()); // this is what's displayed in the last column of Fortify
-			// Assessment based on Group By selection
-			issueBean.setEngineType(issue.getEngineType());
-			result.put(issue.getIssueInstanceId(), issueBean);
+			result.put(issue.getIssueInstanceId(), createIssueBean(projectVersionId, issue));
 		}
 
 		return result;
 	}
 
-	public Map<String, List<String>> getGroupingValues(Long projectVersionId, String folderId, String filterSet,
-													   String searchCondition, String groupingName, String groupingType, PrintWriter log) throws ApiException {
+	/**
+	 * Iterates over all issues in the specified folder, in the order of
+	 * {@link #getIssuesByFolderId(Long, String, int, int, String, String, String, Boolean, Boolean, PrintWriter)}.
+	 * Map them with {@link #createIssueBean(Long, ProjectVersionIssue)}.
+	 */
+	public IssueIterator iterateIssuesByFolderId(Long projectVersionId, String folderId, int pageSize) {
+		return apiClientWrapper.iterateIssuesForAppVersion(projectVersionId, "FOLDER:" + folderId, pageSize,
+				ISSUE_PAGES_IN_FLIGHT);
+	}
+
+	/**
+	 * Maps an issue returned by SSC. The numbers are kept as numbers; the issue name, used as group, category, type
+	 * and mapped category, is one shared string.
+	 */
+	public static IssueBean createIssueBean(Long projectVersionId, ProjectVersionIssue issue) {
+		IssueBean issueBean = new IssueBean();
+		issueBean.setProjectVersionId(projectVersionId);
+		issueBean.setIssueId(issue.getId());
+		issueBean.setIssueInstanceId(issue.getIssueInstanceId());
+		issueBean.setPackageName(null); /* package */
+		issueBean.setClassName(null); /* className */
+		issueBean.setFunction(null); /* function */
+		issueBean.setSourceFilePath(issue.getFullFileName()); /* sourceFilePath */
+		issueBean.setFilePath(issue.getFullFileName());
+		/* filePath */;
+		if (issue.getLineNumber() != null) {
+			issueBean.setLineNumber(issue.getLineNumber().intValue());
+		}
+		issueBean.setGroupName(issue.getIssueName());
+		issueBean.setAssignedUser(null); /* assigned user */
+		issueBean.setCategory(issue.getIssueName()); /* category */
+		issueBean.setType(issue.getIssueName()); /* type */
+		if (issue.getConfidence() != null) {
+			issueBean.setConfidence(issue.getConfidence().floatValue());
+		}
+		if (issue.getSeverity() != null) {
+			issueBean.setSeverity(issue.getSeverity().floatValue());
+		}
+		issueBean.setSubType(null); /* subType */
+		issueBean.setMappedCategory(issue.getIssueName()); // this is what's displayed in the last column of Fortify
+		// Assessment based on Group By selection
+		issueBean.setEngineType(issue.getEngineType());
+		if (issue instanceof IssueIterator.ReadIssue) {
+			issueBean.setNew(((IssueIterator.ReadIssue) issue).isNew());
+		}
+		return issueBean;
+	}
 
+	public Map<String, List<String>> getGroupingValues(final Long projectVersionId, final String folderId, final String filterSet,
+													   final String searchCondition, final String groupingName, final String groupingType, final PrintWriter log) throws ApiException {
+		return coalesce(log, new Callable<Map<String, List<String>>>() {
+			@Override
+			public Map<String, List<String>> call() throws ApiException {
+				return loadGroupingValues(projectVersionId, folderId, filterSet, searchCondition, groupingName,
+						groupingType, log);
+			}
+		}, "groupingValues", projectVersionId, folderId, filterSet, searchCondition, groupingName, groupingType);
+	}
+
+	private Map<String, List<String>> loadGroupingValues(Long projectVersionId, String folderId, String filterSet,
+			String searchCondition, String groupingName, String groupingType, PrintWriter log) throws ApiException {
 		Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
 
 		groupingType = groupingType == null ? getGroupingType(projectVersionId, groupingName, log) : groupingType;
@@ -263,7 +386,7 @@ public class FortifyClient {
 			}
 		}
 
-		return result;
+		return Collections.unmodifiableMap(result);
 	}
 
 	/**
@@ -281,6 +404,31 @@ public class FortifyClient {
 		return getGroupingValues(projectVersionId, folderId, filterSet, searchCondition, groupingName, null, log);
 	}
 
+	/**
+	 * Same as {@link #getGroupingValues(Long, String, String, String, String, PrintWriter)} for a batch of folders.
+	 * The grouping type is resolved only once and the issue group queries run concurrently.
+	 *
+	 * @param folderIdsAndSearchConditions
+	 *            pairs of folder id and search condition, one query per pair
+	 * @return grouping values in the same order as the requested pairs
+	 */
+	public List<Map<String, List<String>>> getGroupingValues(final Long projectVersionId,
+			List<Pair<String, String>> folderIdsAndSearchConditions, final String filterSet, String groupingName,
+			final PrintWriter log) throws ApiException {
+		final String groupingType = getGroupingType(projectVersionId, groupingName, log);
+		List<Callable<Map<String, List<String>>>> queries = new ArrayList<Callable<Map<String, List<String>>>>();
+		for (final Pair<String, String> next : folderIdsAndSearchConditions) {
+			queries.add(new Callable<Map<String, List<String>>>() {
+				@Override
+				public Map<String, List<String>> call() throws ApiException {
+					return getGroupingValues(projectVersionId, next.getLeft(), filterSet, next.getRight(), null,
+							groupingType, log);
+				}
+			});
+		}
+		return invokeAll(queries);
+	}
+
 	/**
 	 * Returns all enabled folder ids with their attributes.
 	 *
@@ -289,7 +437,17 @@ public class FortifyClient {
 	 * @return map of folder id -&gt; list of attributes:
 	 *         name, description, color, totalIssueCount
 	 */
-	public Map<String, List<String>> getFolderIdToAttributesList(Long versionId, String filterSetGuid, PrintWriter log)
+	public Map<String, List<String>> getFolderIdToAttributesList(final Long versionId, final String filterSetGuid,
+			final PrintWriter log) throws ApiException {
+		return coalesce(log, new Callable<Map<String, List<String>>>() {
+			@Override
+			public Map<String, List<String>> call() throws ApiException {
+				return loadFolderIdToAttributesList(versionId, filterSetGuid, log);
+			}
+		}, "folders", versionId, filterSetGuid);
+	}
+
+	private Map<String, List<String>> loadFolderIdToAttributesList(Long versionId, String filterSetGuid, PrintWriter log)
 			throws ApiException {
 		Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
 		FilterSet defaultFilterSet = apiClientWrapper.getDefaultFilterSetForAppVersion(versionId);
@@ -306,43 +464,117 @@ public class FortifyClient {
 
 		List<ProjectVersionIssueGroup> issueGroupFolders = apiClientWrapper.getIssueGroupFolders(versionId,
 				filterSetGuid);
-		int allTotalCount = 0;
-		int allNewIssuesCount = 0;
+		Map<String, Folder> foldersByGuid = new LinkedHashMap<String, Folder>();
+		for (Folder folder : folders) {
+			foldersByGuid.put(folder.getGuid(), folder);
+		}
+		// filter out folders that are not specified in defaultFilterSet
+		List<Folder> enabledFolders = new ArrayList<Folder>();
 		for (FolderDto folderDto : folderDtoList) {
-			for (Folder folder : folders) {
-				// filter out folders that are not specified in defaultFilterSet
-				if (folderDto.getGuid().equals(folder.getGuid())) {
-					List<String> attributes = new ArrayList<String>();
-					attributes.add(folder.getName());
-					attributes.add(folder.getDescription());
-					attributes.add(folder.getColor());
-					int totalCount = getIssueGroupCountForFolder(issueGroupFolders, folder.getName());
-					allTotalCount += totalCount;
-					attributes.add(String.valueOf(totalCount));
-					int newIssuesCount = getNewIssueCountForFolder(versionId, folder.getGuid(), filterSetGuid);
-					allNewIssuesCount += newIssuesCount;
-					attributes.add(String.valueOf(newIssuesCount));
-					result.put(folder.getGuid(), attributes);
-				}
+			Folder folder = foldersByGuid.get(folderDto.getGuid());
+			if (folder != null) {
+				enabledFolders.add(folder);
 			}
 		}
 
+		final Long avId = versionId;
+		final String filterSet = filterSetGuid;
+		List<Callable<Integer>> newIssueCountQueries = new ArrayList<Callable<Integer>>();
+		for (final Folder folder : enabledFolders) {
+			newIssueCountQueries.add(new Callable<Integer>() {
+				@Override
+				public Integer call() throws ApiException {
+					return Integer.valueOf(getNewIssueCountForFolder(avId, folder.getGuid(), filterSet));
+				}
+			});
+		}
+		List<Integer> newIssueCounts = invokeAll(newIssueCountQueries);
+
+		int allTotalCount = 0;
+		int allNewIssuesCount = 0;
+		for (int i = 0; i < enabledFolders.size(); i++) {
+			Folder folder = enabledFolders.get(i);
+			List<String> attributes = new ArrayList<String>();
+			attributes.add(folder.getName());
+			attributes.add(folder.getDescription());
+			attributes.add(folder.getColor());
+			int totalCount = getIssueGroupCountForFolder(issueGroupFolders, folder.getName());
+			allTotalCount += totalCount;
+			attributes.add(String.valueOf(totalCount));
+			int newIssuesCount = newIssueCounts.get(i).intValue();
+			allNewIssuesCount += newIssuesCount;
+			attributes.add(String.valueOf(newIssuesCount));
+			result.put(folder.getGuid(), attributes);
+		}
+
 		addAllFolderInfo(result, allTotalCount, allNewIssuesCount); // add info for "All" folder to result
 
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Returns the folders of a filter set without counting their issues, so it doesn't depend on the processing of
+	 * the latest upload. The filter sets and folders come from the {@link VersionMetadataCache}.
+	 *
+	 * @param versionId
+	 *            id of the application version
+	 * @param filterSetGuid
+	 *            guid of the filter set or empty for the default filter set
+	 * @return map of folder id -&gt; folder name, empty if the filter set wasn't found
+	 */
+	public Map<String, String> getFolderNamesById(Long versionId, String filterSetGuid) throws ApiException {
+		FilterSet filterSet = null;
+		if (StringUtils.isEmpty(filterSetGuid)) {
+			filterSet = apiClientWrapper.getDefaultFilterSetForAppVersion(versionId);
+		} else {
+			for (FilterSet next : apiClientWrapper.getFilterSetsForAppVersion(versionId)) {
+				if (filterSetGuid.equals(next.getGuid())) {
+					filterSet = next;
+					break;
+				}
+			}
+		}
+		Map<String, String> result = new LinkedHashMap<String, String>();
+		if (filterSet == null || filterSet.getFolders() == null) {
+			return result;
+		}
+		Map<String, Folder> foldersByGuid = new LinkedHashMap<String, Folder>();
+		for (Folder folder : apiClientWrapper.getFoldersForAppVersion(versionId)) {
+			foldersByGuid.put(folder.getGuid(), folder);
+		}
+		for (FolderDto folderDto : filterSet.getFolders()) {
+			Folder folder = foldersByGuid.get(folderDto.getGuid());
+			if (folder != null) {
+				result.put(folder.getGuid(), folder.getName());
+			}
+		}
 		return result;
 	}
 
 	/**
-	 * Retrieves application version id from SSC by given application name and application version name.
+	 * Retrieves application version id from SSC by given application name and application version name. The parallel
+	 * branches of a pipeline that look up the same version at the same time share one lookup.
 	 *
 	 * @param appName
 	 * @param appVersionName
 	 * @return application version id
 	 * @throws ApiException
 	 */
-	public Long getProjectVersionId(String appName, String appVersionName) throws ApiException {
-		final Long applicationId = apiClientWrapper.getApplicationId(appName);
-		return apiClientWrapper.getVersionForApplication(applicationId, appVersionName);
+	public Long getProjectVersionId(final String appName, final String appVersionName) throws ApiException {
+		return coalesce(null, new Callable<Long>() {
+			@Override
+			public Long call() throws ApiException {
+				return apiClientWrapper.getVersionId(appName, appVersionName);
+			}
+		}, "getProjectVersionId", appName, appVersionName);
+	}
+
+	/**
+	 * Drops the cached filter sets, folders and group-by selectors of the application version, so that they are
+	 * queried again on next use
+	 */
+	public void invalidateMetadata(Long versionId) {
+		apiClientWrapper.invalidateMetadata(versionId);
 	}
 
 	private void addAllFolderInfo(Map<String, List<String>> result, int allTotalCount, int allNewIssuesCount) {
@@ -352,7 +584,54 @@ public class FortifyClient {
 		attributes.add("80A958");
 		attributes.add(String.valueOf(allTotalCount));
 		attributes.add(String.valueOf(allNewIssuesCount));
-		result.put("f599639d-f500-e046-2fd1-d82b5e9b26b4", attributes);
+		result.put(IssueFolderBean.ID_ALL, attributes);
+	}
+
+	/**
+	 * Runs the given SSC queries on the shared request executor and returns their results in the same order.
+	 * Queries are run in the calling thread if parallel requests are disabled.
+	 */
+	private static <T> List<T> invokeAll(List<Callable<T>> queries) throws ApiException {
+		List<T> results = new ArrayList<T>(queries.size());
+		if (queries.size() < 2 || REQUEST_PARALLELISM < 2) {
+			for (Callable<T> query : queries) {
+				results.add(callQuery(query));
+			}
+			return results;
+		}
+		List<Future<T>> futures = new ArrayList<Future<T>>(queries.size());
+		try {
+			for (Callable<T> query : queries) {
+				futures.add(REQUEST_EXECUTOR.submit(query));
+			}
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ApiException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ApiException) {
+				throw (ApiException) cause;
+			}
+			throw new ApiException(cause);
+		} finally {
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return results;
+	}
+
+	private static <T> T callQuery(Callable<T> query) throws ApiException {
+		try {
+			return query.call();
+		} catch (ApiException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ApiException(e);
+		}
 	}
 
 	private int getIssueGroupCountForFolder(List<ProjectVersionIssueGroup> issueGroupFolders, String folderId) {
@@ -431,4 +710,33 @@ public class FortifyClient {
 		}
 		return result;
 	}
+
+	/**
+	 * Runs the lookup unless an identical one is running, see {@link RequestCoalescer}. Messages of the lookup go to
+	 * the log of the caller that runs it, so the others only log when it failed.
+	 *
+	 * @param log
+	 *            log of the caller, may be null
+	 * @param operationAndArguments
+	 *            name of the lookup followed by all arguments that affect its result
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T coalesce(PrintWriter log, final Callable<T> lookup, Object... operationAndArguments) throws ApiException {
+		final AtomicBoolean ran = new AtomicBoolean();
+		try {
+			return (T) coalescer.call(Arrays.asList(operationAndArguments), new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					ran.set(true);
+					return lookup.call();
+				}
+			});
+		} catch (Exception e) {
+			if (log != null && !ran.get()) {
+				log.println("The identical request of another build to Fortify Software Security Center failed: "
+						+ e.getMessage());
+			}
+			throw e instanceof ApiException ? (ApiException) e : new ApiException(e);
+		}
+	}
 }
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.fortifyclient;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fortify.plugin.jenkins.ProxyConfig;
+import com.fortify.ssc.restclient.ApiException;
+
+import hudson.util.Secret;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+
+/**
+ * Keeps one {@link FortifyClient} per SSC connection configuration so that the HTTP connections, TLS sessions
+ * and dispatcher threads are reused between commands instead of being created for every single call.
+ * <p>
+ * All clients share the same OkHttp {@link ConnectionPool} and {@link Dispatcher}, clients with the same URL and
+ * token also share the {@link SscResponseCache}. Lookups are lock-free, so
+ * concurrent builds never wait on each other just to obtain a client.
+ * <p>
+ * A client is used by concurrent builds. It is configured by {@link FortifyClient#init} before it's published through
+ * the map and isn't changed afterwards: the generated ApiClient creates a new OkHttp call per request, the OkHttp
+ * client is immutable, and the only state kept between requests is in the thread-safe {@link VersionMetadataCache}
+ * and {@link com.fortify.plugin.jenkins.RequestCoalescer}.
+ */
+public final class FortifyClientRegistry {
+
+	/**
+	 * Upper bound of cached clients, only reached if the configuration is changed very often. The least recently used
+	 * clients are dropped first.
+	 */
+	static final int MAX_CLIENTS = 32;
+
+	private static final ConnectionPool CONNECTION_POOL = new ConnectionPool(10, 5, TimeUnit.MINUTES);
+	private static final Dispatcher DISPATCHER = new Dispatcher();
+
+	private static final ConcurrentMap<Key, Entry> CLIENTS = new ConcurrentHashMap<Key, Entry>();
+	// orders the uses of the clients
+	private static final AtomicLong USES = new AtomicLong();
+
+	private FortifyClientRegistry() {
+	}
+
+	/**
+	 * Returns a shared client for the given connection settings, creating it on first use.
+	 */
+	public static FortifyClient getClient(String url, String token, ProxyConfig proxyConfig,
+			Integer connectTimeoutSeconds, Integer readTimeoutSeconds, Integer writeTimeoutSeconds) throws ApiException {
+		Key key = new Key(url, token, proxyConfig, connectTimeoutSeconds, readTimeoutSeconds, writeTimeoutSeconds);
+		Entry entry = CLIENTS.get(key);
+		if (entry == null) {
+			FortifyClient client = new FortifyClient();
+			client.init(url, token, proxyConfig, connectTimeoutSeconds, readTimeoutSeconds, writeTimeoutSeconds,
+					CONNECTION_POOL, DISPATCHER, SscResponseCache.get(url, token));
+			Entry created = new Entry(client);
+			entry = CLIENTS.putIfAbsent(key, created);
+			if (entry == null) {
+				entry = created;
+				evictLeastRecentlyUsed();
+			}
+		}
+		entry.lastUse = USES.incrementAndGet();
+		return entry.client;
+	}
+
+	/**
+	 * Drops the least recently used clients above the maximum. Builds that still hold a dropped client keep using it.
+	 */
+	private static void evictLeastRecentlyUsed() {
+		while (CLIENTS.size() > MAX_CLIENTS) {
+			Map.Entry<Key, Entry> eldest = null;
+			for (Map.Entry<Key, Entry> entry : CLIENTS.entrySet()) {
+				if (eldest == null || entry.getValue().lastUse < eldest.getValue().lastUse) {
+					eldest = entry;
+				}
+			}
+			if (eldest == null) {
+				return;
+			}
+			CLIENTS.remove(eldest.getKey(), eldest.getValue());
+		}
+	}
+
+	/**
+	 * Drops all cached clients, their idle connections and cached responses after the global configuration was
+	 * changed.
+	 *
+	 * @param url
+	 *            the configured SSC URL
+	 * @param token
+	 *            the configured token, the response caches of other URLs and tokens are deleted
+	 */
+	public static void invalidateAll(String url, String token) {
+		CLIENTS.clear();
+		CONNECTION_POOL.evictAll();
+		SscResponseCache.invalidateAll(url, token);
+	}
+
+	private static final class Entry {
+		private final FortifyClient client;
+		private volatile long lastUse = USES.incrementAndGet();
+
+		Entry(FortifyClient client) {
+			this.client = client;
+		}
+	}
+
+	private static final class Key {
+		private final String url;
+		private final String token;
+		private final String proxyUrl;
+		private final String proxyUsername;
+		private final String proxyPassword;
+		private final Integer connectTimeout;
+		private final Integer readTimeout;
+		private final Integer writeTimeout;
+
+		Key(String url, String token, ProxyConfig proxyConfig, Integer connectTimeout, Integer readTimeout,
+				Integer writeTimeout) {
+			this.url = url;
+			this.token = token;
+			// proxy settings may come from Jenkins and change at any time, so resolve them on every lookup
+			this.proxyUrl = proxyConfig == null ? null : proxyConfig.getProxyUrlFor(url == null ? "" : url);
+			this.proxyUsername = proxyConfig == null ? null : Secret.toString(proxyConfig.getProxyUsername());
+			this.proxyPassword = proxyConfig == null ? null : Secret.toString(proxyConfig.getProxyPassword());
+			this.connectTimeout = connectTimeout;
+			this.readTimeout = readTimeout;
+			this.writeTimeout = writeTimeout;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return Objects.equals(url, other.url) && Objects.equals(token, other.token)
+					&& Objects.equals(proxyUrl, other.proxyUrl) && Objects.equals(proxyUsername, other.proxyUsername)
+					&& Objects.equals(proxyPassword, other.proxyPassword)
+					&& Objects.equals(connectTimeout, other.connectTimeout)
+					&& Objects.equals(readTimeout, other.readTimeout) && Objects.equals(writeTimeout, other.writeTimeout);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(url, token, proxyUrl, proxyUsername, proxyPassword, connectTimeout, readTimeout,
+					writeTimeout);
+		}
+	}
+}
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.fortifyclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import com.fortify.ssc.restclient.ApiException;
+import com.fortify.ssc.restclient.model.ProjectVersionIssue;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Issues of an application version, requested one page at a time while they are read. The next pages are requested
+ * in the background, but at most the given number of pages is requested or held at a time, so any number of issues
+ * can be read in constant memory. Responses are read with a streaming JSON reader; only the issue fields the plugin
+ * uses are set, see {@link #readIssue(JsonReader)}.
+ * <p>
+ * Close the iterator to cancel the pending requests if not all issues are read.
+ */
+public class IssueIterator implements Closeable {
+	private final OkHttpClient httpClient;
+	private final HttpUrl url;
+	private final String authHeader;
+	private final int pageSize;
+	private final int pagesInFlight;
+
+	private final Deque<PageCall> pages = new ArrayDeque<PageCall>();
+	private Iterator<ProjectVersionIssue> current = Collections.<ProjectVersionIssue>emptyIterator();
+	private int nextStart;
+	// total number of issues, -1 until the first page is read
+	private volatile long count = -1;
+	private boolean lastPageRead;
+
+	IssueIterator(OkHttpClient httpClient, HttpUrl url, String authHeader, int pageSize, int pagesInFlight) {
+		this.httpClient = httpClient;
+		this.url = url;
+		this.authHeader = authHeader;
+		this.pageSize = pageSize;
+		this.pagesInFlight = Math.max(1, pagesInFlight);
+		requestPages();
+	}
+
+	public boolean hasNext() throws ApiException {
+		while (!current.hasNext()) {
+			PageCall page = pages.poll();
+			if (page == null) {
+				return false;
+			}
+			List<ProjectVersionIssue> issues = page.await();
+			if (issues.size() < pageSize) {
+				lastPageRead = true;
+				close();
+			}
+			current = issues.iterator();
+			requestPages();
+		}
+		return true;
+	}
+
+	public ProjectVersionIssue next() throws ApiException {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return current.next();
+	}
+
+	/**
+	 * Cancels the pending requests
+	 */
+	@Override
+	public void close() {
+		for (PageCall page : pages) {
+			page.call.cancel();
+		}
+		pages.clear();
+	}
+
+	private void requestPages() {
+		while (!lastPageRead && pages.size() < pagesInFlight && (count < 0 || nextStart < count)) {
+			pages.add(new PageCall(nextStart));
+			nextStart += pageSize;
+		}
+	}
+
+	private List<ProjectVersionIssue> readPage(Response response) throws IOException, ApiException {
+		try (ResponseBody body = response.body()) {
+			if (!response.isSuccessful()) {
+				throw new ApiException(response.message(), response.code(), response.headers().toMultimap(),
+						body == null ? null : body.string());
+			}
+			List<ProjectVersionIssue> issues = new ArrayList<ProjectVersionIssue>(pageSize);
+			if (body == null) {
+				return issues;
+			}
+			JsonReader reader = new JsonReader(body.charStream());
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if ("data".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+					reader.beginArray();
+					while (reader.hasNext()) {
+						issues.add(readIssue(reader));
+					}
+					reader.endArray();
+				} else if ("count".equals(name) && reader.peek() == JsonToken.NUMBER) {
+					count = reader.nextLong();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return issues;
+		}
+	}
+
+	/**
+	 * Reads the fields of an issue that are mapped to {@link com.fortify.plugin.jenkins.bean.IssueBean}, the other
+	 * fields are skipped
+	 */
+	static ProjectVersionIssue readIssue(JsonReader reader) throws IOException {
+		ReadIssue issue = new ReadIssue();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.skipValue();
+				continue;
+			}
+			switch (name) {
+			case "id":
+				issue.setId(Long.valueOf(reader.nextLong()));
+				break;
+			case "issueInstanceId":
+				issue.setIssueInstanceId(reader.nextString());
+				break;
+			case "fullFileName":
+				issue.setFullFileName(reader.nextString());
+				break;
+			case "lineNumber":
+				issue.setLineNumber(Integer.valueOf(reader.nextInt()));
+				break;
+			case "issueName":
+				issue.setIssueName(reader.nextString());
+				break;
+			case "confidence":
+				issue.setConfidence(Float.valueOf((float) reader.nextDouble()));
+				break;
+			case "severity":
+				issue.setSeverity(Float.valueOf((float) reader.nextDouble()));
+				break;
+			case "engineType":
+				issue.setEngineType(reader.nextString());
+				break;
+			case "scanStatus":
+				issue.newIssue = "NEW".equals(reader.nextString());
+				break;
+			default:
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return issue;
+	}
+
+	/**
+	 * Issue read by the iterator, which also keeps whether the last scan found it
+	 */
+	static class ReadIssue extends ProjectVersionIssue {
+		// true if SSC didn't send the scan status
+		private boolean newIssue = true;
+
+		boolean isNew() {
+			return newIssue;
+		}
+	}
+
+	private class PageCall implements Callback {
+		private final Call call;
+		private final CompletableFuture<List<ProjectVersionIssue>> issues = new CompletableFuture<List<ProjectVersionIssue>>();
+
+		PageCall(int start) {
+			Request request = new Request.Builder()
+					.url(url.newBuilder().addQueryParameter("start", String.valueOf(start))
+							.addQueryParameter("limit", String.valueOf(pageSize)).build())
+					.header("Authorization", authHeader).header("Accept", "application/json").get().build();
+			call = httpClient.newCall(request);
+			call.enqueue(this);
+		}
+
+		@Override
+		public void onResponse(Call call, Response response) {
+			try {
+				issues.complete(readPage(response));
+			} catch (IOException | ApiException | RuntimeException e) {
+				issues.completeExceptionally(e);
+			}
+		}
+
+		@Override
+		public void onFailure(Call call, IOException e) {
+			issues.completeExceptionally(e);
+		}
+
+		List<ProjectVersionIssue> await() throws ApiException {
+			try {
+				return issues.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new ApiException(e);
+			} catch (ExecutionException e) {
+				close();
+				Throwable cause = e.getCause();
+				if (cause instanceof ApiException) {
+					throw (ApiException) cause;
+				}
+				throw new ApiException(cause);
+			}
+		}
+	}
+}
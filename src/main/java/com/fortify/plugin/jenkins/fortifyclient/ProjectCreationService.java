@@ -206,20 +206,7 @@ public class ProjectCreationService {
 	 * @throws ApiException
 	 */
 	public Long getAppVersionIdIfExists(String appName, String appVersionName) throws ApiException {
-		Long appId = apiClientWrapper.getApplicationId(appName);
-		if (appId != null) {
-			return getAppVersionIdIfExists(appId, appVersionName);
-		}
-
-		return null;
-	}
-
-	private Long getAppVersionIdIfExists(Long appId, String appVersionName) throws ApiException {
-		if (appId != null) {
-			return apiClientWrapper.getVersionForApplication(appId, appVersionName);
-		}
-
-		return null;
+		return apiClientWrapper.getVersionId(appName, appVersionName);
 	}
 
 	/**
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.fortifyclient;
+
+/**
+ * Fields SSC returns for each use of a query, so that responses contain only the attributes the plugin reads. When a
+ * caller starts reading another attribute, it has to be added to the projection of its use.
+ */
+enum Projection {
+	/**
+	 * Issues shown in the issue table and saved in the issue snapshot, see
+	 * {@link FortifyClient#createIssueBean(Long, com.fortify.ssc.restclient.model.ProjectVersionIssue)}
+	 */
+	ISSUE_TABLE("id,issueInstanceId,fullFileName,lineNumber,issueName,confidence,severity,engineType,scanStatus"),
+	/**
+	 * Applications offered in the job configuration
+	 */
+	APPLICATION_LIST("name,id"),
+	/**
+	 * Application versions offered in the job configuration, with the application they belong to
+	 */
+	VERSION_LIST("name,id,project"),
+	/**
+	 * Versions of an application offered in the job configuration
+	 */
+	VERSION_OF_APPLICATION_LIST("name,id"),
+	/**
+	 * Applications and versions looked up by name
+	 */
+	ID("id"),
+	/**
+	 * Issue templates offered in the job configuration and used to create application versions
+	 */
+	ISSUE_TEMPLATE("id,name,defaultTemplate,masterAttrGuid"),
+	/**
+	 * Pools offered in the job configuration
+	 */
+	CLOUD_POOL_LIST("name,uuid");
+
+	private final String fields;
+
+	private Projection(String fields) {
+		this.fields = fields;
+	}
+
+	/**
+	 * @return value of the fields parameter
+	 */
+	String getFields() {
+		return fields;
+	}
+}
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.fortifyclient;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import hudson.Util;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import okhttp3.Cache;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * On-disk cache of SSC metadata responses, such as issue templates, attribute definitions, cloud pools and
+ * application lists, under {@code JENKINS_HOME/caches/fortify-http}. SSC marks its responses as not cacheable, so
+ * the headers of the responses listed here are rewritten before they reach the OkHttp {@link Cache}:
+ * <ul>
+ * <li>responses with an ETag or Last-Modified header are stored but revalidated with a conditional request every
+ * time they are used, so they are never stale;</li>
+ * <li>responses to lists that rarely change and have no validators are used without asking SSC until the TTL
+ * expires.</li>
+ * </ul>
+ * Other responses are not touched. The cache key of OkHttp is only the URL, so every SSC URL and token has its own
+ * cache directory and users never get responses made for another token. The caches of other URLs and tokens than
+ * the configured ones are deleted when the global configuration is saved.
+ */
+public final class SscResponseCache {
+	private static final Logger LOGGER = Logger.getLogger(SscResponseCache.class.getName());
+
+	private static final long MAX_SIZE = SystemProperties
+			.getLong(SscResponseCache.class.getName() + ".maxSizeMegabytes", Long.valueOf(20)).longValue() * 1024 * 1024;
+	private static final long TTL_SECONDS = SystemProperties
+			.getLong(SscResponseCache.class.getName() + ".ttlSeconds", Long.valueOf(300)).longValue();
+	private static final boolean DISABLED = SystemProperties.getBoolean(SscResponseCache.class.getName() + ".disabled");
+
+	// paths relative to the API base path, SSC has no validators for the first ones
+	private static final Pattern RARELY_CHANGED = Pattern.compile("issueTemplates|attributeDefinitions|cloudpools");
+	private static final Pattern VALIDATED = Pattern
+			.compile("projects(/\\d+/versions)?|projectVersions(/\\d+/(filterSets|folders|issueSelectorSet))?");
+
+	private static final ConcurrentMap<String, Cache> CACHES = new ConcurrentHashMap<String, Cache>();
+
+	private static final AtomicLong REQUESTS = new AtomicLong();
+	private static final AtomicLong HITS = new AtomicLong();
+	private static final AtomicLong CONDITIONAL_HITS = new AtomicLong();
+
+	private SscResponseCache() {
+	}
+
+	/**
+	 * @return the cache of the given SSC URL and token or null if caching is disabled or Jenkins isn't running
+	 */
+	static Cache get(String url, String token) {
+		Jenkins jenkins = Jenkins.getInstanceOrNull();
+		if (DISABLED || MAX_SIZE <= 0 || jenkins == null) {
+			return null;
+		}
+		String name = getName(url, token);
+		Cache cache = CACHES.get(name);
+		if (cache == null) {
+			// a directory must not be used by two caches at the same time, nor while it's deleted
+			synchronized (CACHES) {
+				cache = CACHES.get(name);
+				if (cache == null) {
+					cache = new Cache(new File(getDirectory(jenkins), name), MAX_SIZE);
+					CACHES.put(name, cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+	private static String getName(String url, String token) {
+		return DigestUtils.sha256Hex(url + "\n" + token).substring(0, 32);
+	}
+
+	private static File getDirectory(Jenkins jenkins) {
+		return new File(jenkins.getRootDir(), "caches/fortify-http");
+	}
+
+	/**
+	 * Drops all cached responses after the global configuration was changed. The cache of the configured URL and token
+	 * is kept empty, the caches of other URLs and tokens are closed and deleted together with the directories left by
+	 * earlier runs, so that every token change doesn't leave a cache behind. They are created again if still used.
+	 */
+	static void invalidateAll(String url, String token) {
+		String configured = getName(url, token);
+		synchronized (CACHES) {
+			for (Iterator<Map.Entry<String, Cache>> it = CACHES.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<String, Cache> entry = it.next();
+				Cache cache = entry.getValue();
+				try {
+					if (entry.getKey().equals(configured)) {
+						cache.evictAll();
+					} else {
+						it.remove();
+						cache.delete();
+					}
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Failed to clear the SSC response cache " + cache.directory(), e);
+				}
+			}
+			Jenkins jenkins = Jenkins.getInstanceOrNull();
+			File[] directories = jenkins == null ? null : getDirectory(jenkins).listFiles();
+			if (directories == null) {
+				return;
+			}
+			for (File directory : directories) {
+				if (!directory.getName().equals(configured) && !CACHES.containsKey(directory.getName())) {
+					try {
+						Util.deleteRecursive(directory);
+					} catch (IOException e) {
+						LOGGER.log(Level.WARNING, "Failed to delete the SSC response cache " + directory, e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of cacheable requests since Jenkins was started
+	 */
+	public static long getRequestCount() {
+		return REQUESTS.get();
+	}
+
+	/**
+	 * @return number of cacheable requests answered from the cache, with or without asking SSC
+	 */
+	public static long getHitCount() {
+		return HITS.get();
+	}
+
+	/**
+	 * @return number of cacheable requests answered from the cache after SSC confirmed the response is still valid
+	 */
+	public static long getConditionalHitCount() {
+		return CONDITIONAL_HITS.get();
+	}
+
+	/**
+	 * @return bytes used by all caches on disk
+	 */
+	public static long getSize() {
+		long size = 0;
+		for (Cache cache : CACHES.values()) {
+			try {
+				size += cache.size();
+			} catch (IOException e) {
+				// not initialized yet
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return whether the response to the path, relative to the API base path, may be cached without validators
+	 */
+	static boolean isRarelyChanged(String path) {
+		return RARELY_CHANGED.matcher(path).matches();
+	}
+
+	static boolean isCacheable(String path) {
+		return isRarelyChanged(path) || VALIDATED.matcher(path).matches();
+	}
+
+	private static String getPath(HttpUrl url, String basePath) {
+		String path = url.encodedPath();
+		return path.startsWith(basePath) ? path.substring(basePath.length()) : null;
+	}
+
+	/**
+	 * Counts the hits of cacheable requests, added as an application interceptor so that it sees the responses
+	 * the cache returns
+	 */
+	static class StatisticsInterceptor implements Interceptor {
+		private final String basePath;
+
+		StatisticsInterceptor(String basePath) {
+			this.basePath = basePath;
+		}
+
+		@Override
+		public Response intercept(Chain chain) throws IOException {
+			Request request = chain.request();
+			Response response = chain.proceed(request);
+			String path = getPath(request.url(), basePath);
+			if ("GET".equals(request.method()) && path != null && isCacheable(path)) {
+				REQUESTS.incrementAndGet();
+				if (response.cacheResponse() != null) {
+					if (response.networkResponse() == null) {
+						HITS.incrementAndGet();
+					} else if (response.networkResponse().code() == 304) {
+						HITS.incrementAndGet();
+						CONDITIONAL_HITS.incrementAndGet();
+					}
+				}
+			}
+			return response;
+		}
+	}
+
+	/**
+	 * Rewrites the cache headers of the cacheable responses, added as a network interceptor so that the cache
+	 * stores the rewritten headers
+	 */
+	static class CacheControlInterceptor implements Interceptor {
+		private final String basePath;
+
+		CacheControlInterceptor(String basePath) {
+			this.basePath = basePath;
+		}
+
+		@Override
+		public Response intercept(Chain chain) throws IOException {
+			Request request = chain.request();
+			Response response = chain.proceed(request);
+			String path = getPath(request.url(), basePath);
+			if (!"GET".equals(request.method()) || path == null || !(response.isSuccessful() || response.code() == 304)) {
+				return response;
+			}
+			String cacheControl;
+			if (response.header("ETag") != null || response.header("Last-Modified") != null) {
+				if (!isCacheable(path)) {
+					return response;
+				}
+				cacheControl = "private, no-cache";
+			} else if (isRarelyChanged(path)) {
+				cacheControl = "private, max-age=" + TTL_SECONDS;
+			} else {
+				return response;
+			}
+			return response.newBuilder().removeHeader("Pragma").removeHeader("Expires").header("Cache-Control", cacheControl)
+					.build();
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.fortifyclient;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fortify.plugin.jenkins.RequestCoalescer;
+import com.fortify.ssc.restclient.ApiException;
+
+import jenkins.util.SystemProperties;
+
+/**
+ * Metadata of application versions that rarely changes in SSC, such as filter sets, folders and group-by selectors,
+ * kept for a short time so that the issue table and the job configuration page don't query it on every request.
+ * Each {@link ApiClientWrapper} has its own cache, so all of it is dropped with the client when the SSC configuration
+ * changes. If several threads ask for the same missing value, only one of them queries SSC.
+ * <p>
+ * Failed and empty lookups are not cached.
+ */
+class VersionMetadataCache {
+	private static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(
+			SystemProperties.getLong(VersionMetadataCache.class.getName() + ".ttlSeconds", Long.valueOf(300)).longValue());
+
+	/** Upper bound of cached values, expired values are dropped once it's reached */
+	private static final int MAX_ENTRIES = 1000;
+
+	enum Kind {
+		FILTER_SETS, FOLDERS, GROUP_BY_SET, ATTRIBUTE_DEFINITIONS
+	}
+
+	interface Loader<T> {
+		T load() throws ApiException;
+	}
+
+	private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+	private final RequestCoalescer<Key, Object> loading = new RequestCoalescer<Key, Object>();
+	// incremented on invalidation, values loaded meanwhile aren't cached
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Returns the cached value or loads it. If another thread is already loading the same value, waits for it instead.
+	 *
+	 * @param id
+	 *            id of the application version the value belongs to, or any other object identifying it
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T get(Kind kind, Object id, final Loader<T> loader) throws ApiException {
+		final Key key = new Key(kind, id);
+		Entry entry = entries.get(key);
+		if (entry != null && !entry.isExpired()) {
+			return (T) entry.value;
+		}
+		try {
+			return (T) loading.call(key, new Callable<Object>() {
+				@Override
+				public Object call() throws ApiException {
+					return load(key, loader);
+				}
+			});
+		} catch (ApiException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ApiException(e);
+		}
+	}
+
+	/**
+	 * Drops all values of the application version
+	 */
+	void invalidate(Long appVersionId) {
+		invalidations.incrementAndGet();
+		for (Iterator<Key> it = entries.keySet().iterator(); it.hasNext();) {
+			if (Objects.equals(it.next().id, appVersionId)) {
+				it.remove();
+			}
+		}
+	}
+
+	void invalidateAll() {
+		invalidations.incrementAndGet();
+		entries.clear();
+	}
+
+	private <T> T load(Key key, Loader<T> loader) throws ApiException {
+		// loaded by another thread since the cache was checked
+		Entry entry = entries.get(key);
+		if (entry != null && !entry.isExpired()) {
+			@SuppressWarnings("unchecked")
+			T value = (T) entry.value;
+			return value;
+		}
+		long generation = invalidations.get();
+		T value = loader.load();
+		if (value == null || (value instanceof Collection && ((Collection<?>) value).isEmpty())) {
+			entries.remove(key);
+		} else if (invalidations.get() == generation) {
+			if (entries.size() >= MAX_ENTRIES) {
+				purge();
+			}
+			entries.put(key, new Entry(value));
+		}
+		return value;
+	}
+
+	private void purge() {
+		for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+			if (it.next().getValue().isExpired()) {
+				it.remove();
+			}
+		}
+		if (entries.size() >= MAX_ENTRIES) {
+			entries.clear();
+		}
+	}
+
+	private static final class Entry {
+		private final Object value;
+		private final long loadedAt = System.currentTimeMillis();
+
+		Entry(Object value) {
+			this.value = value;
+		}
+
+		boolean isExpired() {
+			return System.currentTimeMillis() - loadedAt > TTL_MILLIS;
+		}
+	}
+
+	private static final class Key {
+		private final Kind kind;
+		private final Object id;
+
+		Key(Kind kind, Object id) {
+			this.kind = kind;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return kind == other.kind && Objects.equals(id, other.id);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(kind, id);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.steps;
+
+import java.io.Serializable;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.lang.StringUtils;
+
+import jenkins.util.SystemProperties;
+
+/**
+ * Decides how long to wait between two checks of the artifact processing status on SSC.
+ * <p>
+ * A fixed interval is used if one is configured. Otherwise the policy is adaptive: it starts with a short delay,
+ * seeded from the FPR size and from how long SSC needed for previous uploads to the same application version, and
+ * doubles the delay after every check up to a ceiling. A random jitter spreads the checks of builds that started at
+ * the same time.
+ */
+public class ArtifactPollingPolicy implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	static final long MIN_DELAY_MILLIS = 5 * 1000L;
+	static final long MAX_DELAY_MILLIS = SystemProperties
+			.getLong(ArtifactPollingPolicy.class.getName() + ".maxIntervalSeconds", Long.valueOf(300)).longValue() * 1000L;
+	// rough estimate of how fast SSC processes an FPR, only used until there is a history for the application version
+	private static final long BYTES_PER_SECOND = 4L * 1024 * 1024;
+	private static final double BACKOFF_FACTOR = 2.0;
+	private static final double JITTER = 0.2;
+
+	private final long fixedDelayMillis;
+	private long nextDelayMillis;
+
+	private ArtifactPollingPolicy(long fixedDelayMillis, long initialDelayMillis) {
+		this.fixedDelayMillis = fixedDelayMillis;
+		this.nextDelayMillis = initialDelayMillis;
+	}
+
+	/**
+	 * Waits the same time before each check
+	 */
+	public static ArtifactPollingPolicy fixed(long delayMillis) {
+		return new ArtifactPollingPolicy(delayMillis, delayMillis);
+	}
+
+	/**
+	 * @param fprSize
+	 *            size of the uploaded FPR in bytes or 0 if unknown
+	 * @param expectedProcessingMillis
+	 *            typical processing time of previous uploads to the same application version or null if unknown
+	 */
+	public static ArtifactPollingPolicy adaptive(long fprSize, Long expectedProcessingMillis) {
+		long initial;
+		if (expectedProcessingMillis != null) {
+			// check shortly before the processing is expected to complete
+			initial = (long) (expectedProcessingMillis.longValue() * 0.8);
+		} else {
+			initial = MIN_DELAY_MILLIS + fprSize / BYTES_PER_SECOND * 1000L;
+		}
+		return new ArtifactPollingPolicy(0, clamp(initial));
+	}
+
+	public boolean isAdaptive() {
+		return fixedDelayMillis <= 0;
+	}
+
+	/**
+	 * @return the time to wait before the next status check
+	 */
+	public long nextDelayMillis() {
+		return nextDelayMillis(ThreadLocalRandom.current());
+	}
+
+	long nextDelayMillis(Random random) {
+		if (!isAdaptive()) {
+			return fixedDelayMillis;
+		}
+		long delay = nextDelayMillis;
+		nextDelayMillis = clamp((long) (nextDelayMillis * BACKOFF_FACTOR));
+		double jitter = 1.0 + (random.nextDouble() * 2.0 - 1.0) * JITTER;
+		return clamp((long) (delay * jitter));
+	}
+
+	private static long clamp(long delayMillis) {
+		return Math.max(MIN_DELAY_MILLIS, Math.min(MAX_DELAY_MILLIS, delayMillis));
+	}
+
+	/**
+	 * Parses the polling interval setting: a number of minutes, or a number of seconds with an "s" suffix.
+	 *
+	 * @return the interval in milliseconds, 0 to disable waiting or null if the interval is not set
+	 * @throws NumberFormatException
+	 *             if the value can't be parsed
+	 */
+	public static Long parseInterval(String value) {
+		if (StringUtils.isBlank(value)) {
+			return null;
+		}
+		String trimmed = value.trim();
+		if (trimmed.endsWith("s") || trimmed.endsWith("S")) {
+			return Long.valueOf(Long.parseLong(trimmed.substring(0, trimmed.length() - 1).trim()) * 1000L);
+		}
+		return Long.valueOf(Long.parseLong(trimmed) * 60L * 1000L);
+	}
+
+	/**
+	 * @return the delay in a form suitable for the build log, e.g. "2 minute(s)" or "45 second(s)"
+	 */
+	public static String format(long delayMillis) {
+		if (delayMillis % (60 * 1000L) == 0) {
+			return delayMillis / (60 * 1000L) + " minute(s)";
+		}
+		return (delayMillis + 500) / 1000L + " second(s)";
+	}
+}
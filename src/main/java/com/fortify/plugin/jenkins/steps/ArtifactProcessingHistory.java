@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.steps;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.XmlFile;
+import jenkins.model.Jenkins;
+
+/**
+ * Remembers how long SSC needed to process the last uploads to each application version, so that
+ * {@link ArtifactPollingPolicy} can check the status of the next upload at the right time. Stored in
+ * JENKINS_HOME/com.fortify.plugin.jenkins.steps.ArtifactProcessingHistory.xml.
+ */
+public class ArtifactProcessingHistory {
+	private static final Logger LOGGER = Logger.getLogger(ArtifactProcessingHistory.class.getName());
+
+	private static final int MAX_APP_VERSIONS = 500;
+	private static final int MAX_DURATIONS = 5;
+
+	private static ArtifactProcessingHistory instance;
+
+	// application version -> last processing durations in milliseconds, oldest first
+	private LinkedHashMap<String, List<Long>> durations = new LinkedHashMap<String, List<Long>>();
+
+	public static synchronized ArtifactProcessingHistory get() {
+		if (instance == null) {
+			instance = new ArtifactProcessingHistory();
+			XmlFile file = getConfigFile();
+			if (file.exists()) {
+				try {
+					file.unmarshal(instance);
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Failed to load " + file, e);
+				}
+			}
+		}
+		return instance;
+	}
+
+	private static XmlFile getConfigFile() {
+		return new XmlFile(Jenkins.XSTREAM2, new File(Jenkins.get().getRootDir(), ArtifactProcessingHistory.class.getName() + ".xml"));
+	}
+
+	private static String key(String appName, String appVersion) {
+		return appName + '\n' + appVersion;
+	}
+
+	/**
+	 * @return the median of the recorded processing durations or null if nothing was recorded yet
+	 */
+	public synchronized Long getExpectedDuration(String appName, String appVersion) {
+		List<Long> recorded = durations.get(key(appName, appVersion));
+		if (recorded == null || recorded.isEmpty()) {
+			return null;
+		}
+		List<Long> sorted = new ArrayList<Long>(recorded);
+		sorted.sort(null);
+		return sorted.get(sorted.size() / 2);
+	}
+
+	/**
+	 * Estimates how long the processing took from the status checks. It finished after the last check that found it
+	 * still processing and before the first one that found it complete, so the middle is taken. The time of the latter
+	 * would add part of the last polling delay to every recorded duration, and the adaptive policy waits longer the
+	 * longer the recorded durations are.
+	 *
+	 * @param lastIncompleteCheck
+	 *            time of the last check that found the artifact still processing, or of the start of the wait
+	 */
+	static long estimateDuration(long pollingStarted, long lastIncompleteCheck, long completeCheck) {
+		long processing = Math.max(pollingStarted, lastIncompleteCheck);
+		return Math.max(0, processing + (completeCheck - processing) / 2 - pollingStarted);
+	}
+
+	public synchronized void record(String appName, String appVersion, long durationMillis) {
+		String key = key(appName, appVersion);
+		List<Long> recorded = durations.remove(key);
+		if (recorded == null) {
+			recorded = new ArrayList<Long>();
+		}
+		recorded.add(Long.valueOf(durationMillis));
+		while (recorded.size() > MAX_DURATIONS) {
+			recorded.remove(0);
+		}
+		durations.put(key, recorded); // most recently used application versions are last
+		while (durations.size() > MAX_APP_VERSIONS) {
+			String eldest = durations.keySet().iterator().next();
+			durations.remove(eldest);
+		}
+		try {
+			getConfigFile().write(this);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to save artifact processing history", e);
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.steps;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fortify.plugin.jenkins.FortifyPlugin;
+import com.fortify.plugin.jenkins.RequestCoalescer;
+import com.fortify.plugin.jenkins.fortifyclient.FortifyClient;
+import com.fortify.ssc.restclient.model.Artifact;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Checks the processing status of uploaded artifacts for all builds of the controller.
+ * <p>
+ * Builds register the artifact they wait for together with the time of the next check. A single ticker collects the
+ * checks that are due, asks SSC only once per artifact even if several builds wait for it, and runs the requests on a
+ * small bounded pool. The builds are notified through the returned future, so waiting doesn't hold a thread.
+ */
+public class ArtifactStatusPoller {
+	private static final Logger LOGGER = Logger.getLogger(ArtifactStatusPoller.class.getName());
+
+	static final long TICK_MILLIS = SystemProperties
+			.getLong(ArtifactStatusPoller.class.getName() + ".tickMillis", Long.valueOf(5000)).longValue();
+	private static final int PARALLELISM = Math.max(1,
+			SystemProperties.getInteger(ArtifactStatusPoller.class.getName() + ".parallelism", 4));
+
+	private static final ArtifactStatusPoller INSTANCE = new ArtifactStatusPoller();
+
+	private final ThreadPoolExecutor executor;
+	// artifact id -> checks requested by the builds waiting for it
+	private final Map<Long, List<PendingCheck>> pending = new HashMap<Long, List<PendingCheck>>();
+	// status requests currently running against SSC, by artifact id
+	private final RequestCoalescer<Long, Artifact.StatusEnum> inFlight = new RequestCoalescer<Long, Artifact.StatusEnum>();
+	private ScheduledFuture<?> ticker;
+
+	private ArtifactStatusPoller() {
+		executor = new ThreadPoolExecutor(PARALLELISM, PARALLELISM, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new NamingThreadFactory(new DaemonThreadFactory(), "ArtifactStatusPoller"));
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	public static ArtifactStatusPoller get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Requests a status check of the artifact after the given delay. The check may run up to {@link #TICK_MILLIS}
+	 * later, so that it can be combined with the checks of other builds. Cancelling the returned future withdraws the
+	 * request.
+	 *
+	 * @return the status of the artifact on SSC
+	 */
+	public synchronized CompletableFuture<Artifact.StatusEnum> check(Long artifactId, long delayMillis) {
+		PendingCheck check = new PendingCheck(System.currentTimeMillis() + delayMillis);
+		List<PendingCheck> checks = pending.get(artifactId);
+		if (checks == null) {
+			checks = new ArrayList<PendingCheck>();
+			pending.put(artifactId, checks);
+		}
+		checks.add(check);
+		if (ticker == null) {
+			ticker = Timer.get().scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					tick();
+				}
+			}, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		return check.result;
+	}
+
+	private void tick() {
+		try {
+			long now = System.currentTimeMillis();
+			Map<Long, List<PendingCheck>> due = new HashMap<Long, List<PendingCheck>>();
+			Map<Long, CompletableFuture<Artifact.StatusEnum>> statuses = new HashMap<Long, CompletableFuture<Artifact.StatusEnum>>();
+			synchronized (this) {
+				for (Iterator<Map.Entry<Long, List<PendingCheck>>> entries = pending.entrySet().iterator(); entries.hasNext();) {
+					Map.Entry<Long, List<PendingCheck>> entry = entries.next();
+					for (Iterator<PendingCheck> checks = entry.getValue().iterator(); checks.hasNext();) {
+						PendingCheck check = checks.next();
+						if (check.result.isDone()) {
+							checks.remove(); // cancelled by the build
+						} else if (check.dueAt <= now) {
+							checks.remove();
+							List<PendingCheck> dueChecks = due.get(entry.getKey());
+							if (dueChecks == null) {
+								dueChecks = new ArrayList<PendingCheck>();
+								due.put(entry.getKey(), dueChecks);
+							}
+							dueChecks.add(check);
+						}
+					}
+					if (entry.getValue().isEmpty()) {
+						entries.remove();
+					}
+				}
+				if (pending.isEmpty() && ticker != null) {
+					ticker.cancel(false);
+					ticker = null;
+				}
+				for (Long artifactId : due.keySet()) {
+					statuses.put(artifactId, requestStatus(artifactId));
+				}
+			}
+			// the builds are notified outside of the lock, they request their next check from the callback
+			for (Map.Entry<Long, List<PendingCheck>> entry : due.entrySet()) {
+				for (final PendingCheck check : entry.getValue()) {
+					statuses.get(entry.getKey()).whenComplete(new BiConsumer<Artifact.StatusEnum, Throwable>() {
+						@Override
+						public void accept(Artifact.StatusEnum result, Throwable error) {
+							if (error != null) {
+								check.result.completeExceptionally(error);
+							} else {
+								check.result.complete(result);
+							}
+						}
+					});
+				}
+			}
+			if (!due.isEmpty()) {
+				LOGGER.log(Level.FINE, "Checking the status of {0} artifact(s)", due.size());
+			}
+		} catch (Throwable t) {
+			LOGGER.log(Level.WARNING, "Failed to check the status of uploaded artifacts", t);
+		}
+	}
+
+	/**
+	 * @return the status request of the artifact that is already running or a new one
+	 */
+	private CompletableFuture<Artifact.StatusEnum> requestStatus(final Long artifactId) {
+		return inFlight.submit(artifactId, executor, new Callable<Artifact.StatusEnum>() {
+			@Override
+			public Artifact.StatusEnum call() throws Exception {
+				return FortifyPlugin.runWithFortifyClient(FortifyPlugin.DESCRIPTOR.getToken(),
+						new FortifyClient.Command<Artifact.StatusEnum>() {
+							@Override
+							public Artifact.StatusEnum runWith(FortifyClient client) throws Exception {
+								return client.getArtifactInfo(artifactId).getStatus();
+							}
+						});
+			}
+		});
+	}
+
+	private static class PendingCheck {
+		private final long dueAt;
+		private final CompletableFuture<Artifact.StatusEnum> result = new CompletableFuture<Artifact.StatusEnum>();
+
+		PendingCheck(long dueAt) {
+			this.dueAt = dueAt;
+		}
+	}
+}
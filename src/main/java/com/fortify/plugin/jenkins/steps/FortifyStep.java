@@ -48,10 +48,24 @@ import jenkins.tasks.SimpleBuildStep;
 public abstract class FortifyStep extends Step implements SimpleBuildStep {
 	public static final String VERSION = FortifyPlugin.getPluginVersion();
 
-	protected Run<?, ?> lastBuild;
+	// Run is not serializable, so only its id is kept when the step is persisted (e.g. with an asynchronous execution)
+	protected transient Run<?, ?> lastBuild;
+	private String lastBuildId;
 
 	protected void setLastBuild(Run<?, ?> lastBuild) {
 		this.lastBuild = lastBuild;
+		this.lastBuildId = lastBuild == null ? null : lastBuild.getExternalizableId();
+	}
+
+	protected Run<?, ?> getLastBuild() {
+		if (lastBuild == null && lastBuildId != null) {
+			try {
+				lastBuild = Run.fromExternalizableId(lastBuildId);
+			} catch (RuntimeException e) {
+				// the build was deleted or can't be accessed anymore
+			}
+		}
+		return lastBuild;
 	}
 
 	/**
@@ -118,6 +132,7 @@ public abstract class FortifyStep extends Step implements SimpleBuildStep {
 		if (param == null) {
 			return "";
 		}
+		Run<?, ?> lastBuild = getLastBuild();
 		if (lastBuild == null) {
 			return param;
 		}
@@ -24,16 +24,25 @@ import java.io.Serializable;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.steps.StepExecution;
-import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -42,9 +51,14 @@ import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.verb.POST;
 
+import com.fortify.plugin.jenkins.FPRAnalyzer;
+import com.fortify.plugin.jenkins.FPRStatistics;
 import com.fortify.plugin.jenkins.FPRSummary;
 import com.fortify.plugin.jenkins.FortifyPlugin;
 import com.fortify.plugin.jenkins.FortifyUploadBuildAction;
+import com.fortify.plugin.jenkins.IssuePageCache;
+import com.fortify.plugin.jenkins.IssueSnapshot;
+import com.fortify.plugin.jenkins.IssueStore;
 import com.fortify.plugin.jenkins.Messages;
 import com.fortify.plugin.jenkins.PathUtils;
 import com.fortify.plugin.jenkins.RemoteService;
@@ -54,6 +68,8 @@ import com.fortify.plugin.jenkins.bean.GroupingValueBean;
 import com.fortify.plugin.jenkins.bean.IssueBean;
 import com.fortify.plugin.jenkins.bean.IssueFolderBean;
 import com.fortify.plugin.jenkins.fortifyclient.FortifyClient;
+import com.fortify.plugin.jenkins.fortifyclient.IssueIterator;
+import com.fortify.ssc.restclient.ApiException;
 import com.fortify.ssc.restclient.model.Artifact;
 import com.google.common.collect.ImmutableSet;
 
@@ -71,12 +87,27 @@ import hudson.model.Run;
 import hudson.model.StreamBuildListener;
 import hudson.model.TaskListener;
 import hudson.util.ComboBoxModel;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.SystemProperties;
 
 public class FortifyUpload extends FortifyStep implements Serializable {
 	private static final long serialVersionUID = -8308672776705963290L;
 
+	/**
+	 * Results located on an agent are streamed to SSC through the controller without being stored there. Set to true
+	 * to copy them to a temporary file on the controller before the upload instead.
+	 */
+	private static final boolean COPY_REMOTE_RESULTS = SystemProperties.getBoolean(FortifyUpload.class.getName() + ".copyRemoteResults");
+
+	/**
+	 * Number of issues requested at a time when the issue snapshot is saved
+	 */
+	private static final int SNAPSHOT_PAGE_SIZE = Math.max(1,
+			SystemProperties.getInteger(FortifyUpload.class.getName() + ".snapshotPageSize", 500));
+
 	private boolean accessToProject = true;
 	private int pageSize = 0;
 
@@ -89,6 +120,9 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 	private String appVersion;
 	private String timeout;
 	private String pollingInterval;
+	private boolean localStatistics;
+	private boolean deduplicate;
+	private boolean issueSnapshot;
 
 	public FortifyUpload(boolean isPipeline, String appName, String appVersion) {
 		this(appName, appVersion);
@@ -155,6 +189,33 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 		return pollingInterval;
 	}
 
+	@DataBoundSetter
+	public void setLocalStatistics(boolean localStatistics) {
+		this.localStatistics = localStatistics;
+	}
+
+	public boolean isLocalStatistics() {
+		return localStatistics;
+	}
+
+	@DataBoundSetter
+	public void setDeduplicate(boolean deduplicate) {
+		this.deduplicate = deduplicate;
+	}
+
+	public boolean isDeduplicate() {
+		return deduplicate;
+	}
+
+	@DataBoundSetter
+	public void setIssueSnapshot(boolean issueSnapshot) {
+		this.issueSnapshot = issueSnapshot;
+	}
+
+	public boolean isIssueSnapshot() {
+		return issueSnapshot;
+	}
+
 	public boolean isPipeline() {
 		return isPipeline;
 	}
@@ -218,15 +279,89 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 	}
 
 	public Integer performAndReturnIssueCount(Run<?, ?> run, FilePath workspace, EnvVars vars, Launcher launcher, TaskListener listener) throws InterruptedException, IOException {
-		PrintStream log = listener.getLogger();
 		setLastBuild(run);
-		RemoteService service = new RemoteService(getResolvedFpr(listener));
+		UploadResult uploaded = uploadAndAnalyze(workspace, listener);
+		if (needsProcessedArtifact(uploaded, listener)) {
+			pollFprProcessing(run, uploaded, listener);
+		}
+		return processResults(run, uploaded, listener);
+	}
+
+	/**
+	 * Locates the results file, calculates the local statistics if requested and uploads the file to SSC
+	 */
+	private UploadResult uploadAndAnalyze(FilePath workspace, TaskListener listener) throws InterruptedException, IOException {
+		PrintStream log = listener.getLogger();
+		RemoteService service = new RemoteService(getResolvedFpr(listener), isDeduplicate());
 		FPRSummary summary = workspace.act(service);
+		long fprSize = summary.getFprFile().length();
+		if (summary.getFprHash() != null) {
+			Long previousArtifactId = findIdenticalUpload(summary.getFprHash(), listener);
+			if (previousArtifactId != null) {
+				log.printf("The analysis results file is identical to artifact %d, which was already processed by Fortify Software Security Center. Skipping the upload%n",
+						previousArtifactId);
+				return new UploadResult(previousArtifactId, fprSize, null, true);
+			}
+		}
+		FPRAnalyzer.Result localResult = null;
+		if (isLocalStatistics()) {
+			// checked before the upload so that the build doesn't have to wait for SSC to process it
+			if (FPRAnalyzer.matchesFolders(getFolderNamesById(listener))) {
+				log.println("Calculating build statistics from the analysis results file");
+				localResult = summary.getFprFile().act(new FPRAnalyzer());
+				if (localResult == null) {
+					log.println("The analysis results file doesn't contain audit.fvdl, build statistics will be retrieved from Fortify Software Security Center");
+				}
+			} else {
+				log.println("The folders of the application version differ from the folders of the default filter set, build statistics will be retrieved from Fortify Software Security Center");
+			}
+		}
 		Long artifactId = uploadToSSC(summary, workspace, listener);
-		pollFprProcessing(run, artifactId, listener);
+		return new UploadResult(artifactId, fprSize, localResult, false);
+	}
 
-		log.println("Retrieving build statistics from Fortify Software Security Center");
-		calculateFprStatistics(summary, listener);
+	/**
+	 * Statistics calculated from the analysis results file don't need the artifact processed by SSC, but the
+	 * failure criteria, the issue snapshot and the statistics recorded for identical uploads do.
+	 *
+	 * @return whether the build has to wait until SSC processed the uploaded artifact
+	 */
+	private boolean needsProcessedArtifact(UploadResult uploaded, TaskListener listener) {
+		if (uploaded.duplicate) {
+			return false;
+		}
+		if (uploaded.localResult == null || isIssueSnapshot() || isDeduplicate()
+				|| !StringUtils.isBlank(getResolvedFailureCriteria(listener))) {
+			return true;
+		}
+		listener.getLogger().println("The build statistics were calculated from the analysis results file, not waiting for Fortify Software Security Center to process the upload");
+		return false;
+	}
+
+	/**
+	 * Calculates the build statistics, saves them and updates the build. Unless they were calculated from the
+	 * analysis results file before the upload, SSC has processed the uploaded artifact at this point.
+	 *
+	 * @return number of issues matching the failure criteria
+	 */
+	private Integer processResults(Run<?, ?> run, UploadResult uploaded, TaskListener listener)
+			throws IOException, InterruptedException {
+		PrintStream log = listener.getLogger();
+		FPRSummary summary = new FPRSummary();
+		String statisticsSettings = getStatisticsSettings(listener);
+		if (uploaded.duplicate && UploadedArtifactIndex.get().applyStatistics(uploaded.artifactId, statisticsSettings, summary)) {
+			log.println("Reusing the build statistics calculated for the identical analysis results file");
+		} else {
+			if (uploaded.localResult != null) {
+				applyLocalStatistics(summary, uploaded.localResult, listener);
+			} else {
+				log.println("Retrieving build statistics from Fortify Software Security Center");
+				calculateFprStatistics(summary, listener);
+			}
+			if (isDeduplicate()) {
+				UploadedArtifactIndex.get().recordStatistics(uploaded.artifactId, statisticsSettings, summary);
+			}
+		}
 
 		log.printf("Calculated NVS=%f, failedCount=%d%n", summary.getNvs(), summary.getFailedCount());
 
@@ -238,6 +373,10 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 			summary.save(run.getRootDir(), null, null);
 		}
 
+		if (isIssueSnapshot()) {
+			saveIssueSnapshot(run, listener);
+		}
+
 		// now check if the fail count
 		if (summary.getFailedCount() > 0) {
 			log.printf(
@@ -257,6 +396,59 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 		return summary.getFailedCount();
 	}
 
+	/**
+	 * Stores the issues of all folders in the build directory, so that the issue table doesn't have to query SSC.
+	 * The issues are requested and written one page at a time.
+	 */
+	private void saveIssueSnapshot(Run<?, ?> run, TaskListener listener) throws InterruptedException {
+		final PrintStream log = listener.getLogger();
+		log.println("Saving issue snapshot");
+		final List<IssueFolderBean> folders = getFolders(listener);
+		final IssuePageCache.Revision revision = getIssueRevision(listener);
+		if (revision == null) {
+			log.println("Can't save the issue snapshot, the application version wasn't found in Fortify Software Security Center");
+			return;
+		}
+		String appName = getResolvedAppName(listener);
+		String appVersion = getResolvedAppVersion(listener);
+		File file = new File(run.getRootDir(), isPipeline ? IssueSnapshot.getFileName(appName, appVersion) : IssueSnapshot.getFileName(null, null));
+		try (final IssueSnapshot.Writer snapshot = new IssueSnapshot.Writer(file, revision, appName, appVersion, folders)) {
+			FortifyPlugin.runWithFortifyClient(FortifyPlugin.DESCRIPTOR.getToken(), new FortifyClient.Command<Void>() {
+				@Override
+				public Void runWith(FortifyClient client) throws Exception {
+					for (IssueFolderBean folder : folders) {
+						snapshot.startFolder(folder.getId());
+						try (IssueIterator issues = client.iterateIssuesByFolderId(revision.getAppVersionId(),
+								folder.getId(), SNAPSHOT_PAGE_SIZE)) {
+							while (issues.hasNext()) {
+								snapshot.write(FortifyClient.createIssueBean(revision.getAppVersionId(), issues.next()));
+							}
+						}
+						snapshot.endFolder();
+					}
+					return null;
+				}
+			});
+			snapshot.commit();
+			log.printf("Saved %d issues of %d folders%n", snapshot.getIssueCount(), folders.size());
+		} catch (IOException | ApiException e) {
+			// the build doesn't depend on the snapshot
+			log.println("Failed to save the issue snapshot");
+			e.printStackTrace(log);
+			return;
+		} catch (InterruptedException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+		try {
+			IssueStore.create(IssueSnapshot.open(file));
+		} catch (IOException e) {
+			// created when the snapshot is shown
+			log.println("Failed to index the issue snapshot. " + e.getMessage());
+		}
+	}
+
 	/**
 	 * 
 	 * @param workspace
@@ -274,13 +466,16 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 		if (!StringUtils.isBlank(logMsg))
 			log.println(logMsg);
 
-		// if FPR is a remote FilePath, copy to local
+		// if FPR is a remote FilePath, it is streamed from the agent during the upload unless copying to local is requested
 		File localFPR = null;
 		if (summary.getFprFile().isRemote()) {
-			localFPR = copyToLocalTmp(summary.getFprFile());
+			if (COPY_REMOTE_RESULTS) {
+				localFPR = copyToLocalTmp(summary.getFprFile());
+			}
 		} else {
 			localFPR = new File(summary.getFprFile().toURI());
 		}
+		final FilePath remoteFPR = localFPR == null ? summary.getFprFile() : null;
 		log.printf("Using analysis results file: %s%n", summary.getFprFile().toURI());
 		// if ( summary.getFprFile().isRemote() )
 		//log.printf("Local analysis results file: %s%n", localFPR.getCanonicalFile());
@@ -300,10 +495,18 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 						new FortifyClient.Command<Long>() {
 							@Override
 							public Long runWith(FortifyClient client) throws Exception {
+								// settings changed in SSC since the last upload show up in the new build
+								client.invalidateMetadata(projectId);
+								if (remoteFPR != null) {
+									return client.uploadFPR(remoteFPR, projectId);
+								}
 								return client.uploadFPR(fpr, projectId);
 							}
 						});
 				log.printf("Analysis results uploaded successfully. artifact id = %d%n", artifactId);
+				if (summary.getFprHash() != null) {
+					UploadedArtifactIndex.get().recordUpload(FortifyPlugin.DESCRIPTOR.getUrl(), projectId, summary.getFprHash(), artifactId);
+				}
 				return artifactId;
 			} catch (Throwable t) {
 				log.println("Error uploading to Fortify Software Security Center: " + FortifyPlugin.DESCRIPTOR.getUrl());
@@ -334,74 +537,80 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 		}
 	}
 
-	private void pollFprProcessing(Run<?, ?> run, Long artifactId, TaskListener listener) throws IOException {
+	/**
+	 * Looks for an earlier upload of the same FPR that is still the latest artifact of the application version and
+	 * was processed by SSC
+	 *
+	 * @return id of that artifact or null if the FPR has to be uploaded
+	 */
+	private Long findIdenticalUpload(final String fprHash, TaskListener listener) {
+		final String appName = getResolvedAppName(listener);
+		final String appVersion = getResolvedAppVersion(listener);
+		if (StringUtils.isBlank(appName) || StringUtils.isBlank(appVersion) || !FortifyPlugin.DESCRIPTOR.canUploadToSsc()) {
+			return null;
+		}
+		try {
+			return FortifyPlugin.runWithFortifyClient(FortifyPlugin.DESCRIPTOR.getToken(), new FortifyClient.Command<Long>() {
+				@Override
+				public Long runWith(FortifyClient client) throws Exception {
+					Long versionId = client.getProjectVersionId(appName, appVersion);
+					if (versionId == null) {
+						return null;
+					}
+					UploadedArtifactIndex.Entry previous = UploadedArtifactIndex.get()
+							.getLatestUpload(FortifyPlugin.DESCRIPTOR.getUrl(), versionId);
+					if (previous == null || !fprHash.equals(previous.getFprHash())
+							|| !previous.getArtifactId().equals(client.getLatestArtifactId(versionId))) {
+						return null;
+					}
+					Artifact artifact = client.getArtifactInfo(previous.getArtifactId());
+					return artifact.getStatus() == Artifact.StatusEnum.PROCESS_COMPLETE ? previous.getArtifactId() : null;
+				}
+			});
+		} catch (Throwable t) {
+			listener.getLogger().println("Can't check for an identical earlier upload, the analysis results file will be uploaded. " + t.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return the settings the build statistics depend on
+	 */
+	private String getStatisticsSettings(TaskListener listener) {
+		return getResolvedFilterSet(listener) + '\n' + getResolvedFailureCriteria(listener) + '\n' + isLocalStatistics();
+	}
+
+	private void pollFprProcessing(Run<?, ?> run, UploadResult uploaded, TaskListener listener) throws IOException, InterruptedException {
 		PrintStream log = listener.getLogger();
-		boolean isProcessingComplete = false;
 
-		int timeoutInMinutes = (getResolvedTimeout(listener) != null) ? getResolvedTimeout(listener) : 0;
-		int timeoutInMillis = timeoutInMinutes * 60 * 1000;
-		long timeoutAfter = System.currentTimeMillis() + timeoutInMillis;
+		int timeoutInMinutes = getTimeoutInMinutes(listener);
+		long pollingStarted = System.currentTimeMillis();
+		long timeoutAfter = pollingStarted + timeoutInMinutes * 60L * 1000L;
+		long lastIncompleteCheck = pollingStarted;
 
-		Integer resolvedPollingInterval = getResolvedPollingInterval(listener);
-		int sleepInMinutes = (resolvedPollingInterval != null) ? resolvedPollingInterval : 1;
-		if (sleepInMinutes == 0) {
+		ArtifactPollingPolicy policy = createPollingPolicy(uploaded.fprSize, listener);
+		if (policy == null) {
 			log.println("Polling interval of 0 disables waiting");
 			return;
 		}
-		int sleepInMillis = sleepInMinutes * 60 * 1000; // wait time is in minute(s)
-		while (!isProcessingComplete) {
-			log.printf("Sleep for %d minute(s)%n", sleepInMinutes);
-			long sleepUntil = System.currentTimeMillis() + sleepInMillis;
-			while (true) {
-				long diff = sleepUntil - System.currentTimeMillis();
-				if (diff > 0) {
-					try {
-						Thread.sleep(diff);
-					} catch (InterruptedException e) {
-					}
-				} else {
-					break;
-				}
-			}
+		while (true) {
+			long sleepInMillis = policy.nextDelayMillis();
+			log.printf("Sleep for %s%n", ArtifactPollingPolicy.format(sleepInMillis));
+			Future<Artifact.StatusEnum> status = ArtifactStatusPoller.get().check(uploaded.artifactId, sleepInMillis);
+			Artifact.StatusEnum artifactStatus;
 			try {
-				final Long artifactIdFinal = artifactId;
-				Artifact.StatusEnum status = FortifyPlugin.runWithFortifyClient(FortifyPlugin.DESCRIPTOR.getToken(),
-						new FortifyClient.Command<Artifact.StatusEnum>() {
-							@Override
-							public Artifact.StatusEnum runWith(FortifyClient client) throws Exception {
-								Artifact artifact = client.getArtifactInfo(artifactIdFinal);
-								return artifact.getStatus();
-							}
-						});
-				switch (status) {
-				case PROCESS_COMPLETE:
-					isProcessingComplete = true;
-					break;
-				case ERROR_PROCESSING:
-					throw new AbortException("Fortify Software Security Center encountered an error processing the artifact");
-				case REQUIRE_AUTH:
-					log.println("The artifact needs to be approved for processing in Fortify Software Security Center. Will continue to wait...");
-					break;
-				case SCHED_PROCESSING:
-					log.println("The artifact was scheduled for processing on Fortify Software Security Center. Will continue to wait...");
-					break;
-				case PROCESSING:
-					log.println("The artifact is being processed by Fortify Software Security Center. Will continue to wait...");
-					break;
-				default:
-					log.println("Unexpected artifact status: " + status.name());
-					isProcessingComplete = true;
-					break;
-				}
-				if (isProcessingComplete) {
-					break;
-				}
-			} catch (Throwable t) {
-				String message = t.getMessage();
-				log.println("Error checking artifact status. " + message);
-				t.printStackTrace(log);
-				throw new AbortException("Failed to retrieve artifact statistics from Fortify Software Security Center. " + message);
+				artifactStatus = status.get();
+			} catch (InterruptedException e) {
+				status.cancel(false);
+				throw e;
+			} catch (ExecutionException e) {
+				throw statusCheckFailed(e.getCause(), log);
+			}
+			if (isProcessingComplete(artifactStatus, log)) {
+				recordProcessingTime(pollingStarted, lastIncompleteCheck, System.currentTimeMillis(), listener);
+				break;
 			}
+			lastIncompleteCheck = System.currentTimeMillis();
 
 			if (timeoutInMinutes > 0) {
 				long diff = timeoutAfter - System.currentTimeMillis();
@@ -412,6 +621,72 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 		}
 	}
 
+	private int getTimeoutInMinutes(TaskListener listener) {
+		return (getResolvedTimeout(listener) != null) ? getResolvedTimeout(listener) : 0;
+	}
+
+	/**
+	 * @return the policy for checking the artifact processing status or null if waiting is disabled
+	 */
+	private ArtifactPollingPolicy createPollingPolicy(long fprSize, TaskListener listener) {
+		Long interval;
+		try {
+			interval = ArtifactPollingPolicy.parseInterval(resolve(getPollingInterval(), listener));
+		} catch (NumberFormatException e) {
+			interval = Long.valueOf(60 * 1000L); // invalid values always meant the default of 1 minute
+		}
+		if (interval == null) {
+			Long expected = ArtifactProcessingHistory.get().getExpectedDuration(getResolvedAppName(listener),
+					getResolvedAppVersion(listener));
+			return ArtifactPollingPolicy.adaptive(fprSize, expected);
+		}
+		if (interval.longValue() <= 0) {
+			return null;
+		}
+		return ArtifactPollingPolicy.fixed(interval.longValue());
+	}
+
+	private void recordProcessingTime(long pollingStarted, long lastIncompleteCheck, long completeCheck,
+			TaskListener listener) {
+		ArtifactProcessingHistory.get().record(getResolvedAppName(listener), getResolvedAppVersion(listener),
+				ArtifactProcessingHistory.estimateDuration(pollingStarted, lastIncompleteCheck, completeCheck));
+	}
+
+	/**
+	 * Interprets the processing status of the uploaded artifact
+	 *
+	 * @return true if SSC finished processing the artifact
+	 * @throws AbortException
+	 *             if the processing failed
+	 */
+	private boolean isProcessingComplete(Artifact.StatusEnum status, PrintStream log) throws AbortException {
+		switch (status) {
+		case PROCESS_COMPLETE:
+			return true;
+		case ERROR_PROCESSING:
+			throw new AbortException("Fortify Software Security Center encountered an error processing the artifact");
+		case REQUIRE_AUTH:
+			log.println("The artifact needs to be approved for processing in Fortify Software Security Center. Will continue to wait...");
+			return false;
+		case SCHED_PROCESSING:
+			log.println("The artifact was scheduled for processing on Fortify Software Security Center. Will continue to wait...");
+			return false;
+		case PROCESSING:
+			log.println("The artifact is being processed by Fortify Software Security Center. Will continue to wait...");
+			return false;
+		default:
+			log.println("Unexpected artifact status: " + status.name());
+			return true;
+		}
+	}
+
+	private AbortException statusCheckFailed(Throwable t, PrintStream log) {
+		String message = t.getMessage();
+		log.println("Error checking artifact status. " + message);
+		t.printStackTrace(log);
+		return new AbortException("Failed to retrieve artifact statistics from Fortify Software Security Center. " + message);
+	}
+
 	private void setBuildUncompleted(Run<?, ?> run, PrintStream log, int timeoutInMinutes) throws IOException {
 		final long projectVersionId = getProjectVersionId(log);
 		final String appArtifactsURL = getAppArtifactsURL(projectVersionId);
@@ -447,23 +722,6 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 	private void calculateFprStatistics(FPRSummary summary, TaskListener listener) {
 		listener = listener == null ? new StreamBuildListener(System.out, Charset.defaultCharset()) : listener;
 		PrintStream log = listener.getLogger();
-		// NVS CALCULATIONS
-		// NVS = Normalized Vulnerability Score
-		// NVS =
-		// ((((CFPO*10)+(HFPO*5)+(MFPO*1)+(LFPO*0.1))*.5)+(((P1*2)+(P2*4)+(P3*16)+(PABOVE*64))*.5))/(ExecutableLOC/1000)
-
-		int CFPO = 0; // Number of Critical Vulnerabilities (unless marked as "Not an Issue")
-		int HFPO = 0; // Number of High Vulnerabilities (unless marked as "Not an Issue")
-		int MFPO = 0; // Number of Medium Vulnerabilities (unless marked as "Not an Issue")
-		int LFPO = 0; // Number of Low Vulnerabilities (unless marked as "Not an Issue")
-
-		int PABOVE = 0; // Exploitable
-		int P3 = 0; // Suspicious
-		int P2 = 0; // Bad Practice
-		int P1 = 0; // Reliability Issue
-
-		int failedCount = 0;
-		int totalIssues = 0;
 
 		List<IssueFolderBean> folders = getFolders(listener);
 		Long versionId = null;
@@ -473,98 +731,175 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 			e.printStackTrace();
 		}
 
+		// collect all Analysis grouping queries so that they are sent to SSC in one batch
+		String failureCriteria = getResolvedFailureCriteria(listener);
+		List<IssueFolderBean> ratedFolders = new ArrayList<IssueFolderBean>();
+		List<Pair<String, String>> queries = new ArrayList<Pair<String, String>>();
+		IssueFolderBean allFolder = null;
 		for (IssueFolderBean folder : folders) {
-			log.printf("Processing folder = %s ...%n", folder.getName());
+			if (FPRStatistics.isRated(folder.getName())) {
+				log.printf("Processing folder = %s ...%n", folder.getName());
+				ratedFolders.add(folder);
+				queries.add(Pair.of(folder.getId(), ""));
+				if (IssueFolderBean.ATTRIBUTE_VALUE_ALL.equals(folder.getName())) {
+					allFolder = folder;
+				}
+			}
+		}
+		boolean checkFailureCriteria = allFolder != null && !StringUtils.isBlank(failureCriteria);
+		if (checkFailureCriteria) {
+			queries.add(Pair.of(allFolder.getId(), failureCriteria));
+		}
 
-			if (IssueFolderBean.NAME_CRITICAL.equals(folder.getName())
-					|| IssueFolderBean.NAME_HOT.equals(folder.getName())) {
-				List<GroupingValueBean> groupingValues = getGroupingValues(versionId, folder.getId(), null,
-						GroupingValueBean.GROUPING_TYPE_ANALYSIS, listener);
-				log.printf("Got %d audit values for folder = %s%n", groupingValues.size(), folder.getName());
+		List<List<GroupingValueBean>> groupingValues = getGroupingValues(versionId, queries,
+				GroupingValueBean.GROUPING_TYPE_ANALYSIS, listener);
 
-				for (GroupingValueBean group : groupingValues) {
-					if (GroupingValueBean.ID_NOT_AN_ISSUE.equals(group.getName())) {
-						continue;
-					}
-					CFPO += group.getTotalCount();
-				}
-			} else if (IssueFolderBean.NAME_HIGH.equals(folder.getName())
-					|| IssueFolderBean.NAME_WARNING.equals(folder.getName())) {
-				List<GroupingValueBean> groupingValues = getGroupingValues(versionId, folder.getId(), null,
-						GroupingValueBean.GROUPING_TYPE_ANALYSIS, listener);
-				log.printf("Got %d audit values for folder = %s%n", groupingValues.size(), folder.getName());
+		FPRStatistics statistics = new FPRStatistics();
+		if (groupingValues.size() == queries.size()) {
+			for (int i = 0; i < ratedFolders.size(); i++) {
+				IssueFolderBean folder = ratedFolders.get(i);
+				log.printf("Got %d audit values for folder = %s%n", groupingValues.get(i).size(), folder.getName());
+				statistics.addFolder(folder.getName(), folder.getIssueCount(), groupingValues.get(i));
+			}
+			if (checkFailureCriteria) {
+				List<GroupingValueBean> groupingValuesByCondition = groupingValues.get(queries.size() - 1);
+				log.printf("Got %d grouping values for folder = %s, condition = '%s'%n", groupingValuesByCondition.size(),
+						allFolder.getName(), failureCriteria);
+				statistics.addFailureCriteriaMatches(groupingValuesByCondition);
+			}
+		}
 
-				for (GroupingValueBean group : groupingValues) {
-					if (GroupingValueBean.ID_NOT_AN_ISSUE.equals(group.getName())) {
-						continue;
-					}
-					HFPO += group.getTotalCount();
-				}
-			} else if (IssueFolderBean.NAME_MEDIUM.equals(folder.getName())) {
-				List<GroupingValueBean> groupingValues = getGroupingValues(versionId, folder.getId(), null,
-						GroupingValueBean.GROUPING_TYPE_ANALYSIS, listener);
-				log.printf("Got %d audit values for folder = %s%n", groupingValues.size(), folder.getName());
+		summary.setNvs(statistics.getNvs());
+		summary.setFailedCount(statistics.getFailedCount());
+		summary.setTotalIssues(statistics.getTotalIssues());
+		summary.setFolderBeans(folders);
+	}
 
-				for (GroupingValueBean group : groupingValues) {
-					if (GroupingValueBean.ID_NOT_AN_ISSUE.equals(group.getName())) {
-						continue;
-					}
-					MFPO += group.getTotalCount();
-				}
-			} else if (IssueFolderBean.NAME_LOW.equals(folder.getName())
-					|| IssueFolderBean.NAME_INFO.equals(folder.getName())) {
-				List<GroupingValueBean> groupingValues = getGroupingValues(versionId, folder.getId(), null,
-						GroupingValueBean.GROUPING_TYPE_ANALYSIS, listener);
-				log.printf("Got %d audit values for folder = %s%n", groupingValues.size(), folder.getName());
+	/**
+	 * Fills the summary from the statistics calculated by {@link FPRAnalyzer}. Only the failure criteria, if any, are
+	 * still evaluated by SSC since they use the SSC search syntax.
+	 */
+	private void applyLocalStatistics(FPRSummary summary, FPRAnalyzer.Result result, TaskListener listener) {
+		PrintStream log = listener.getLogger();
+		String appName = getResolvedAppName(listener);
+		String appVersion = getResolvedAppVersion(listener);
 
-				for (GroupingValueBean group : groupingValues) {
-					if (GroupingValueBean.ID_NOT_AN_ISSUE.equals(group.getName())) {
-						continue;
-					}
-					LFPO += group.getTotalCount();
-				}
-			} else if (IssueFolderBean.ATTRIBUTE_VALUE_ALL.equals(folder.getName())) {
-				List<GroupingValueBean> groupingValues = getGroupingValues(versionId, folder.getId(), null,
+		FPRStatistics statistics = new FPRStatistics();
+		List<IssueFolderBean> folders = new ArrayList<IssueFolderBean>();
+		for (String folderName : result.getFolderNames()) {
+			String folderId = result.getFolderId(folderName);
+			int issueCount = result.getIssueCount(folderName);
+			folders.add(new IssueFolderBean(folderId, appName, appVersion,
+					Arrays.asList(folderName, "", result.getFolderColor(folderName), String.valueOf(issueCount), "0")));
+			statistics.addFolder(folderName, issueCount, result.getAnalysisGroupingValues(folderName, folderId));
+		}
+		int totalIssues = result.getTotalIssues();
+		folders.add(new IssueFolderBean(IssueFolderBean.ID_ALL, appName, appVersion,
+				Arrays.asList(IssueFolderBean.ATTRIBUTE_VALUE_ALL, "", result.getFolderColor(IssueFolderBean.ATTRIBUTE_VALUE_ALL),
+						String.valueOf(totalIssues), "0")));
+		statistics.addFolder(IssueFolderBean.ATTRIBUTE_VALUE_ALL, totalIssues,
+				result.getAnalysisGroupingValues(IssueFolderBean.ATTRIBUTE_VALUE_ALL, IssueFolderBean.ID_ALL));
+		log.printf("Found %d issues in the analysis results file%n", totalIssues);
+
+		String failureCriteria = getResolvedFailureCriteria(listener);
+		if (!StringUtils.isBlank(failureCriteria)) {
+			log.println("Evaluating build failure criteria on Fortify Software Security Center");
+			Long versionId = null;
+			try {
+				versionId = createNewOrGetProject(listener);
+			} catch (Exception e) {
+				e.printStackTrace(log);
+			}
+			if (versionId == null) {
+				log.println("Can't evaluate the build failure criteria, the application version wasn't found in Fortify Software Security Center");
+			} else {
+				List<List<GroupingValueBean>> groupingValues = getGroupingValues(versionId,
+						Collections.singletonList(Pair.of(IssueFolderBean.ID_ALL, failureCriteria)),
 						GroupingValueBean.GROUPING_TYPE_ANALYSIS, listener);
-				log.printf("Got %d audit values for folder = %s%n", groupingValues.size(), folder.getName());
-
-				totalIssues = folder.getIssueCount();
-
-				for (GroupingValueBean group : groupingValues) {
-					if (group.getName().startsWith(GroupingValueBean.ID_EXPLOITABLE)) {
-						PABOVE += group.getTotalCount();
-					} else if (group.getName().startsWith(GroupingValueBean.ID_SUSPICIOUS)) {
-						P3 += group.getTotalCount();
-					} else if (group.getName().startsWith(GroupingValueBean.ID_BAD_PRACTICE)) {
-						P2 += group.getTotalCount();
-					} else if (group.getName().startsWith(GroupingValueBean.ID_RELIABILITY)) {
-						P1 += group.getTotalCount();
-					}
+				if (!groupingValues.isEmpty()) {
+					statistics.addFailureCriteriaMatches(groupingValues.get(0));
 				}
+			}
+		}
 
-				if (!StringUtils.isBlank(getResolvedFailureCriteria(listener))) {
-					List<GroupingValueBean> groupingValuesByCondition = getGroupingValues(versionId, folder.getId(),
-							getFailureCriteria(), GroupingValueBean.GROUPING_TYPE_ANALYSIS, listener);
-					log.printf("Got %d grouping values for folder = %s, condition = '%s'%n", groupingValues.size(),
-							folder.getName(), getFailureCriteria());
+		summary.setNvs(statistics.getNvs());
+		summary.setFailedCount(statistics.getFailedCount());
+		summary.setTotalIssues(statistics.getTotalIssues());
+		summary.setFolderBeans(folders);
+	}
 
-					for (GroupingValueBean group : groupingValuesByCondition) {
-						if (GroupingValueBean.ID_NOT_AN_ISSUE.equals(group.getName())) {
-							continue;
-						}
-						failedCount += group.getTotalCount();
-					}
-				}
+	/**
+	 * Returns the folders of the filter set of the job. Unlike {@link #getFolders(TaskListener)} it doesn't count the
+	 * issues, so it can be called before the upload and mostly uses cached values.
+	 *
+	 * @return map of folder id -&gt; folder name, empty if they can't be retrieved
+	 */
+	private Map<String, String> getFolderNamesById(final TaskListener listener) {
+		PrintStream logger = listener.getLogger();
+		try {
+			final Long versionId = createNewOrGetProject(listener);
+			if (versionId != null) {
+				return FortifyPlugin.runWithFortifyClient(FortifyPlugin.DESCRIPTOR.getToken(),
+						new FortifyClient.Command<Map<String, String>>() {
+							@Override
+							public Map<String, String> runWith(FortifyClient client) throws Exception {
+								return client.getFolderNamesById(versionId, getResolvedFilterSet(listener));
+							}
+						});
 			}
+		} catch (Throwable e) {
+			logger.println(e.getMessage());
+			e.printStackTrace(logger);
 		}
+		return Collections.emptyMap();
+	}
 
-		double NVS = ((((CFPO * 10.) + (HFPO * 5) + (MFPO * 1.) + (LFPO * 0.1)) * .5)
-				+ (((P1 * 2.) + (P2 * 4.) + (P3 * 16.) + (PABOVE * 64.)) * .5)) / 1.0;// (ExecutableLOC/1000);
+	/**
+	 * Retrieves the grouping values of several folders with a single {@link FortifyPlugin#runWithFortifyClient} call
+	 *
+	 * @param folderIdsAndSearchConditions
+	 *            pairs of folder id and search condition
+	 * @return grouping values in the order of the requested pairs or empty list if they can't be retrieved
+	 */
+	private List<List<GroupingValueBean>> getGroupingValues(final Long versionId,
+			final List<Pair<String, String>> folderIdsAndSearchConditions, final String groupingName,
+			final TaskListener listener) {
+		if (FortifyPlugin.DESCRIPTOR.canUploadToSsc() && !folderIdsAndSearchConditions.isEmpty()) {
+			PrintStream logger = listener.getLogger();
+			try {
+				final Writer log = new OutputStreamWriter(logger, "UTF-8");
+				List<Map<String, List<String>>> maps = FortifyPlugin.runWithFortifyClient(FortifyPlugin.DESCRIPTOR.getToken(),
+						new FortifyClient.Command<List<Map<String, List<String>>>>() {
+							@Override
+							public List<Map<String, List<String>>> runWith(FortifyClient client) throws Exception {
+								return client.getGroupingValues(versionId == null ? Long.valueOf(Long.MIN_VALUE) : versionId,
+										folderIdsAndSearchConditions, getResolvedFilterSet(listener), groupingName,
+										new PrintWriter(log, true));
+							}
+						});
+				List<List<GroupingValueBean>> result = new ArrayList<List<GroupingValueBean>>(maps.size());
+				for (int i = 0; i < maps.size(); i++) {
+					result.add(toGroupingValueBeans(maps.get(i), folderIdsAndSearchConditions.get(i).getLeft()));
+				}
+				return result;
+			} catch (Throwable e) {
+				logger.println(e.getMessage());
+				e.printStackTrace(logger);
+			}
+		}
+		return Collections.emptyList();
+	}
 
-		summary.setNvs(NVS);
-		summary.setFailedCount(failedCount);
-		summary.setTotalIssues(totalIssues);
-		summary.setFolderBeans(folders);
+	private static List<GroupingValueBean> toGroupingValueBeans(Map<String, List<String>> map, String folderId) {
+		List<GroupingValueBean> list = new ArrayList<GroupingValueBean>(map.size());
+		for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+			List<String> attributes = entry.getValue();
+			if (attributes.size() == 5) {
+				GroupingValueBean next = new GroupingValueBean(entry.getKey(), folderId, attributes);
+				list.add(next);
+			}
+		}
+		return list;
 	}
 
 	public List<GroupingValueBean> getGroupingValues(final Long versionId, final String folderId,
@@ -585,14 +920,7 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 										new PrintWriter(log, true));
 							}
 						});
-				List<GroupingValueBean> list = new ArrayList<GroupingValueBean>(map.size());
-				for (Map.Entry<String, List<String>> entry : map.entrySet()) {
-					List<String> attributes = entry.getValue();
-					if (attributes.size() == 5) {
-						GroupingValueBean next = new GroupingValueBean(entry.getKey(), folderId, attributes);
-						list.add(next);
-					}
-				}
+				List<GroupingValueBean> list = toGroupingValueBeans(map, folderId);
 
 				// log.printf("Obtained %d grouping values for folder = %s, search = %s for '%s
 				// (%s)'%n", list.size(), folderId, searchCondition,
@@ -736,6 +1064,37 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 		return Collections.emptyList();
 	}
 
+	/**
+	 * Identifies the current issue data of the application version, see {@link IssuePageCache}
+	 *
+	 * @return null if the application version doesn't exist or SSC can't be queried
+	 */
+	public IssuePageCache.Revision getIssueRevision(TaskListener listener) {
+		final String appName = getResolvedAppName(listener);
+		final String appVersion = getResolvedAppVersion(listener);
+		final String filterSet = getResolvedFilterSet(listener);
+		if (StringUtils.isBlank(appName) || StringUtils.isBlank(appVersion) || !FortifyPlugin.DESCRIPTOR.canUploadToSsc()) {
+			return null;
+		}
+		try {
+			return FortifyPlugin.runWithFortifyClient(FortifyPlugin.DESCRIPTOR.getToken(),
+					new FortifyClient.Command<IssuePageCache.Revision>() {
+						@Override
+						public IssuePageCache.Revision runWith(FortifyClient client) throws Exception {
+							Long versionId = client.getProjectVersionId(appName, appVersion);
+							if (versionId == null) {
+								return null;
+							}
+							return new IssuePageCache.Revision(FortifyPlugin.DESCRIPTOR.getUrl(), versionId,
+									client.getLatestArtifactId(versionId), filterSet);
+						}
+					});
+		} catch (Throwable t) {
+			listener.getLogger().println("Can't determine the latest artifact of the application version. " + t.getMessage());
+			return null;
+		}
+	}
+
 	private Long createNewOrGetProject(final TaskListener taskListener) throws Exception {
 		final TaskListener listener = taskListener == null
 				? new StreamBuildListener(System.out, Charset.defaultCharset())
@@ -829,6 +1188,10 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 			return Validators.checkValidInteger(value);
 		}
 
+		public FormValidation doCheckPollingInterval(@QueryParameter String value) {
+			return Validators.checkPollingInterval(value);
+		}
+
 	}
 
 	private File copyToLocalTmp(FilePath file) throws IOException, InterruptedException {
@@ -838,8 +1201,77 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 		return tmpFile;
 	}
 
-	private static class Execution extends SynchronousNonBlockingStepExecution<Integer> {
-		private FortifyUpload upload;
+	/**
+	 * What is needed to finish the step after the results file was uploaded
+	 */
+	private static class UploadResult implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final Long artifactId;
+		private final long fprSize;
+		private final FPRAnalyzer.Result localResult;
+		// the FPR was not uploaded because an identical one was already processed
+		private final boolean duplicate;
+
+		UploadResult(Long artifactId, long fprSize, FPRAnalyzer.Result localResult, boolean duplicate) {
+			this.artifactId = artifactId;
+			this.fprSize = fprSize;
+			this.localResult = localResult;
+			this.duplicate = duplicate;
+		}
+	}
+
+	/**
+	 * Asynchronous pipeline execution. The upload and the processing of the results run on two small bounded pools,
+	 * sized by the uploadThreads and resultThreads system properties, see the README. Waiting for SSC to process the
+	 * artifact only registers status checks with the {@link ArtifactStatusPoller}, so no thread is held during the
+	 * wait. Once the artifact id is known the wait survives a controller restart.
+	 */
+	private static class Execution extends StepExecution {
+		private static final long serialVersionUID = 2L;
+
+		// uploads of parallel branches beyond this number wait in the queue instead of each holding a thread
+		private static final int UPLOAD_THREADS = Math.max(1,
+				SystemProperties.getInteger(FortifyUpload.class.getName() + ".uploadThreads", 4));
+		// processing the results includes the issue snapshot, which mustn't hold up the uploads of other builds
+		private static final int RESULT_THREADS = Math.max(1,
+				SystemProperties.getInteger(FortifyUpload.class.getName() + ".resultThreads", 4));
+		private static final ThreadPoolExecutor UPLOAD_EXECUTOR = createExecutor(UPLOAD_THREADS, "FortifyUpload.upload");
+		// also runs the SSC lookups of the status checks, which must not block the shared status poller
+		private static final ThreadPoolExecutor RESULT_EXECUTOR = createExecutor(RESULT_THREADS, "FortifyUpload.results");
+
+		private static ThreadPoolExecutor createExecutor(int threads, String name) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new NamingThreadFactory(new DaemonThreadFactory(), name));
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		}
+
+		/**
+		 * Submits the task and tells the build when it has to wait because all threads of the pool are busy
+		 *
+		 * @param log
+		 *            log of the build, may be null
+		 */
+		private static Future<?> submit(ThreadPoolExecutor executor, PrintStream log, String slot, Runnable work) {
+			int busy = executor.getActiveCount();
+			int waiting = executor.getQueue().size();
+			if (log != null && busy + waiting >= executor.getMaximumPoolSize()) {
+				log.printf("Waiting for %s, %d running and %d waiting%n", slot, Integer.valueOf(busy), Integer.valueOf(waiting));
+			}
+			return executor.submit(work);
+		}
+
+		private final FortifyUpload upload;
+		private volatile UploadResult uploaded;
+		private volatile ArtifactPollingPolicy policy;
+		private volatile long pollingStarted;
+		// 0 until a check finds the artifact still processing
+		private volatile long lastIncompleteCheck;
+		private volatile long timeoutAfter;
+		// the results are being processed, the wait for SSC is over
+		private volatile boolean finishing;
+		private transient volatile Future<?> task;
 
 		protected Execution(FortifyUpload upload, StepContext context) {
 			super(context);
@@ -847,14 +1279,177 @@ public class FortifyUpload extends FortifyStep implements Serializable {
 		}
 
 		@Override
-		protected Integer run() throws Exception {
-			StepContext context = getContext();
-			TaskListener listener = context.get(TaskListener.class);
-			listener.getLogger().println("Running FortifyUpload step");
-			return upload.performAndReturnIssueCount(context.get(Run.class), context.get(FilePath.class), context.get(EnvVars.class),
-					context.get(Launcher.class), listener);
+		public boolean start() throws Exception {
+			PrintStream log = getContext().get(TaskListener.class).getLogger();
+			log.println("Running FortifyUpload step");
+			task = submit(UPLOAD_EXECUTOR, log, "an upload slot", new Runnable() {
+				@Override
+				public void run() {
+					try {
+						StepContext context = getContext();
+						TaskListener listener = context.get(TaskListener.class);
+						upload.setLastBuild(context.get(Run.class));
+						uploaded = upload.uploadAndAnalyze(context.get(FilePath.class), listener);
+						if (!upload.needsProcessedArtifact(uploaded, listener)) {
+							finishing = true;
+							submitFinish(listener.getLogger(), 0);
+							return;
+						}
+
+						policy = upload.createPollingPolicy(uploaded.fprSize, listener);
+						if (policy == null) {
+							listener.getLogger().println("Polling interval of 0 disables waiting");
+							finishing = true;
+							submitFinish(listener.getLogger(), 0);
+							return;
+						}
+						pollingStarted = System.currentTimeMillis();
+						int timeoutInMinutes = upload.getTimeoutInMinutes(listener);
+						timeoutAfter = timeoutInMinutes > 0 ? pollingStarted + timeoutInMinutes * 60L * 1000L : 0;
+						scheduleCheck(listener);
+					} catch (Throwable t) {
+						getContext().onFailure(t);
+					}
+				}
+			});
+			return false;
 		}
 
-		private static final long serialVersionUID = 1L;
+		private void scheduleCheck(TaskListener listener) {
+			if (policy == null) {
+				// e.g. resumed after a restart while the results were processed without waiting
+				policy = upload.createPollingPolicy(uploaded.fprSize, listener);
+				if (policy == null) {
+					finishing = true;
+					submitFinish(listener.getLogger(), 0);
+					return;
+				}
+			}
+			long sleepInMillis = policy.nextDelayMillis();
+			listener.getLogger().printf("Sleep for %s%n", ArtifactPollingPolicy.format(sleepInMillis));
+			waitForStatus(sleepInMillis);
+		}
+
+		private void waitForStatus(long delayMillis) {
+			CompletableFuture<Artifact.StatusEnum> status = ArtifactStatusPoller.get().check(uploaded.artifactId, delayMillis);
+			task = status;
+			status.whenComplete(new BiConsumer<Artifact.StatusEnum, Throwable>() {
+				@Override
+				public void accept(Artifact.StatusEnum result, Throwable error) {
+					if (!(error instanceof CancellationException)) {
+						checkStatus(result, error);
+					}
+				}
+			});
+		}
+
+		/**
+		 * Runs on a thread of the shared status poller, so it only decides what to do next. Anything that writes files
+		 * or asks SSC is handed to the result pool.
+		 */
+		private void checkStatus(Artifact.StatusEnum status, Throwable error) {
+			try {
+				StepContext context = getContext();
+				final TaskListener listener = context.get(TaskListener.class);
+				final Run<?, ?> run = context.get(Run.class);
+				upload.setLastBuild(run);
+				final PrintStream log = listener.getLogger();
+				if (error != null) {
+					throw upload.statusCheckFailed(error, log);
+				}
+				if (upload.isProcessingComplete(status, log)) {
+					finishing = true;
+					submitFinish(log, System.currentTimeMillis());
+					return;
+				}
+				lastIncompleteCheck = System.currentTimeMillis();
+				if (timeoutAfter > 0 && timeoutAfter - System.currentTimeMillis() <= 0) {
+					task = RESULT_EXECUTOR.submit(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								// links the version in the build description and always fails the step
+								upload.setBuildUncompleted(run, log, upload.getTimeoutInMinutes(listener));
+							} catch (Throwable t) {
+								getContext().onFailure(t);
+							}
+						}
+					});
+					return;
+				}
+				scheduleCheck(listener);
+			} catch (Throwable t) {
+				getContext().onFailure(t);
+			}
+		}
+
+		/**
+		 * @param completeCheck
+		 *            time of the status check that found the artifact processed, or 0 if there was no wait
+		 */
+		private void submitFinish(PrintStream log, final long completeCheck) {
+			task = submit(RESULT_EXECUTOR, log, "a slot to process the results", new Runnable() {
+				@Override
+				public void run() {
+					finish(completeCheck);
+				}
+			});
+		}
+
+		private void finish(long completeCheck) {
+			try {
+				StepContext context = getContext();
+				Run<?, ?> run = context.get(Run.class);
+				TaskListener listener = context.get(TaskListener.class);
+				upload.setLastBuild(run);
+				if (completeCheck > 0) {
+					upload.recordProcessingTime(pollingStarted, lastIncompleteCheck, completeCheck, listener);
+				}
+				getContext().onSuccess(upload.processResults(run, uploaded, listener));
+			} catch (Throwable t) {
+				getContext().onFailure(t);
+			}
+		}
+
+		@Override
+		public void onResume() {
+			if (uploaded == null) {
+				getContext().onFailure(new AbortException(
+						"Jenkins was restarted while the analysis results file was being uploaded to Fortify Software Security Center"));
+				return;
+			}
+			if (finishing) {
+				// the wait, if any, was over, only the results have to be processed again
+				submitFinish(null, 0);
+				return;
+			}
+			try {
+				TaskListener listener = getContext().get(TaskListener.class);
+				listener.getLogger().println("Resuming the wait for Fortify Software Security Center to process artifact " + uploaded.artifactId);
+			} catch (Exception e) {
+				// the status check below reports any problem with the context
+			}
+			waitForStatus(0);
+		}
+
+		@Override
+		public void stop(Throwable cause) throws Exception {
+			Future<?> current = task;
+			if (current != null) {
+				current.cancel(true);
+			}
+			getContext().onFailure(cause);
+		}
+
+		@Override
+		public String getStatus() {
+			if (uploaded == null) {
+				return "uploading analysis results";
+			}
+			if (finishing) {
+				return "processing the analysis results";
+			}
+			return "waiting for Fortify Software Security Center to process artifact " + uploaded.artifactId;
+		}
 	}
 }
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.steps;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fortify.plugin.jenkins.FPRSummary;
+import com.fortify.plugin.jenkins.bean.IssueFolderBean;
+
+import hudson.XmlFile;
+import jenkins.model.Jenkins;
+
+/**
+ * Remembers the hash of the last FPR uploaded from this controller to each application version, together with the
+ * build statistics calculated for it, so that an identical FPR doesn't have to be uploaded and processed again.
+ * Stored in JENKINS_HOME/com.fortify.plugin.jenkins.steps.UploadedArtifactIndex.xml.
+ */
+public class UploadedArtifactIndex {
+	private static final Logger LOGGER = Logger.getLogger(UploadedArtifactIndex.class.getName());
+
+	private static final int MAX_APP_VERSIONS = 1000;
+
+	private static UploadedArtifactIndex instance;
+
+	// SSC URL and application version id -> last upload, least recently used first
+	private LinkedHashMap<String, Entry> uploads = new LinkedHashMap<String, Entry>();
+
+	public static synchronized UploadedArtifactIndex get() {
+		if (instance == null) {
+			instance = new UploadedArtifactIndex();
+			XmlFile file = getConfigFile();
+			if (file.exists()) {
+				try {
+					file.unmarshal(instance);
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Failed to load " + file, e);
+				}
+			}
+		}
+		return instance;
+	}
+
+	private static XmlFile getConfigFile() {
+		return new XmlFile(Jenkins.XSTREAM2, new File(Jenkins.get().getRootDir(), UploadedArtifactIndex.class.getName() + ".xml"));
+	}
+
+	private static String key(String sscUrl, Long appVersionId) {
+		return sscUrl + '\n' + appVersionId;
+	}
+
+	/**
+	 * @return the last upload to the application version or null if none is known
+	 */
+	public synchronized Entry getLatestUpload(String sscUrl, Long appVersionId) {
+		return uploads.get(key(sscUrl, appVersionId));
+	}
+
+	public synchronized void recordUpload(String sscUrl, Long appVersionId, String fprHash, Long artifactId) {
+		String key = key(sscUrl, appVersionId);
+		uploads.remove(key);
+		uploads.put(key, new Entry(fprHash, artifactId));
+		while (uploads.size() > MAX_APP_VERSIONS) {
+			uploads.remove(uploads.keySet().iterator().next());
+		}
+		save();
+	}
+
+	/**
+	 * Stores the statistics calculated for an uploaded artifact
+	 *
+	 * @param settings
+	 *            the step settings the statistics depend on, e.g. the filter set
+	 */
+	public synchronized void recordStatistics(Long artifactId, String settings, FPRSummary summary) {
+		for (Entry entry : uploads.values()) {
+			if (entry.artifactId.equals(artifactId)) {
+				entry.statisticsSettings = settings;
+				entry.nvs = summary.getNvs();
+				entry.failedCount = summary.getFailedCount();
+				entry.totalIssues = summary.getTotalIssues();
+				entry.folderBeans = summary.getFolderBeans();
+				save();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Copies the statistics stored for the artifact to the summary
+	 *
+	 * @return false if no statistics were stored for the artifact with the same settings
+	 */
+	public synchronized boolean applyStatistics(Long artifactId, String settings, FPRSummary summary) {
+		for (Entry entry : uploads.values()) {
+			if (entry.artifactId.equals(artifactId) && settings.equals(entry.statisticsSettings)) {
+				summary.setNvs(entry.nvs);
+				summary.setFailedCount(entry.failedCount);
+				summary.setTotalIssues(entry.totalIssues);
+				summary.setFolderBeans(entry.folderBeans);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void save() {
+		try {
+			getConfigFile().write(this);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to save the index of uploaded artifacts", e);
+		}
+	}
+
+	public static class Entry {
+		private final String fprHash;
+		private final Long artifactId;
+		private String statisticsSettings;
+		private double nvs;
+		private int failedCount;
+		private int totalIssues;
+		private List<IssueFolderBean> folderBeans;
+
+		Entry(String fprHash, Long artifactId) {
+			this.fprHash = fprHash;
+			this.artifactId = artifactId;
+		}
+
+		public String getFprHash() {
+			return fprHash;
+		}
+
+		public Long getArtifactId() {
+			return artifactId;
+		}
+	}
+}
@@ -57,6 +57,20 @@ public class Validators {
 		return FormValidation.ok();
 	}
 
+	public static FormValidation checkPollingInterval(String value) {
+		if (StringUtils.isBlank(value) || value.trim().charAt(0) == '$') {
+			return FormValidation.ok();
+		}
+		try {
+			Long millis = ArtifactPollingPolicy.parseInterval(value);
+			if (millis.longValue() >= 0 && millis.longValue() <= 60 * 60 * 1000L) {
+				return FormValidation.ok();
+			}
+		} catch (NumberFormatException e) {
+		}
+		return FormValidation.error("The unit is in minutes (0 to 60), or in seconds with an \"s\" suffix (e.g. 30s)");
+	}
+
 	public static FormValidation checkValidVersionNumber(String value) {
 		if (StringUtils.isBlank(value)) {
 			return FormValidation.ok();
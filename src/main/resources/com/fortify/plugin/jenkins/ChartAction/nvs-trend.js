@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+// Renders the Fortify trend graphs from the JSON trend data: the NVS, and the total, failed and per-folder issue
+// counts. Only builds completed since the last update are fetched. The script is loaded once per page as an adjunct
+// and starts every trend box of the page once; the image rendered by the server is shown only if the data can't be
+// loaded.
+var fortifyTrend = (function() {
+    var SVG = "http://www.w3.org/2000/svg";
+    var WIDTH = 400, HEIGHT = 200, MARGIN = 30, LEGEND = 14;
+    var COLORS = ["#3465a4", "#c00", "#73d216", "#f57900", "#75507b", "#c4a000", "#555753", "#06989a"];
+
+    function Trend(box) {
+        this.box = box;
+        this.url = box.getAttribute("data-url");
+        this.maxBuilds = parseInt(box.getAttribute("data-max-builds")) || 0;
+        this.data = {builds: [], nvs: [], totalIssues: [], failedCount: [], folders: {}};
+        this.stamp = new Date().getTime();
+    }
+
+    // since is the number of the last build shown, 0 loads the most recent builds up to the maximum
+    Trend.prototype.load = function(since) {
+        var trend = this;
+        var url = trend.url + "/trend?since=" + since;
+        if (since == 0 && trend.maxBuilds > 0) {
+            url += "&last=" + trend.maxBuilds;
+        }
+        return fetch(url, {credentials: 'same-origin'})
+        .then(function(rsp) {
+            if (!rsp.ok) {
+                throw new Error(rsp.status + " " + rsp.statusText);
+            }
+            return rsp.json();
+        })
+        .then(function(page) {
+            trend.append(page);
+            // the response is paged, continue with the following builds
+            return page.next == null ? null : trend.load(page.next);
+        });
+    };
+
+    Trend.prototype.append = function(page) {
+        var data = this.data;
+        var shown = data.builds.length;
+        for (var i = 0; i < page.builds.length; i++) {
+            data.builds.push(page.builds[i]);
+            data.nvs.push(page.nvs[i]);
+            data.totalIssues.push(page.totalIssues[i]);
+            data.failedCount.push(page.failedCount[i]);
+        }
+        for (var name in page.folders) {
+            if (!data.folders.hasOwnProperty(name)) {
+                // folders that didn't exist in the builds shown so far
+                data.folders[name] = zeros(shown);
+            }
+            data.folders[name] = data.folders[name].concat(page.folders[name]);
+        }
+        for (var name in data.folders) {
+            if (data.folders[name].length < data.builds.length) {
+                data.folders[name] = data.folders[name].concat(zeros(data.builds.length - data.folders[name].length));
+            }
+        }
+        if (this.maxBuilds > 0 && data.builds.length > this.maxBuilds) {
+            var extra = data.builds.length - this.maxBuilds;
+            data.builds.splice(0, extra);
+            data.nvs.splice(0, extra);
+            data.totalIssues.splice(0, extra);
+            data.failedCount.splice(0, extra);
+            for (var name in data.folders) {
+                data.folders[name].splice(0, extra);
+            }
+        }
+    };
+
+    Trend.prototype.lastBuild = function() {
+        var builds = this.data.builds;
+        return builds.length == 0 ? 0 : builds[builds.length - 1];
+    };
+
+    Trend.prototype.render = function() {
+        var data = this.data;
+        var issues = [
+            {name: "Total", values: data.totalIssues},
+            {name: "Failed", values: data.failedCount}
+        ];
+        for (var name in data.folders) {
+            issues.push({name: name, values: data.folders[name]});
+        }
+        this.box.innerHTML = "";
+        this.box.appendChild(graph("Normalized Vulnerability Score (NVS)", data.builds, [{name: "NVS", values: data.nvs}]));
+        this.box.appendChild(graph("Issues", data.builds, issues));
+    };
+
+    Trend.prototype.showImage = function() {
+        this.box.innerHTML = "";
+        var image = document.createElement("img");
+        image.setAttribute("src", this.url + "/graph");
+        this.box.appendChild(image);
+    };
+
+    Trend.prototype.start = function() {
+        var trend = this;
+        trend.load(0).then(function() {
+            trend.render();
+            window.setTimeout(function() { trend.checkUpdates(); }, 15000);
+        }).catch(function(error) {
+            console.error(error.message);
+            trend.showImage();
+        });
+    };
+
+    Trend.prototype.checkUpdates = function() {
+        var trend = this;
+        fetch(trend.url + "/checkUpdates", {
+            method: 'POST',
+            headers: crumb.wrap({
+                'Content-Type': 'application/x-www-form-urlencoded'
+            }),
+            body: new URLSearchParams({
+                stamp: trend.stamp,
+            })
+        }).then(function(rsp) {
+            if (rsp.ok) {
+                if (rsp.headers.get('go') == "go") {
+                    trend.stamp = new Date().getTime();
+                    // only the new builds are fetched, deleted ones disappear when the page is reloaded
+                    trend.load(trend.lastBuild()).then(function() {
+                        trend.render();
+                    }).catch(function(error) {
+                        console.error(error.message);
+                    });
+                }
+                // next update in 10 sec
+                window.setTimeout(function() { trend.checkUpdates(); }, 10000);
+            }
+        });
+    };
+
+    // draws one line per series, the series are listed in a legend below the graph if there is more than one
+    function graph(title, builds, series) {
+        var legend = series.length > 1 ? Math.ceil(series.length / 4) * LEGEND : 0;
+        var svg = document.createElementNS(SVG, "svg");
+        svg.setAttribute("width", WIDTH);
+        svg.setAttribute("height", HEIGHT + legend);
+        svg.setAttribute("class", "fortify-trend-graph");
+        svg.appendChild(text(WIDTH / 2, 14, title, "middle"));
+        var max = 1;
+        for (var s = 0; s < series.length; s++) {
+            for (var i = 0; i < series[s].values.length; i++) {
+                max = Math.max(max, series[s].values[i]);
+            }
+        }
+        var step = builds.length > 1 ? (WIDTH - 2 * MARGIN) / (builds.length - 1) : 0;
+        var x = function(i) { return MARGIN + i * step; };
+        var y = function(value) { return HEIGHT - MARGIN - value / max * (HEIGHT - 2 * MARGIN); };
+
+        svg.appendChild(line(MARGIN, HEIGHT - MARGIN, WIDTH - MARGIN, HEIGHT - MARGIN));
+        svg.appendChild(line(MARGIN, MARGIN, MARGIN, HEIGHT - MARGIN));
+        svg.appendChild(text(MARGIN - 4, y(max) + 4, String(Math.round(max)), "end"));
+        svg.appendChild(text(MARGIN - 4, y(0) + 4, "0", "end"));
+        if (builds.length > 0) {
+            svg.appendChild(text(x(0), HEIGHT - MARGIN + 14, "#" + builds[0], "start"));
+            svg.appendChild(text(x(builds.length - 1), HEIGHT - MARGIN + 14, "#" + builds[builds.length - 1], "end"));
+        }
+
+        for (var s = 0; s < series.length; s++) {
+            var color = COLORS[s % COLORS.length];
+            var values = series[s].values;
+            var points = [];
+            for (var i = 0; i < builds.length; i++) {
+                points.push(x(i) + "," + y(values[i]));
+            }
+            var path = document.createElementNS(SVG, "polyline");
+            path.setAttribute("points", points.join(" "));
+            path.setAttribute("fill", "none");
+            path.setAttribute("stroke", color);
+            svg.appendChild(path);
+            for (var i = 0; i < builds.length; i++) {
+                var dot = document.createElementNS(SVG, "circle");
+                dot.setAttribute("cx", x(i));
+                dot.setAttribute("cy", y(values[i]));
+                dot.setAttribute("r", 2.5);
+                dot.setAttribute("fill", color);
+                var tooltip = document.createElementNS(SVG, "title");
+                tooltip.textContent = "#" + builds[i] + ": " + series[s].name + " " + values[i];
+                dot.appendChild(tooltip);
+                svg.appendChild(dot);
+            }
+            if (legend > 0) {
+                var left = MARGIN + (s % 4) * (WIDTH - 2 * MARGIN) / 4;
+                var top = HEIGHT + Math.floor(s / 4) * LEGEND;
+                var mark = line(left, top - 4, left + 10, top - 4);
+                mark.setAttribute("stroke", color);
+                svg.appendChild(mark);
+                svg.appendChild(text(left + 14, top, series[s].name, "start"));
+            }
+        }
+        return svg;
+    }
+
+    function zeros(count) {
+        var values = [];
+        for (var i = 0; i < count; i++) {
+            values.push(0);
+        }
+        return values;
+    }
+
+    function line(x1, y1, x2, y2) {
+        var element = document.createElementNS(SVG, "line");
+        element.setAttribute("x1", x1);
+        element.setAttribute("y1", y1);
+        element.setAttribute("x2", x2);
+        element.setAttribute("y2", y2);
+        element.setAttribute("stroke", "#000");
+        return element;
+    }
+
+    function text(x, y, value, anchor) {
+        var element = document.createElementNS(SVG, "text");
+        element.setAttribute("x", x);
+        element.setAttribute("y", y);
+        element.setAttribute("font-size", "10");
+        element.setAttribute("text-anchor", anchor);
+        element.textContent = value;
+        return element;
+    }
+
+    function init() {
+        var boxes = document.querySelectorAll(".fortify-trend");
+        for (var i = 0; i < boxes.length; i++) {
+            // boxes added to the page later are started by a later call
+            if (boxes[i].getAttribute("data-started") == null) {
+                boxes[i].setAttribute("data-started", "true");
+                new Trend(boxes[i]).start();
+            }
+        }
+    }
+
+    if (document.readyState == "loading") {
+        document.addEventListener("DOMContentLoaded", init);
+    } else {
+        init();
+    }
+    return {Trend: Trend, init: init};
+})();
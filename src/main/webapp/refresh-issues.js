@@ -67,6 +67,11 @@
             updateByUrl(boxId,contextUrl+"/showAllNotNew",params,spinnerUrl);
         }
 
+        function showLive(boxId,live,spinnerUrl) {
+            var params = {'live' : live};
+            updateByUrl(boxId,contextUrl+"/showLive",params,spinnerUrl);
+        }
+
         function showGrouping(boxId,selectedGrouping,spinnerUrl) {
             var params = {'grouping' :  selectedGrouping};
             updateByUrl(boxId,contextUrl+"/selectedGrouping",params, spinnerUrl);
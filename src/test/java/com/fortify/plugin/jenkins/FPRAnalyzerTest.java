@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+import com.fortify.plugin.jenkins.bean.GroupingValueBean;
+
+public class FPRAnalyzerTest {
+
+	private static final String AUDIT_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+			+ "<Audit xmlns=\"xmlns://www.fortify.com/schema/audit\" version=\"4.1\"><IssueList>"
+			+ "<Issue instanceId=\"60AC727CCEEDE041DE984E7CE6836177\" revision=\"1\">"
+			+ "<Tag id=\"87F2364F-DCD4-49E6-861D-F8D3F351686B\"><Value>Exploitable</Value></Tag></Issue>"
+			+ "<Issue instanceId=\"FF0D787110C7AD2F3ACFA5BEB6E951C3\" suppressed=\"true\" revision=\"1\"/>"
+			+ "</IssueList></Audit>";
+
+	private File getFpr() throws Exception {
+		return new File(getClass().getClassLoader().getResource("eightball_57.fpr").toURI());
+	}
+
+	@Test
+	public void testFolderCounts() throws Exception {
+		FPRAnalyzer.Result result = new FPRAnalyzer().invoke(getFpr(), null);
+
+		assertEquals(1, result.getIssueCount("Critical"));
+		assertEquals(1, result.getIssueCount("High"));
+		assertEquals(0, result.getIssueCount("Medium"));
+		assertEquals(4, result.getIssueCount("Low"));
+		assertEquals(6, result.getTotalIssues());
+	}
+
+	@Test
+	public void testMatchesFolders() throws Exception {
+		FPRAnalyzer.Result result = new FPRAnalyzer.Result();
+		Map<String, String> folders = new HashMap<String, String>();
+		for (String name : result.getFolderNames()) {
+			folders.put(result.getFolderId(name), name);
+		}
+		folders.put("all", "All");
+		assertTrue(result.matchesFolders(folders));
+
+		// a filter set with the same folder names but other folders
+		folders.remove(result.getFolderId("Critical"));
+		folders.put("f0000000-0000-0000-0000-000000000000", "Critical");
+		assertFalse(result.matchesFolders(folders));
+	}
+
+	@Test
+	public void testAuditedIssues() throws Exception {
+		FPRAnalyzer.AuditedIssues audits = FPRAnalyzer
+				.readAuditXml(new ByteArrayInputStream(AUDIT_XML.getBytes(StandardCharsets.UTF_8)));
+		assertEquals(2, audits.size());
+
+		FPRAnalyzer.Result result;
+		try (ZipFile zip = new ZipFile(getFpr()); InputStream in = zip.getInputStream(zip.getEntry("audit.fvdl"))) {
+			result = FPRAnalyzer.readFvdl(in, audits);
+		}
+		assertEquals(5, result.getTotalIssues());
+		assertEquals(3, result.getIssueCount("Low"));
+
+		List<GroupingValueBean> high = result.getAnalysisGroupingValues("High", result.getFolderId("High"));
+		assertEquals(1, high.size());
+		assertEquals(GroupingValueBean.ID_EXPLOITABLE, high.get(0).getName());
+
+		FPRStatistics statistics = new FPRStatistics();
+		statistics.addFolder("All", result.getTotalIssues(), result.getAnalysisGroupingValues("All", "all"));
+		assertEquals(64 * .5, statistics.getNvs(), 0.0001);
+	}
+
+	@Test
+	public void testAuditedIssuesTable() throws Exception {
+		FPRAnalyzer.AuditedIssues audits = new FPRAnalyzer.AuditedIssues();
+		for (int i = 0; i < 10000; i++) {
+			audits.add(String.format("%016X%016X", Long.valueOf(i * 31L), Long.valueOf(i)), i % 3 == 0 ? null : "Value " + (i % 3),
+					i % 2 == 0);
+		}
+		audits.add("not-a-hex-id", "Exploitable", false);
+		// audited again with another value
+		audits.add(String.format("%016X%016X", Long.valueOf(31L), Long.valueOf(1)), "Exploitable", false);
+		assertEquals(10001, audits.size());
+
+		int audit = audits.get("0000000000000155000000000000000B");
+		assertFalse(FPRAnalyzer.AuditedIssues.isSuppressed(audit));
+		assertEquals("Value 2", audits.getAnalysis(audit));
+		audit = audits.get("000000000000003e0000000000000002");
+		assertTrue(FPRAnalyzer.AuditedIssues.isSuppressed(audit));
+		assertEquals("Value 2", audits.getAnalysis(audit));
+		audit = audits.get("00000000000000000000000000000000");
+		assertTrue(FPRAnalyzer.AuditedIssues.isSuppressed(audit));
+		assertEquals(null, audits.getAnalysis(audit));
+		assertEquals("Exploitable", audits.getAnalysis(audits.get("000000000000001F0000000000000001")));
+		assertEquals("Exploitable", audits.getAnalysis(audits.get("not-a-hex-id")));
+
+		assertEquals(FPRAnalyzer.AuditedIssues.NOT_AUDITED, audits.get("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF"));
+		assertEquals(FPRAnalyzer.AuditedIssues.NOT_AUDITED, audits.get("other-id"));
+		assertFalse(FPRAnalyzer.AuditedIssues.isSuppressed(FPRAnalyzer.AuditedIssues.NOT_AUDITED));
+		assertEquals(null, audits.getAnalysis(FPRAnalyzer.AuditedIssues.NOT_AUDITED));
+	}
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FPRLocatorTest {
+
+	@Rule
+	public TemporaryFolder workspace = new TemporaryFolder();
+
+	private File scan;
+	private File copy;
+
+	@Before
+	public void createWorkspace() throws Exception {
+		scan = createFile("build/scan.fpr", 2000);
+		copy = createFile("build/Copy of scan.fpr", 2000);
+		createFile("build/old.fpr", 1000);
+		createFile("node_modules/pkg/scan.fpr", 3000);
+		createFile("README.md", 4000);
+	}
+
+	private File createFile(String path, long lastModified) throws Exception {
+		File file = new File(workspace.getRoot(), path);
+		file.getParentFile().mkdirs();
+		file.createNewFile();
+		file.setLastModified(lastModified * 1000);
+		return file;
+	}
+
+	private FPRLocator locator(int maxDepth, int parallelism) {
+		return new FPRLocator(maxDepth, Arrays.asList(FPRLocator.DEFAULT_EXCLUDES.split(",")), parallelism, false);
+	}
+
+	@Test
+	public void testLatestFile() throws Exception {
+		for (int parallelism : new int[] { 1, 4 }) {
+			assertEquals(scan, locator(Integer.MAX_VALUE, parallelism).locate(workspace.getRoot(), ""));
+			assertEquals(copy, locator(Integer.MAX_VALUE, parallelism).locate(workspace.getRoot(), "copy of scan.fpr"));
+		}
+	}
+
+	@Test
+	public void testMaxDepth() throws Exception {
+		for (int parallelism : new int[] { 1, 4 }) {
+			assertNull(locator(1, parallelism).locate(workspace.getRoot(), "scan.fpr"));
+			assertEquals(scan, locator(2, parallelism).locate(workspace.getRoot(), "scan.fpr"));
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fortify.plugin.jenkins.bean.GroupingValueBean;
+
+public class FPRStatisticsTest {
+
+	private static List<GroupingValueBean> values(Object... nameAndCount) {
+		List<GroupingValueBean> result = new ArrayList<GroupingValueBean>();
+		for (int i = 0; i < nameAndCount.length; i += 2) {
+			String name = (String) nameAndCount[i];
+			String count = String.valueOf(nameAndCount[i + 1]);
+			result.add(new GroupingValueBean(String.valueOf(i), "folder", Arrays.asList(name, count, count, count, name)));
+		}
+		return result;
+	}
+
+	@Test
+	public void testNvs() {
+		FPRStatistics statistics = new FPRStatistics();
+		statistics.addFolder("Critical", 5, values("Not Set", 2, GroupingValueBean.ID_NOT_AN_ISSUE, 3));
+		statistics.addFolder("High", 4, values("Not Set", 4));
+		statistics.addFolder("Medium", 10, values("Not Set", 10));
+		statistics.addFolder("Low", 20, values("Not Set", 20));
+		statistics.addFolder("All", 39, values(GroupingValueBean.ID_EXPLOITABLE, 1, GroupingValueBean.ID_SUSPICIOUS, 1,
+				GroupingValueBean.ID_BAD_PRACTICE, 1, GroupingValueBean.ID_RELIABILITY, 1, "Not Set", 35));
+
+		assertEquals(2, statistics.getCriticalCount());
+		assertEquals(4, statistics.getHighCount());
+		assertEquals(10, statistics.getMediumCount());
+		assertEquals(20, statistics.getLowCount());
+		assertEquals(39, statistics.getTotalIssues());
+		// ((2*10 + 4*5 + 10*1 + 20*0.1) * .5) + ((1*2 + 1*4 + 1*16 + 1*64) * .5)
+		assertEquals(26. + 43., statistics.getNvs(), 0.0001);
+	}
+
+	@Test
+	public void testFailedCount() {
+		FPRStatistics statistics = new FPRStatistics();
+		statistics.addFailureCriteriaMatches(values("Not Set", 7, GroupingValueBean.ID_NOT_AN_ISSUE, 5));
+		assertEquals(7, statistics.getFailedCount());
+	}
+
+	@Test
+	public void testRatedFolders() {
+		assertTrue(FPRStatistics.isRated("Hot"));
+		assertTrue(FPRStatistics.isRated("All"));
+		assertFalse(FPRStatistics.isRated("Custom"));
+	}
+}
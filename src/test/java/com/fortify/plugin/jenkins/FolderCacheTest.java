@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fortify.plugin.jenkins.bean.IssueFolderBean;
+
+import hudson.model.StreamBuildListener;
+
+public class FolderCacheTest {
+
+	@Test
+	public void testConcurrentCallersShareOneLoad() throws Exception {
+		final TestCache cache = new TestCache(60000, 60000, 60000);
+		cache.blocked.drainPermits();
+		ExecutorService callers = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<List<IssueFolderBean>>> results = new ArrayList<Future<List<IssueFolderBean>>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(callers.submit(new Callable<List<IssueFolderBean>>() {
+					@Override
+					public List<IssueFolderBean> call() {
+						return cache.get(false);
+					}
+				}));
+			}
+			assertTrue(cache.started.await(10, TimeUnit.SECONDS));
+			Thread.sleep(100);
+			cache.blocked.release();
+			List<IssueFolderBean> first = results.get(0).get(10, TimeUnit.SECONDS);
+			for (Future<List<IssueFolderBean>> result : results) {
+				assertSame(first, result.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, cache.loads.get());
+		} finally {
+			callers.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testStaleFoldersAreReturnedWhileReloading() throws Exception {
+		TestCache cache = new TestCache(0, 60000, 60000);
+		List<IssueFolderBean> first = cache.get(false);
+		assertEquals(1, cache.loads.get());
+
+		// expired, the reload runs in the background
+		cache.blocked.drainPermits();
+		Thread.sleep(5);
+		assertSame(first, cache.get(false));
+		assertSame(first, cache.get(false));
+		cache.blocked.release();
+		List<IssueFolderBean> reloaded = first;
+		for (int i = 0; i < 1000 && reloaded == first; i++) {
+			Thread.sleep(10);
+			reloaded = cache.get(false);
+		}
+		assertNotSame(first, reloaded);
+	}
+
+	@Test
+	public void testFailedLoadDoesNotBlockCallers() throws Exception {
+		TestCache cache = new TestCache(60000, 60000, 60000);
+		cache.error = new OutOfMemoryError("test");
+		assertTrue(cache.get(false).isEmpty());
+
+		// the next call loads again
+		cache.error = null;
+		assertEquals(0, cache.get(false).size());
+		assertEquals(2, cache.loads.get());
+	}
+
+	@Test
+	public void testWaitIsBounded() throws Exception {
+		TestCache cache = new TestCache(60000, 60000, 100);
+		cache.blocked.drainPermits();
+		long start = System.currentTimeMillis();
+		assertTrue(cache.get(false).isEmpty());
+		assertTrue(System.currentTimeMillis() - start < 10000);
+		cache.blocked.release();
+	}
+
+	private static class TestCache extends FolderCache {
+		private final AtomicInteger loads = new AtomicInteger();
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final Semaphore blocked = new Semaphore(1);
+		private volatile Error error;
+
+		TestCache(long ttlMillis, long maxStaleMillis, long maxWaitMillis) {
+			super(null, ttlMillis, maxStaleMillis, maxWaitMillis);
+		}
+
+		@Override
+		List<IssueFolderBean> loadFolders(StreamBuildListener listener) {
+			loads.incrementAndGet();
+			started.countDown();
+			try {
+				blocked.acquire();
+				blocked.release();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			if (error != null) {
+				throw error;
+			}
+			return new ArrayList<IssueFolderBean>();
+		}
+
+		@Override
+		IssuePageCache.Revision loadRevision(StreamBuildListener listener) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fortify.plugin.jenkins.bean.IssueBean;
+
+public class IssuePageCacheTest {
+	private static final IssuePageCache.Revision REVISION = new IssuePageCache.Revision("http://ssc", Long.valueOf(1),
+			Long.valueOf(2), null);
+
+	@Test
+	public void testConcurrentCallersShareOneLoad() throws Exception {
+		final IssuePageCache cache = new IssuePageCache(100, 60000, null);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Loader loader = new Loader(5) {
+			@Override
+			public List<IssueBean> call() throws Exception {
+				release.await(10, TimeUnit.SECONDS);
+				return super.call();
+			}
+		};
+		ExecutorService users = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<List<IssueBean>>> results = new ArrayList<Future<List<IssueBean>>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(users.submit(new Callable<List<IssueBean>>() {
+					@Override
+					public List<IssueBean> call() throws Exception {
+						return cache.getPage(key(0), loader);
+					}
+				}));
+			}
+			// give every user time to join the running load
+			Thread.sleep(200);
+			release.countDown();
+			List<IssueBean> first = results.get(0).get(10, TimeUnit.SECONDS);
+			for (Future<List<IssueBean>> result : results) {
+				assertSame(first, result.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, loader.calls.get());
+		} finally {
+			users.shutdownNow();
+		}
+		// and later users get the cached page
+		assertEquals(5, cache.getPage(key(0), loader).size());
+		assertEquals(1, loader.calls.get());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedPagesAreEvicted() throws Exception {
+		IssuePageCache cache = new IssuePageCache(10, 60000, null);
+		Loader loader = new Loader(4);
+		cache.getPage(key(0), loader);
+		cache.getPage(key(1), loader);
+		// page 0 is now used more recently than page 1
+		cache.getPage(key(0), loader);
+		assertEquals(2, loader.calls.get());
+
+		// 12 issues are more than the maximum, page 1 is evicted
+		cache.getPage(key(2), loader);
+		assertEquals(3, loader.calls.get());
+		cache.getPage(key(0), loader);
+		cache.getPage(key(2), loader);
+		assertEquals(3, loader.calls.get());
+		cache.getPage(key(1), loader);
+		assertEquals(4, loader.calls.get());
+
+		// pages larger than the cache aren't kept
+		Loader large = new Loader(11);
+		cache.getPage(key(3), large);
+		cache.getPage(key(3), large);
+		assertEquals(2, large.calls.get());
+	}
+
+	@Test
+	public void testEmptyPagesAreNotCached() throws Exception {
+		IssuePageCache cache = new IssuePageCache(100, 60000, null);
+		Loader loader = new Loader(0);
+		assertTrue(cache.getPage(key(0), loader).isEmpty());
+		assertTrue(cache.getPage(key(0), loader).isEmpty());
+		assertEquals(2, loader.calls.get());
+	}
+
+	@Test
+	public void testExpiredPagesAreReloaded() throws Exception {
+		IssuePageCache cache = new IssuePageCache(100, 0, null);
+		Loader loader = new Loader(3);
+		cache.getPage(key(0), loader);
+		Thread.sleep(5);
+		cache.getPage(key(0), loader);
+		assertEquals(2, loader.calls.get());
+	}
+
+	@Test
+	public void testPrefetchesAreDroppedWhenTheQueueIsFull() throws Exception {
+		ExecutorService executor = IssuePageCache.createPrefetchExecutor(1, 1);
+		try {
+			IssuePageCache cache = new IssuePageCache(100, 60000, executor);
+			final CountDownLatch started = new CountDownLatch(1);
+			final CountDownLatch release = new CountDownLatch(1);
+			Loader blocked = new Loader(5) {
+				@Override
+				public List<IssueBean> call() throws Exception {
+					started.countDown();
+					release.await(10, TimeUnit.SECONDS);
+					return super.call();
+				}
+			};
+			assertNotNull(cache.prefetch(key(0), blocked));
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			// already being loaded
+			assertNull(cache.prefetch(key(0), blocked));
+
+			Loader loader = new Loader(5);
+			Future<?> queued = cache.prefetch(key(1), loader);
+			assertNotNull(queued);
+			// the only thread is busy and the queue is full
+			assertNull(cache.prefetch(key(2), loader));
+			release.countDown();
+			queued.get(10, TimeUnit.SECONDS);
+			assertEquals(1, loader.calls.get());
+			// cached pages aren't loaded again
+			assertNull(cache.prefetch(key(1), loader));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testCancelledPrefetchesDontLoad() throws Exception {
+		ExecutorService executor = IssuePageCache.createPrefetchExecutor(1, 8);
+		try {
+			IssuePageCache cache = new IssuePageCache(100, 60000, executor);
+			final CountDownLatch release = new CountDownLatch(1);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						release.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			Loader loader = new Loader(5);
+			cache.prefetch(key(1), loader).cancel(false);
+			release.countDown();
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+			assertEquals(0, loader.calls.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	static IssuePageCache.Key key(int page) {
+		return new IssuePageCache.Key(REVISION, "folder", page, 10, TableAction.SortOrder.location, false, true,
+				null);
+	}
+
+	static class Loader implements Callable<List<IssueBean>> {
+		final AtomicInteger calls = new AtomicInteger();
+		private final int size;
+
+		Loader(int size) {
+			this.size = size;
+		}
+
+		@Override
+		public List<IssueBean> call() throws Exception {
+			calls.incrementAndGet();
+			List<IssueBean> issues = new ArrayList<IssueBean>();
+			for (int i = 0; i < size; i++) {
+				issues.add(new IssueBean());
+			}
+			return issues;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fortify.plugin.jenkins.bean.IssueBean;
+import com.fortify.plugin.jenkins.bean.IssueFolderBean;
+
+public class IssueSnapshotTest {
+
+	@Rule
+	public TemporaryFolder build = new TemporaryFolder();
+
+	private static IssueBean issue(long id, String file, int line, String category) {
+		IssueBean issue = new IssueBean();
+		issue.setIssueId(Long.valueOf(id));
+		issue.setIssueInstanceId("instance" + id);
+		issue.setFilePath(file);
+		issue.setLineNumber(String.valueOf(line));
+		issue.setMappedCategory(category);
+		issue.setConfidence("5.0");
+		issue.setSeverity("4.0");
+		issue.setEngineType("SCA");
+		return issue;
+	}
+
+	@Test
+	public void testPages() throws Exception {
+		File file = new File(build.getRoot(), IssueSnapshot.getFileName("app", "1.0"));
+		IssuePageCache.Revision revision = new IssuePageCache.Revision("http://ssc", Long.valueOf(7), Long.valueOf(42), "");
+		try (IssueSnapshot.Writer writer = new IssueSnapshot.Writer(file, revision, "app", "1.0",
+				Collections.<IssueFolderBean>emptyList())) {
+			writer.startFolder("critical");
+			writer.write(issue(1, "src/A.java", 10, "SQL Injection"));
+			writer.endFolder();
+			writer.startFolder("all");
+			for (int i = 1; i <= 5; i++) {
+				writer.write(issue(i, i % 2 == 0 ? "src/A.java" : "src/B.java", i, i == 1 ? "SQL Injection" : "Dead Code"));
+			}
+			writer.endFolder();
+			writer.commit();
+		}
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+
+		IssueSnapshot snapshot = IssueSnapshot.open(file);
+		assertEquals(revision, snapshot.getRevision());
+
+		List<IssueBean> page = snapshot.getIssues("all", 1, 2, false);
+		assertEquals(2, page.size());
+		assertEquals(Long.valueOf(3), page.get(0).getIssueId());
+		assertEquals("src/B.java", page.get(0).getFilePath());
+		assertEquals("3", page.get(0).getLineNumber());
+		assertEquals("Dead Code", page.get(0).getCategory());
+		assertEquals("app", page.get(0).getProjectName());
+		assertEquals(Long.valueOf(7), page.get(0).getProjectVersionId());
+
+		assertEquals(1, snapshot.getIssues("all", 2, 2, false).size());
+		assertEquals(5, snapshot.getIssues("all", 0, -1, false).size());
+		assertEquals("SQL Injection", snapshot.getIssues("critical", 0, 10, false).get(0).getMappedCategory());
+		assertEquals(0, snapshot.getIssues("high", 0, 10, false).size());
+	}
+
+	@Test
+	public void testStringTableLimit() throws Exception {
+		File file = new File(build.getRoot(), IssueSnapshot.getFileName(null, null));
+		IssuePageCache.Revision revision = new IssuePageCache.Revision("http://ssc", Long.valueOf(7), null, "");
+		int count = 70000;
+		try (IssueSnapshot.Writer writer = new IssueSnapshot.Writer(file, revision, "app", "1.0",
+				Collections.<IssueFolderBean>emptyList())) {
+			writer.startFolder("all");
+			for (int i = 0; i < count; i++) {
+				// every file path is used twice, the ones after the limit of the table are written inline
+				writer.write(issue(i, "src/File" + i / 2 + ".java", i, "Dead Code"));
+			}
+			writer.endFolder();
+			writer.commit();
+		}
+		List<IssueBean> issues = IssueSnapshot.open(file).getIssues("all", 0, -1, false);
+		assertEquals(count, issues.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals("instance" + i, issues.get(i).getIssueInstanceId());
+			assertEquals("src/File" + i / 2 + ".java", issues.get(i).getFilePath());
+			assertEquals(String.valueOf(i), issues.get(i).getLineNumber());
+			assertEquals("SCA", issues.get(i).getEngineType());
+		}
+	}
+
+	@Test
+	public void testNotCommitted() throws Exception {
+		File file = new File(build.getRoot(), IssueSnapshot.getFileName(null, null));
+		IssuePageCache.Revision revision = new IssuePageCache.Revision("http://ssc", Long.valueOf(7), null, "");
+		try (IssueSnapshot.Writer writer = new IssueSnapshot.Writer(file, revision, "app", "1.0",
+				Collections.<IssueFolderBean>emptyList())) {
+			writer.startFolder("all");
+			writer.write(issue(1, null, 1, "Dead Code"));
+		}
+		assertFalse(file.exists());
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+	}
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fortify.plugin.jenkins.bean.IssueBean;
+import com.fortify.plugin.jenkins.bean.IssueFolderBean;
+
+public class IssueStoreTest {
+
+	@Rule
+	public TemporaryFolder build = new TemporaryFolder();
+
+	private static IssueBean issue(long id, String file, String line) {
+		IssueBean issue = new IssueBean();
+		issue.setIssueId(Long.valueOf(id));
+		issue.setIssueInstanceId("instance" + id);
+		issue.setFilePath(file);
+		issue.setLineNumber(line);
+		issue.setMappedCategory("Dead Code");
+		issue.setConfidence("5.0");
+		issue.setSeverity("2.5");
+		issue.setEngineType("SCA");
+		issue.setNew(id % 2 == 1);
+		return issue;
+	}
+
+	private IssueSnapshot createSnapshot() throws Exception {
+		File file = new File(build.getRoot(), IssueSnapshot.getFileName("app", "1.0"));
+		IssuePageCache.Revision revision = new IssuePageCache.Revision("http://ssc", Long.valueOf(7), Long.valueOf(42), "");
+		try (IssueSnapshot.Writer writer = new IssueSnapshot.Writer(file, revision, "app", "1.0",
+				Collections.<IssueFolderBean>emptyList())) {
+			writer.startFolder("critical");
+			writer.write(issue(1, "src/b.java", "10"));
+			writer.endFolder();
+			writer.startFolder("all");
+			writer.write(issue(1, "src/b.java", "10"));
+			writer.write(issue(2, "src/A.java", "20"));
+			writer.write(issue(3, "src/C.java", null));
+			writer.write(issue(4, "src/A.java", "3"));
+			writer.write(issue(5, null, "1"));
+			writer.endFolder();
+			writer.commit();
+		}
+		return IssueSnapshot.open(file);
+	}
+
+	private static List<Long> ids(List<IssueBean> issues) {
+		List<Long> ids = new ArrayList<Long>();
+		for (IssueBean issue : issues) {
+			ids.add(issue.getIssueId());
+		}
+		return ids;
+	}
+
+	@Test
+	public void testColumns() throws Exception {
+		IssueSnapshot snapshot = createSnapshot();
+		IssueStore.create(snapshot);
+		IssueStore store = IssueStore.get(snapshot);
+		assertEquals(IssueStore.getStoreFile(snapshot.getFile()), store.getFile());
+		assertEquals(5, store.getRowCount());
+		assertEquals(1, store.getIssueCount("critical"));
+		assertEquals(-1, store.getIssueCount("high"));
+
+		List<IssueBean> page = snapshot.getIssues("all", 1, 2, null, false, false);
+		assertEquals(ids(snapshot.getIssues("all", 1, 2, false)), ids(page));
+		IssueBean issue = page.get(0);
+		assertEquals("src/C.java", issue.getFilePath());
+		assertNull(issue.getLineNumber());
+		assertEquals("5.0", issue.getConfidence());
+		assertEquals("2.5", issue.getSeverity());
+		assertEquals("Dead Code", issue.getCategory());
+		assertEquals("SCA", issue.getEngineType());
+		assertEquals("app", issue.getProjectName());
+		assertEquals(Long.valueOf(7), issue.getProjectVersionId());
+	}
+
+	@Test
+	public void testSort() throws Exception {
+		IssueSnapshot snapshot = createSnapshot();
+		assertEquals(5, snapshot.getIssues("all", 0, -1, false).size());
+		List<Long> sorted = ids(snapshot.getIssues("all", 0, -1, TableAction.SortOrder.location, false, false));
+		assertEquals("[5, 4, 2, 1, 3]", sorted.toString());
+		assertTrue(IssueStore.getStoreFile(snapshot.getFile()).exists());
+		assertEquals("[2, 4]", ids(snapshot.getIssues("all", 1, 2, TableAction.SortOrder.location, true, false)).toString());
+		assertEquals(0, snapshot.getIssues("critical", 1, 10, TableAction.SortOrder.location, false, false).size());
+		assertEquals(0, snapshot.getIssues("high", 0, 10, null, false, false).size());
+	}
+
+	@Test
+	public void testNewIssues() throws Exception {
+		IssueSnapshot snapshot = createSnapshot();
+		assertEquals("[1, 3, 5]", ids(snapshot.getIssues("all", 0, -1, null, false, true)).toString());
+		assertEquals("[5]", ids(snapshot.getIssues("all", 1, 2, null, false, true)).toString());
+		assertEquals("[5, 1, 3]", ids(snapshot.getIssues("all", 0, -1, TableAction.SortOrder.location, false, true)).toString());
+		assertEquals("[3, 1]", ids(snapshot.getIssues("all", 0, 2, TableAction.SortOrder.location, true, true)).toString());
+		assertTrue(snapshot.getIssues("all", 0, 1, null, false, false).get(0).isNew());
+		assertFalse(snapshot.getIssues("all", 1, 1, null, false, false).get(0).isNew());
+		// the same issues without the store
+		assertEquals("[1, 3, 5]", ids(snapshot.getIssues("all", 0, -1, true)).toString());
+		assertEquals("[5]", ids(snapshot.getIssues("all", 1, 2, true)).toString());
+	}
+
+	@Test
+	public void testCollectedStoresAreRemoved() throws Exception {
+		IssueSnapshot snapshot = createSnapshot();
+		int stores = IssueStore.getStoreCount();
+		assertEquals(3, snapshot.getIssues("all", 0, 3, null, false, false).size());
+		assertEquals(stores + 1, IssueStore.getStoreCount());
+
+		// nothing refers to the store once the snapshot is gone
+		snapshot = null;
+		for (int i = 0; i < 100 && IssueStore.getStoreCount() > stores; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertTrue(IssueStore.getStoreCount() <= stores);
+	}
+
+	@Test
+	public void testInvalidStoreIsRecreated() throws Exception {
+		IssueSnapshot snapshot = createSnapshot();
+		File storeFile = IssueStore.getStoreFile(snapshot.getFile());
+		Files.write(storeFile.toPath(), new byte[] { 1, 2, 3 });
+		assertTrue(storeFile.setLastModified(snapshot.getFile().lastModified() + 1000));
+		assertEquals(5, IssueStore.get(snapshot).getRowCount());
+	}
+
+	@Test
+	public void testConcurrentUsersShareOneStore() throws Exception {
+		final IssueSnapshot snapshot = createSnapshot();
+		ExecutorService users = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<IssueStore>> stores = new ArrayList<Future<IssueStore>>();
+			for (int i = 0; i < 8; i++) {
+				stores.add(users.submit(new Callable<IssueStore>() {
+					@Override
+					public IssueStore call() throws Exception {
+						return IssueStore.get(snapshot);
+					}
+				}));
+			}
+			IssueStore store = stores.get(0).get(10, TimeUnit.SECONDS);
+			for (Future<IssueStore> other : stores) {
+				assertSame(store, other.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			users.shutdownNow();
+		}
+	}
+}
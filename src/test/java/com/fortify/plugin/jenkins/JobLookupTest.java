@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.MockFolder;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.User;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+
+public class JobLookupTest {
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	@Test
+	public void testCachedJobChecksTheFolders() throws Exception {
+		j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+		MockFolder team = j.createFolder("team");
+		FreeStyleProject job = team.createProject(FreeStyleProject.class, "app");
+		MockFolder other = j.createFolder("other");
+		FreeStyleProject visible = other.createProject(FreeStyleProject.class, "app");
+		// READ on the job but not on its folder
+		j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy().grant(Jenkins.READ).everywhere().to("alice")
+				.grant(Item.READ).onItems(job, other).to("alice"));
+
+		// remembered by a lookup of a user who can see it
+		assertSame(job, JobLookup.getJob("team/app"));
+		assertSame(visible, JobLookup.getJob("other/app"));
+
+		try (ACLContext context = ACL.as(User.getById("alice", true))) {
+			assertNull(JobLookup.getJob("team/app"));
+			assertSame(visible, JobLookup.getJob("other/app"));
+		}
+	}
+}
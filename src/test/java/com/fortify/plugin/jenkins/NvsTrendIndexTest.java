@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.FreeStyleProject;
+
+public class NvsTrendIndexTest {
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	private static void write(FreeStyleProject job, String content) throws Exception {
+		Files.write(new File(job.getRootDir(), NvsTrendIndex.FILE_NAME).toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<String> read(FreeStyleProject job) throws Exception {
+		return Files.readAllLines(new File(job.getRootDir(), NvsTrendIndex.FILE_NAME).toPath(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testReadCurrentVersion() throws Exception {
+		FreeStyleProject job = j.createFreeStyleProject();
+		write(job, NvsTrendIndex.HEADER + "\n3\tfortify-summary.xml\t12.5\t40\t2\tCritical:10\tHigh:30\n"
+				+ "4\tfortify-summary.xml\t11.0\t38\n");
+		SortedMap<Integer, NvsTrendIndex.Point> trend = NvsTrendIndex.get(job).getTrend("fortify-summary.xml", 0);
+		// the partially written line is skipped
+		assertEquals(1, trend.size());
+		NvsTrendIndex.Point point = trend.get(Integer.valueOf(3));
+		assertEquals(12.5, point.getNvs(), 0);
+		assertEquals(40, point.getTotalIssues());
+		assertEquals(2, point.getFailedCount());
+		assertEquals(Integer.valueOf(30), point.getFolders().get("High"));
+	}
+
+	@Test
+	public void testMigrateFirstVersion() throws Exception {
+		FreeStyleProject job = j.createFreeStyleProject();
+		// only the NVS, without a header
+		write(job, "3\tfortify-summary.xml\t12.5\n");
+		assertTrue(NvsTrendIndex.get(job).getTrend("fortify-summary.xml", 0).isEmpty());
+		// created again from the builds, which have no summaries
+		List<String> lines = read(job);
+		assertEquals(1, lines.size());
+		assertEquals(NvsTrendIndex.HEADER, lines.get(0));
+	}
+}
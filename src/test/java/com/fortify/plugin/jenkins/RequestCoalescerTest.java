@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RequestCoalescerTest {
+
+	@Test
+	public void testConcurrentLookupsShareOneCall() throws Exception {
+		final RequestCoalescer<List<String>, Long> coalescer = new RequestCoalescer<List<String>, Long>();
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		final Callable<Long> lookup = new Callable<Long>() {
+			@Override
+			public Long call() throws Exception {
+				calls.incrementAndGet();
+				release.await(10, TimeUnit.SECONDS);
+				return Long.valueOf(42);
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Long>> results = new ArrayList<Future<Long>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(new Callable<Long>() {
+					@Override
+					public Long call() throws Exception {
+						return coalescer.call(Arrays.asList("versionId", "app", "1.0"), lookup);
+					}
+				}));
+			}
+			// give every thread time to join the running lookup
+			Thread.sleep(200);
+			assertTrue(coalescer.isRunning(Arrays.asList("versionId", "app", "1.0")));
+			release.countDown();
+			for (Future<Long> result : results) {
+				assertEquals(Long.valueOf(42), result.get());
+			}
+			assertEquals(1, calls.get());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// finished lookups are not kept
+		assertFalse(coalescer.isRunning(Arrays.asList("versionId", "app", "1.0")));
+		coalescer.call(Arrays.asList("versionId", "app", "1.0"), lookup);
+		assertEquals(2, calls.get());
+		// lookups with other arguments are separate
+		coalescer.call(Arrays.asList("versionId", "app", "2.0"), lookup);
+		assertEquals(3, calls.get());
+	}
+
+	@Test
+	public void testParallelBranchesShareVersionLookups() throws Exception {
+		final RequestCoalescer<List<Object>, Object> coalescer = new RequestCoalescer<List<Object>, Object>();
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService branches = Executors.newFixedThreadPool(30);
+		try {
+			List<Future<Object>> results = new ArrayList<Future<Object>>();
+			for (int i = 0; i < 30; i++) {
+				// the key of FortifyClient.getProjectVersionId, half of the branches look up a version that doesn't exist
+				final String version = i % 2 == 0 ? "1.0" : "missing";
+				results.add(branches.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						return coalescer.call(Arrays.<Object>asList("getProjectVersionId", "app", version),
+								new Callable<Object>() {
+									@Override
+									public Object call() throws Exception {
+										calls.incrementAndGet();
+										release.await(10, TimeUnit.SECONDS);
+										return "1.0".equals(version) ? Long.valueOf(7) : null;
+									}
+								});
+					}
+				}));
+			}
+			Thread.sleep(200);
+			release.countDown();
+			for (int i = 0; i < 30; i++) {
+				assertEquals(i % 2 == 0 ? Long.valueOf(7) : null, results.get(i).get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(2, calls.get());
+		} finally {
+			branches.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testExceptions() throws Exception {
+		RequestCoalescer<String, Long> coalescer = new RequestCoalescer<String, Long>();
+		final IllegalStateException failure = new IllegalStateException("unavailable");
+		try {
+			coalescer.call("latestArtifactId", new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					throw failure;
+				}
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		}
+		try {
+			coalescer.call("latestArtifactId", new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					throw new StackOverflowError();
+				}
+			});
+			fail();
+		} catch (StackOverflowError e) {
+			// errors are not wrapped
+		}
+		assertFalse(coalescer.isRunning("latestArtifactId"));
+	}
+
+	@Test
+	public void testSubmit() throws Exception {
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<String, String>();
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger calls = new AtomicInteger();
+		Callable<String> request = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				calls.incrementAndGet();
+				release.await(10, TimeUnit.SECONDS);
+				return "folders";
+			}
+		};
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			CompletableFuture<String> first = coalescer.submit("folders", executor, request);
+			assertSame(first, coalescer.submit("folders", executor, request));
+			release.countDown();
+			assertEquals("folders", first.get(10, TimeUnit.SECONDS));
+			assertEquals(1, calls.get());
+
+			CompletableFuture<String> failed = coalescer.submit("error", executor, new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					throw new OutOfMemoryError("test");
+				}
+			});
+			try {
+				failed.get(10, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertEquals(OutOfMemoryError.class, e.getCause().getClass());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// rejected requests complete exceptionally and aren't kept
+		CompletableFuture<String> rejected = coalescer.submit("folders", executor, request);
+		assertTrue(rejected.isCompletedExceptionally());
+		assertFalse(coalescer.isRunning("folders"));
+	}
+}
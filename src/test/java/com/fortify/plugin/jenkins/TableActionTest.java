@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.fortify.plugin.jenkins.bean.IssueBean;
+import com.fortify.plugin.jenkins.bean.IssueFolderBean;
+import com.fortify.plugin.jenkins.steps.FortifyUpload;
+
+import hudson.model.TaskListener;
+
+public class TableActionTest {
+	private static final IssuePageCache.Revision REVISION = new IssuePageCache.Revision("http://ssc", Long.valueOf(1),
+			Long.valueOf(2), null);
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	@Test
+	public void testNextPageIsPrefetched() throws Exception {
+		assertEquals(1, loadsAfter(null));
+	}
+
+	@Test
+	public void testFolderChangeCancelsPrefetching() throws Exception {
+		assertEquals(0, loadsAfter(new Change() {
+			@Override
+			public void apply(TableAction.View view) {
+				view.setFolder(folder("high"));
+			}
+		}));
+	}
+
+	@Test
+	public void testSortOrderChangeCancelsPrefetching() throws Exception {
+		assertEquals(0, loadsAfter(new Change() {
+			@Override
+			public void apply(TableAction.View view) {
+				// location is the only sort order, so the change is to no order
+				view.setSortOrder(null);
+			}
+		}));
+	}
+
+	@Test
+	public void testPageSizeChangeCancelsPrefetching() throws Exception {
+		assertEquals(0, loadsAfter(new Change() {
+			@Override
+			public void apply(TableAction.View view) {
+				view.setPageSize(20);
+			}
+		}));
+	}
+
+	/**
+	 * Shows the first page of a folder while the prefetch pool is busy, applies the change and lets the pool run
+	 *
+	 * @return the number of pages loaded from SSC
+	 */
+	private int loadsAfter(Change change) throws Exception {
+		ExecutorService executor = IssuePageCache.createPrefetchExecutor(1, 8);
+		try {
+			TestUpload upload = new TestUpload();
+			upload.setIssuePageSize(10);
+			TestView view = new TestView(folder("critical"), upload, new IssuePageCache(1000, 60000, executor));
+			view.setRevision(REVISION);
+			// the page shown is cached, so only prefetching loads issues
+			view.getPageCache().getPage(view.getPageKey(0, 10), new Callable<List<IssueBean>>() {
+				@Override
+				public List<IssueBean> call() {
+					return issues(10);
+				}
+			});
+			final CountDownLatch release = new CountDownLatch(1);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						release.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			assertEquals(10, view.getIssues().size());
+			if (change != null) {
+				change.apply(view);
+			}
+			release.countDown();
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+			return upload.loads.get();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static IssueFolderBean folder(String id) {
+		return new IssueFolderBean(id, "app", "1.0", Arrays.asList(id, "", "#ed1c24", "100", "20"));
+	}
+
+	private static List<IssueBean> issues(int count) {
+		List<IssueBean> issues = new ArrayList<IssueBean>();
+		for (int i = 0; i < count; i++) {
+			issues.add(new IssueBean());
+		}
+		return issues;
+	}
+
+	private interface Change {
+		void apply(TableAction.View view);
+	}
+
+	private static class TestUpload extends FortifyUpload {
+		private final AtomicInteger loads = new AtomicInteger();
+
+		TestUpload() {
+			super("app", "1.0");
+		}
+
+		@Override
+		public List<IssueBean> getIssuesByFolder(String folderId, int startPage, int pageSize,
+				TableAction.SortOrder sortOrder, boolean downNotUp, boolean showingAllNotNew, String selectedGrouping,
+				TaskListener taskListener) {
+			loads.incrementAndGet();
+			return issues(pageSize);
+		}
+	}
+
+	private static class TestView extends TableAction.View {
+		private static final long serialVersionUID = 1L;
+		private final transient IssuePageCache pageCache;
+
+		TestView(IssueFolderBean folder, FortifyUpload manager, IssuePageCache pageCache) {
+			super(folder, manager, 0);
+			this.pageCache = pageCache;
+		}
+
+		@Override
+		IssuePageCache getPageCache() {
+			return pageCache;
+		}
+	}
+}
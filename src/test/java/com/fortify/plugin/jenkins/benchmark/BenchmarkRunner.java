@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jol.info.GraphLayout;
+
+import jenkins.benchmark.jmh.BenchmarkFinder;
+
+/**
+ * Runs the JMH benchmarks of this package, only if requested with <code>mvn test -Dbenchmark</code>. Results are
+ * written to target/jmh-report.json, including the bytes allocated per operation (gc.alloc.rate.norm). The memory
+ * kept by the issue beans is printed by {@link #measureRetainedSize()}.
+ */
+public class BenchmarkRunner {
+
+	@Test
+	public void runJmhBenchmarks() throws Exception {
+		Assume.assumeTrue(System.getProperty("benchmark") != null);
+
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.mode(Mode.AverageTime)
+				.warmupIterations(2)
+				.timeUnit(TimeUnit.MICROSECONDS)
+				.threads(2)
+				.forks(1)
+				.measurementIterations(5)
+				.shouldFailOnError(true)
+				.shouldDoGC(true)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("target/jmh-report.json");
+
+		new BenchmarkFinder(getClass()).findBenchmarks(options);
+		new Runner(options.build()).run();
+	}
+
+	/**
+	 * Prints the bytes retained per issue by a mapped page of issue beans: the beans and everything reachable from
+	 * them, counted once. The strings the compact beans share through the interners are counted for the page, although
+	 * other pages share them too.
+	 */
+	@Test
+	public void measureRetainedSize() {
+		Assume.assumeTrue(System.getProperty("benchmark") != null);
+
+		IssueBeanBenchmark benchmark = new IssueBeanBenchmark();
+		IssueBeanBenchmark.Page page = new IssueBeanBenchmark.Page();
+		page.issues = 500;
+		page.files = 50;
+		page.setup();
+		long stringBeans = GraphLayout.parseInstance(benchmark.stringIssueBean(page)).totalSize();
+		long compactBeans = GraphLayout.parseInstance(benchmark.compactIssueBean(page)).totalSize();
+		System.out.println(String.format("Retained bytes per issue: stringIssueBean %d, compactIssueBean %d",
+				Long.valueOf(stringBeans / page.issues), Long.valueOf(compactBeans / page.issues)));
+	}
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fortify.plugin.jenkins.bean.IssueBean;
+import com.fortify.plugin.jenkins.fortifyclient.FortifyClient;
+import com.fortify.ssc.restclient.model.ProjectVersionIssue;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+
+/**
+ * Compares mapping a page of issues returned by SSC to the former all-String issue bean and to the compact
+ * {@link IssueBean}. The time is per page; gc.alloc.rate.norm divided by the page size is the number of bytes
+ * allocated per issue, which includes garbage. The memory kept per issue is measured by
+ * {@link BenchmarkRunner#measureRetainedSize()}. Every issue of the page has its own copies of the strings, as when
+ * SSC's response is parsed.
+ */
+@JmhBenchmark
+public class IssueBeanBenchmark {
+	private static final Long PROJECT_VERSION_ID = Long.valueOf(42);
+	private static final String[] CATEGORIES = { "SQL Injection", "Cross-Site Scripting: Reflected", "Dead Code: Unused Method",
+			"Password Management: Hardcoded Password", "Path Manipulation" };
+	private static final String[] ENGINE_TYPES = { "SCA", "WEBINSPECT", "SONATYPE" };
+
+	@State(Scope.Benchmark)
+	public static class Page {
+		@Param({ "500" })
+		public int issues;
+
+		// number of distinct files the issues are in
+		@Param({ "50" })
+		public int files;
+
+		List<ProjectVersionIssue> page;
+
+		@Setup
+		public void setup() {
+			page = new ArrayList<ProjectVersionIssue>(issues);
+			for (int i = 0; i < issues; i++) {
+				ProjectVersionIssue issue = new ProjectVersionIssue();
+				issue.setId(Long.valueOf(i));
+				issue.setIssueInstanceId(String.format("%032X", Integer.valueOf(i)));
+				issue.setFullFileName(parsed("src/main/java/com/example/module" + (i % files) + "/Service.java"));
+				issue.setLineNumber(Integer.valueOf(i * 7 % 2000));
+				issue.setIssueName(parsed(CATEGORIES[i % CATEGORIES.length]));
+				issue.setConfidence(Float.valueOf(i % 5 + 0.5f));
+				issue.setSeverity(Float.valueOf(i % 4 + 1.0f));
+				issue.setEngineType(parsed(ENGINE_TYPES[i % ENGINE_TYPES.length]));
+				page.add(issue);
+			}
+		}
+
+		/**
+		 * @return a copy with its own characters, new String(String) would share them with the original
+		 */
+		private static String parsed(String value) {
+			return new String(value.toCharArray());
+		}
+	}
+
+	@Benchmark
+	public List<StringIssueBean> stringIssueBean(Page state) {
+		List<StringIssueBean> beans = new ArrayList<StringIssueBean>(state.page.size());
+		for (ProjectVersionIssue issue : state.page) {
+			beans.add(new StringIssueBean(PROJECT_VERSION_ID, issue));
+		}
+		return beans;
+	}
+
+	@Benchmark
+	public List<IssueBean> compactIssueBean(Page state) {
+		List<IssueBean> beans = new ArrayList<IssueBean>(state.page.size());
+		for (ProjectVersionIssue issue : state.page) {
+			beans.add(FortifyClient.createIssueBean(PROJECT_VERSION_ID, issue));
+		}
+		return beans;
+	}
+
+	/**
+	 * The fields of the issue bean before it became compact, mapped like it was
+	 */
+	static class StringIssueBean {
+		final Long projectVersionId;
+		final Long issueId;
+		final String issueInstanceId;
+		final String sourceFilePath;
+		final String filePath;
+		final String lineNumber;
+		final String groupName;
+		final String category;
+		final String mappedCategory;
+		final String type;
+		final String confidence;
+		final String severity;
+		final String engineType;
+
+		StringIssueBean(Long projectVersionId, ProjectVersionIssue issue) {
+			this.projectVersionId = projectVersionId;
+			this.issueId = issue.getId();
+			this.issueInstanceId = issue.getIssueInstanceId();
+			this.sourceFilePath = issue.getFullFileName();
+			this.filePath = issue.getFullFileName();
+			this.lineNumber = String.valueOf(issue.getLineNumber());
+			this.groupName = issue.getIssueName();
+			this.category = issue.getIssueName();
+			this.mappedCategory = issue.getIssueName();
+			this.type = issue.getIssueName();
+			this.confidence = String.valueOf(issue.getConfidence());
+			this.severity = String.valueOf(issue.getSeverity());
+			this.engineType = issue.getEngineType();
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.benchmark;
+
+import java.util.List;
+
+import org.jvnet.hudson.test.MockFolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.fortify.plugin.jenkins.JobLookup;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Job;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import jenkins.model.Jenkins;
+
+/**
+ * Compares how the Fortify chart and table actions find their job on a controller with many jobs: the former scan of
+ * all items against {@link JobLookup}.
+ */
+@JmhBenchmark
+public class JobLookupBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class ManyJobs extends JmhBenchmarkState {
+		private static final int JOBS_PER_FOLDER = 100;
+
+		@Param({ "1000", "5000" })
+		public int jobs;
+
+		String lastJob;
+
+		@Override
+		public void setup() throws Exception {
+			Jenkins jenkins = getJenkins();
+			for (int i = 0; i < jobs / JOBS_PER_FOLDER; i++) {
+				MockFolder folder = jenkins.createProject(MockFolder.class, "folder" + i);
+				for (int j = 0; j < JOBS_PER_FOLDER; j++) {
+					lastJob = folder.createProject(FreeStyleProject.class, "job" + j).getFullName();
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public Job<?, ?> scanAllItems(ManyJobs state) {
+		List<Job> allProjects = Jenkins.get().getAllItems(Job.class);
+		for (Job next : allProjects) {
+			if (next != null && state.lastJob.equals(next.getFullName())) {
+				return next;
+			}
+		}
+		return null;
+	}
+
+	@Benchmark
+	public Job<?, ?> jobLookup(ManyJobs state) {
+		return JobLookup.getJob(state.lastJob);
+	}
+}
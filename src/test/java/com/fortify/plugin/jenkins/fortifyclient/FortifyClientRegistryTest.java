@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.fortifyclient;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FortifyClientRegistryTest {
+	private static final String URL = "http://localhost:8180/ssc";
+
+	@Before
+	public void clear() {
+		FortifyClientRegistry.invalidateAll(URL, "token");
+	}
+
+	private static FortifyClient getClient(String token) throws Exception {
+		return FortifyClientRegistry.getClient(URL, token, null, null, null, null);
+	}
+
+	@Test
+	public void testClientsAreShared() throws Exception {
+		FortifyClient client = getClient("token");
+		assertSame(client, getClient("token"));
+		assertNotSame(client, getClient("other token"));
+		assertNotSame(client, FortifyClientRegistry.getClient(URL, "token", null, Integer.valueOf(10), null, null));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedClientIsDropped() throws Exception {
+		FortifyClient first = getClient("token0");
+		FortifyClient second = getClient("token1");
+		for (int i = 2; i < FortifyClientRegistry.MAX_CLIENTS; i++) {
+			getClient("token" + i);
+		}
+		// the first client is used again, the second becomes the least recently used one
+		assertSame(first, getClient("token0"));
+
+		getClient("token" + FortifyClientRegistry.MAX_CLIENTS);
+		assertSame(first, getClient("token0"));
+		assertNotSame(second, getClient("token1"));
+	}
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.fortifyclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fortify.ssc.restclient.model.ProjectVersionIssue;
+import com.google.gson.stream.JsonReader;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+public class IssueIteratorTest {
+	private static final HttpUrl URL = HttpUrl.get("http://ssc/api/v1/projectVersions/1/issues");
+
+	@Test
+	public void testReadIssue() throws Exception {
+		JsonReader reader = new JsonReader(new StringReader("{\"id\": 12, \"issueInstanceId\": \"ABC\", "
+				+ "\"fullFileName\": \"src/A.java\", \"lineNumber\": null, \"issueName\": \"Dead Code\", "
+				+ "\"confidence\": 2.5, \"severity\": 4, \"engineType\": \"SCA\", \"scanStatus\": \"UPDATED\", "
+				+ "\"_href\": \"http://ssc/api/v1/issues/12\", \"primaryTag\": {\"tagValue\": \"Exploitable\"}}"));
+		ProjectVersionIssue issue = IssueIterator.readIssue(reader);
+		assertEquals(Long.valueOf(12), issue.getId());
+		assertEquals("ABC", issue.getIssueInstanceId());
+		assertEquals("src/A.java", issue.getFullFileName());
+		assertNull(issue.getLineNumber());
+		assertEquals("Dead Code", issue.getIssueName());
+		assertEquals(2.5f, issue.getConfidence().floatValue(), 0);
+		assertEquals(4f, issue.getSeverity().floatValue(), 0);
+		assertEquals("SCA", issue.getEngineType());
+		assertFalse(((IssueIterator.ReadIssue) issue).isNew());
+	}
+
+	@Test
+	public void testQueryParameters() {
+		Map<String, String> parameters = ApiClientWrapper.getIssueQueryParameters("FOLDER:critical");
+		assertEquals("issueName", parameters.get("orderby"));
+		assertEquals("false", parameters.get("showsuppressed"));
+		assertEquals("FOLDER:critical", parameters.get("filter"));
+		assertFalse(ApiClientWrapper.getIssueQueryParameters(null).containsKey("filter"));
+	}
+
+	@Test
+	public void testPaging() throws Exception {
+		FakeSsc ssc = new FakeSsc(25, true);
+		try (IssueIterator issues = new IssueIterator(ssc.client(), URL, "FortifyToken x", 10, 2)) {
+			assertEquals(25, readAll(issues));
+		}
+		List<Integer> starts = new ArrayList<Integer>(ssc.starts);
+		Collections.sort(starts);
+		assertEquals(Arrays.asList(0, 10, 20), starts);
+	}
+
+	@Test
+	public void testPagesInFlight() throws Exception {
+		FakeSsc ssc = new FakeSsc(100, true);
+		ssc.responses.drainPermits();
+		try (IssueIterator issues = new IssueIterator(ssc.client(), URL, "FortifyToken x", 10, 3)) {
+			waitFor(ssc.starts, 3);
+			Thread.sleep(100);
+			// no more pages are requested until one is read
+			assertEquals(3, ssc.starts.size());
+			ssc.responses.release(Integer.MAX_VALUE / 2);
+			assertEquals(100, readAll(issues));
+		}
+		assertEquals(10, ssc.starts.size());
+		assertTrue(ssc.maxRunning.get() <= 3);
+	}
+
+	@Test
+	public void testShortPageEndsIteration() throws Exception {
+		// without the total count, the iteration ends at the first page that isn't full
+		FakeSsc ssc = new FakeSsc(15, false);
+		try (IssueIterator issues = new IssueIterator(ssc.client(), URL, "FortifyToken x", 10, 3)) {
+			assertEquals(15, readAll(issues));
+			assertFalse(issues.hasNext());
+		}
+		for (Integer start : ssc.starts) {
+			assertTrue(start.intValue() <= 30);
+		}
+	}
+
+	@Test
+	public void testCloseCancelsPendingPages() throws Exception {
+		FakeSsc ssc = new FakeSsc(100, true);
+		ssc.responses.drainPermits();
+		IssueIterator issues = new IssueIterator(ssc.client(), URL, "FortifyToken x", 10, 3);
+		waitFor(ssc.starts, 3);
+		issues.close();
+		assertFalse(issues.hasNext());
+		ssc.responses.release(Integer.MAX_VALUE / 2);
+		for (int i = 0; i < 500 && ssc.cancelled.get() < 3; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(3, ssc.cancelled.get());
+		assertEquals(3, ssc.starts.size());
+	}
+
+	private static int readAll(IssueIterator issues) throws Exception {
+		int count = 0;
+		while (issues.hasNext()) {
+			assertEquals(Long.valueOf(count), issues.next().getId());
+			count++;
+		}
+		return count;
+	}
+
+	private static void waitFor(List<Integer> requests, int count) throws InterruptedException {
+		for (int i = 0; i < 500 && requests.size() < count; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, requests.size());
+	}
+
+	/**
+	 * Answers the issue list requests with issues numbered from 0. Each response waits for a permit, so the test
+	 * can hold the pages.
+	 */
+	private static class FakeSsc implements Interceptor {
+		private final int total;
+		private final boolean withCount;
+		private final List<Integer> starts = Collections.synchronizedList(new ArrayList<Integer>());
+		private final Semaphore responses = new Semaphore(Integer.MAX_VALUE / 2);
+		private final AtomicInteger running = new AtomicInteger();
+		private final AtomicInteger maxRunning = new AtomicInteger();
+		private final AtomicInteger cancelled = new AtomicInteger();
+
+		FakeSsc(int total, boolean withCount) {
+			this.total = total;
+			this.withCount = withCount;
+		}
+
+		OkHttpClient client() {
+			return new OkHttpClient.Builder().addInterceptor(this).build();
+		}
+
+		@Override
+		public Response intercept(Chain chain) throws IOException {
+			Request request = chain.request();
+			int start = Integer.parseInt(request.url().queryParameter("start"));
+			int limit = Integer.parseInt(request.url().queryParameter("limit"));
+			starts.add(Integer.valueOf(start));
+			int now = running.incrementAndGet();
+			int max = maxRunning.get();
+			while (now > max && !maxRunning.compareAndSet(max, now)) {
+				max = maxRunning.get();
+			}
+			try {
+				responses.acquire();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			} finally {
+				running.decrementAndGet();
+			}
+			if (chain.call().isCanceled()) {
+				cancelled.incrementAndGet();
+				throw new IOException("Canceled");
+			}
+			StringBuilder json = new StringBuilder("{\"data\": [");
+			for (int id = start; id < Math.min(total, start + limit); id++) {
+				json.append(id == start ? "" : ", ").append("{\"id\": ").append(id).append(", \"issueInstanceId\": \"I")
+						.append(id).append("\"}");
+			}
+			json.append(']');
+			if (withCount) {
+				json.append(", \"count\": ").append(total);
+			}
+			json.append('}');
+			return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).message("OK")
+					.body(ResponseBody.create(json.toString(), MediaType.get("application/json"))).build();
+		}
+	}
+}
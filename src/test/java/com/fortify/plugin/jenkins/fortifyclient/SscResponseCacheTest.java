@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.fortifyclient;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import okhttp3.Cache;
+
+public class SscResponseCacheTest {
+	private static final String URL = "http://localhost:8180/ssc";
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	@Test
+	public void testCacheablePaths() {
+		assertTrue(SscResponseCache.isRarelyChanged("issueTemplates"));
+		assertTrue(SscResponseCache.isRarelyChanged("attributeDefinitions"));
+		assertTrue(SscResponseCache.isRarelyChanged("cloudpools"));
+		assertFalse(SscResponseCache.isRarelyChanged("projects"));
+
+		assertTrue(SscResponseCache.isCacheable("projects"));
+		assertTrue(SscResponseCache.isCacheable("projects/12/versions"));
+		assertTrue(SscResponseCache.isCacheable("projectVersions"));
+		assertTrue(SscResponseCache.isCacheable("projectVersions/12/filterSets"));
+		assertTrue(SscResponseCache.isCacheable("projectVersions/12/folders"));
+		assertTrue(SscResponseCache.isCacheable("projectVersions/12/issueSelectorSet"));
+
+		// issue data and artifacts change with every upload
+		assertFalse(SscResponseCache.isCacheable("projectVersions/12/issues"));
+		assertFalse(SscResponseCache.isCacheable("projectVersions/12/issueGroups"));
+		assertFalse(SscResponseCache.isCacheable("projectVersions/12/artifacts"));
+		assertFalse(SscResponseCache.isCacheable("artifacts/3"));
+	}
+
+	@Test
+	public void testCachesOfOtherTokensAreDeleted() throws Exception {
+		Cache configured = SscResponseCache.get(URL, "token");
+		Cache rotated = SscResponseCache.get(URL, "old token");
+		configured.initialize();
+		rotated.initialize();
+		File leftover = new File(rotated.directory().getParentFile(), "leftover");
+		assertTrue(leftover.mkdirs());
+
+		SscResponseCache.invalidateAll(URL, "token");
+		assertTrue(configured.directory().isDirectory());
+		assertFalse(rotated.directory().exists());
+		assertFalse(leftover.exists());
+		assertSame(configured, SscResponseCache.get(URL, "token"));
+		assertNotSame(rotated, SscResponseCache.get(URL, "old token"));
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.fortifyclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fortify.ssc.restclient.ApiException;
+
+public class VersionMetadataCacheTest {
+
+	@Test
+	public void testValuesAreLoadedOnce() throws Exception {
+		VersionMetadataCache cache = new VersionMetadataCache();
+		CountingLoader loader = new CountingLoader("folders");
+		assertEquals("folders", cache.get(VersionMetadataCache.Kind.FOLDERS, Long.valueOf(1), loader));
+		assertEquals("folders", cache.get(VersionMetadataCache.Kind.FOLDERS, Long.valueOf(1), loader));
+		assertEquals(1, loader.calls.get());
+
+		// other kinds and versions are separate
+		cache.get(VersionMetadataCache.Kind.FILTER_SETS, Long.valueOf(1), loader);
+		cache.get(VersionMetadataCache.Kind.FOLDERS, Long.valueOf(2), loader);
+		assertEquals(3, loader.calls.get());
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		VersionMetadataCache cache = new VersionMetadataCache();
+		CountingLoader loader = new CountingLoader("folders");
+		cache.get(VersionMetadataCache.Kind.FOLDERS, Long.valueOf(1), loader);
+		cache.get(VersionMetadataCache.Kind.FOLDERS, Long.valueOf(2), loader);
+		cache.invalidate(Long.valueOf(1));
+		cache.get(VersionMetadataCache.Kind.FOLDERS, Long.valueOf(1), loader);
+		cache.get(VersionMetadataCache.Kind.FOLDERS, Long.valueOf(2), loader);
+		assertEquals(3, loader.calls.get());
+
+		cache.invalidateAll();
+		cache.get(VersionMetadataCache.Kind.FOLDERS, Long.valueOf(2), loader);
+		assertEquals(4, loader.calls.get());
+	}
+
+	@Test
+	public void testFailedAndEmptyLookupsAreNotCached() throws Exception {
+		VersionMetadataCache cache = new VersionMetadataCache();
+		CountingLoader missing = new CountingLoader(null);
+		assertNull(cache.get(VersionMetadataCache.Kind.GROUP_BY_SET, Long.valueOf(1), missing));
+		assertNull(cache.get(VersionMetadataCache.Kind.GROUP_BY_SET, Long.valueOf(1), missing));
+		assertEquals(2, missing.calls.get());
+
+		CountingLoader empty = new CountingLoader(Collections.emptyList());
+		assertEquals(Collections.emptyList(), cache.get(VersionMetadataCache.Kind.FOLDERS, Long.valueOf(1), empty));
+		assertEquals(Collections.emptyList(), cache.get(VersionMetadataCache.Kind.FOLDERS, Long.valueOf(1), empty));
+		assertEquals(2, empty.calls.get());
+
+		CountingLoader failing = new CountingLoader(new ApiException("unavailable"));
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.get(VersionMetadataCache.Kind.GROUP_BY_SET, Long.valueOf(1), failing);
+				fail();
+			} catch (ApiException e) {
+				assertEquals("unavailable", e.getMessage());
+			}
+		}
+		assertEquals(2, failing.calls.get());
+	}
+
+	private static class CountingLoader implements VersionMetadataCache.Loader<Object> {
+		private final Object result;
+		private final AtomicInteger calls = new AtomicInteger();
+
+		CountingLoader(Object result) {
+			this.result = result;
+		}
+
+		@Override
+		public Object load() throws ApiException {
+			calls.incrementAndGet();
+			if (result instanceof ApiException) {
+				throw (ApiException) result;
+			}
+			return result;
+		}
+	}
+}
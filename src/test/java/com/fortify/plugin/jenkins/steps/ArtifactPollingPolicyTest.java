@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ArtifactPollingPolicyTest {
+
+	@Test
+	public void testParseInterval() {
+		assertNull(ArtifactPollingPolicy.parseInterval(" "));
+		assertEquals(Long.valueOf(0), ArtifactPollingPolicy.parseInterval("0"));
+		assertEquals(Long.valueOf(2 * 60 * 1000L), ArtifactPollingPolicy.parseInterval("2"));
+		assertEquals(Long.valueOf(30 * 1000L), ArtifactPollingPolicy.parseInterval("30s"));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testParseInvalidInterval() {
+		ArtifactPollingPolicy.parseInterval("1m");
+	}
+
+	@Test
+	public void testFixed() {
+		ArtifactPollingPolicy policy = ArtifactPollingPolicy.fixed(30 * 1000L);
+		assertEquals(30 * 1000L, policy.nextDelayMillis());
+		assertEquals(30 * 1000L, policy.nextDelayMillis());
+	}
+
+	@Test
+	public void testAdaptiveBackoff() {
+		Random random = new Random(42);
+		ArtifactPollingPolicy policy = ArtifactPollingPolicy.adaptive(0, null);
+		long previous = 0;
+		for (int i = 0; i < 20; i++) {
+			long delay = policy.nextDelayMillis(random);
+			assertTrue(delay >= ArtifactPollingPolicy.MIN_DELAY_MILLIS);
+			assertTrue(delay <= ArtifactPollingPolicy.MAX_DELAY_MILLIS);
+			if (i < 3) {
+				assertTrue(delay > previous);
+			}
+			previous = delay;
+		}
+		assertTrue(previous > ArtifactPollingPolicy.MAX_DELAY_MILLIS / 2);
+	}
+
+	@Test
+	public void testAdaptiveUsesHistory() {
+		ArtifactPollingPolicy policy = ArtifactPollingPolicy.adaptive(0, Long.valueOf(100 * 1000L));
+		long delay = policy.nextDelayMillis(new Random(42));
+		assertTrue(delay >= 64 * 1000L && delay <= 96 * 1000L);
+	}
+}
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright 2023 Open Text.
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/MIT
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.fortify.plugin.jenkins.steps;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ArtifactProcessingHistoryTest {
+
+	@Test
+	public void testEstimateDuration() {
+		// processed between the checks at 60s and 100s
+		assertEquals(80000L, ArtifactProcessingHistory.estimateDuration(0, 60000, 100000));
+		// complete at the first check
+		assertEquals(5000L, ArtifactProcessingHistory.estimateDuration(1000, 1000, 11000));
+		// a wait resumed without the time of the last check
+		assertEquals(5000L, ArtifactProcessingHistory.estimateDuration(1000, 0, 11000));
+		assertEquals(0L, ArtifactProcessingHistory.estimateDuration(1000, 1000, 1000));
+	}
+}